@@ -2,14 +2,24 @@ package org.dan.dynamicborder;
 
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.Bukkit;
+import org.bukkit.World;
 import org.bukkit.event.HandlerList;
 import org.dan.dynamicborder.managers.*;
 import org.dan.dynamicborder.commands.BorderCommand;
 import org.dan.dynamicborder.commands.BorderAdminCommand;
+import org.dan.dynamicborder.data.PluginSettings;
 import org.dan.dynamicborder.listeners.PlayerListener;
+import org.dan.dynamicborder.storage.SqliteStorage;
+import org.dan.dynamicborder.storage.StorageBackend;
+import org.dan.dynamicborder.storage.YamlStorage;
 import org.dan.dynamicborder.managers.ConfigManager;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -25,10 +35,15 @@ public class DynamicBorderPlugin extends JavaPlugin {
     private WorldManager worldManager;
     private LimitManager limitManager;
     private EconomyManager economyManager;
+    private BackupManager backupManager;
+    private LeaderboardManager leaderboardManager;
 
     // Конфигурации
     private ConfigManager configManager;
 
+    // Хранилище данных миров и игроков
+    private StorageBackend storage;
+
     // Слушатели
     private PlayerListener playerListener;
 
@@ -36,6 +51,16 @@ public class DynamicBorderPlugin extends JavaPlugin {
     private boolean debugMode = false;
     private long startupTime;
 
+    // Фоновое автосохранение
+    private final ExecutorService saveExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "DynamicBorder-Autosave");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile long lastSnapshotNanos = 0;
+    private volatile long maxSnapshotNanos = 0;
+    private volatile long lastSaveWriteMillis = 0;
+
     @Override
     public void onEnable() {
         instance = this;
@@ -51,53 +76,51 @@ public class DynamicBorderPlugin extends JavaPlugin {
             // Создание папок
             createFolders();
 
-            // Загрузка конфигураций
-            configManager = new ConfigManager(this);
-            configManager.loadAllConfigs();
-
-            // Инициализация менеджеров в правильном порядке
-            worldManager = new WorldManager(this);
-            borderManager = new BorderManager(this);
-            currencyManager = new CurrencyManager(this);
-            multiplierManager = new MultiplierManager(this);
-            limitManager = new LimitManager(this);
-            economyManager = new EconomyManager(this);
-
-            // Регистрация команд
-            BorderCommand borderCommand = new BorderCommand(this);
-            BorderAdminCommand borderAdminCommand = new BorderAdminCommand(this);
-
-            // Устанавливаем команды через plugin.yml
-            this.getCommand("border").setExecutor(borderCommand);
-            this.getCommand("border").setTabCompleter(borderCommand);
-            this.getCommand("borderadmin").setExecutor(borderAdminCommand);
-            this.getCommand("borderadmin").setTabCompleter(borderAdminCommand);
-
-            // Регистрация слушателей
-            playerListener = new PlayerListener(this);
-            Bukkit.getPluginManager().registerEvents(playerListener, this);
-
-            // Запуск задач
-            startTasks();
-
-            // Проверка обновлений (опционально)
-            if (configManager.getMainConfig().getBoolean("settings.check-updates", true)) {
-                // UpdateChecker может отсутствовать - делаем проверку
-                try {
-                    Class.forName("org.dan.dynamicborder.utils.UpdateChecker");
-                    new org.dan.dynamicborder.utils.UpdateChecker(this, 123456).check();
-                } catch (ClassNotFoundException e) {
-                    logger.warning("UpdateChecker не найден, пропускаем проверку обновлений");
-                }
+            // Подготовленное восстановление бэкапа применяется до загрузки данных
+            backupManager = new BackupManager(this);
+            backupManager.applyPendingRestore();
+
+            // Миры известны только основному потоку - список снимается заранее
+            List<String> worldNames = new ArrayList<>();
+            for (World world : Bukkit.getWorlds()) {
+                worldNames.add(world.getName());
             }
 
-            // Инициализация миров
-            borderManager.initializeAllWorlds();
+            // Граф загрузки: файлы читаются параллельно в рабочих потоках,
+            // все, что трогает Bukkit API, выполняется в основном потоке
+            StartupLoader loader = new StartupLoader()
+                    .async("конфиги", () -> {
+                        configManager = new ConfigManager(this);
+                        configManager.loadAllConfigs();
+                    })
+                    .async("хранилище", () -> storage = createStorage(), "конфиги")
+                    .async("балансы", () -> currencyManager = new CurrencyManager(this), "хранилище")
+                    .async("множители", () -> multiplierManager = new MultiplierManager(this), "хранилище")
+                    .async("миры", () -> {
+                        borderManager = new BorderManager(this);
+                        borderManager.preloadWorlds(worldNames);
+                    }, "хранилище")
+                    .sync("экономика", () -> economyManager = new EconomyManager(this))
+                    .sync("команды", () -> {
+                        worldManager = new WorldManager(this);
+                        limitManager = new LimitManager(this);
+                        leaderboardManager = new LeaderboardManager(this);
+                        registerCommandsAndListeners();
+                    }, "балансы", "множители", "миры", "экономика")
+                    .sync("границы", () -> {
+                        // Запуск задач
+                        startTasks();
+                        checkUpdates();
+                        // Инициализация миров
+                        borderManager.initializeAllWorlds();
+                        leaderboardManager.load();
+                    }, "команды");
+            loader.run();
 
             long loadTime = System.currentTimeMillis() - startupTime;
             logger.info("§a══════════════════════════════════════");
             logger.info("§aПлагин успешно загружен!");
-            logger.info("§aВремя загрузки: §e" + loadTime + "мс");
+            logger.info("§aВремя загрузки: §e" + loadTime + "мс §7(§e" + loader.formatTimings() + "§7)");
             logger.info("§aМиров загружено: §e" + borderManager.getLoadedWorldsCount());
             logger.info("§a══════════════════════════════════════");
 
@@ -118,12 +141,22 @@ public class DynamicBorderPlugin extends JavaPlugin {
         logger.info("§c╚══════════════════════════════════════╝");
 
         try {
-            // Сохранение всех данных
+            // Незавершенные покупки возвращают валюту до сохранения балансов
+            if (borderManager != null) {
+                borderManager.getPurchasePipeline().shutdown();
+            }
+
+            // Сохранение всех данных и ожидание фоновой записи
             saveAllData();
+            saveExecutor.shutdown();
+            if (!saveExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warning("§cФоновое сохранение не успело завершиться");
+            }
 
             // Очистка слушателей
             if (playerListener != null) {
                 HandlerList.unregisterAll(playerListener);
+                playerListener.cleanup();
             }
 
             // Отмена всех задач
@@ -134,10 +167,13 @@ public class DynamicBorderPlugin extends JavaPlugin {
                 borderManager.cleanup();
             }
             if (currencyManager != null) {
-                currencyManager.saveData();
+                currencyManager.shutdown();
             }
             if (multiplierManager != null) {
-                multiplierManager.saveAllData();
+                multiplierManager.shutdown();
+            }
+            if (storage != null) {
+                storage.close();
             }
 
             logger.info("§aВсе данные успешно сохранены!");
@@ -148,6 +184,48 @@ public class DynamicBorderPlugin extends JavaPlugin {
         }
     }
 
+    private void registerCommandsAndListeners() {
+        BorderCommand borderCommand = new BorderCommand(this);
+        BorderAdminCommand borderAdminCommand = new BorderAdminCommand(this);
+
+        // Устанавливаем команды через plugin.yml
+        this.getCommand("border").setExecutor(borderCommand);
+        this.getCommand("border").setTabCompleter(borderCommand);
+        this.getCommand("borderadmin").setExecutor(borderAdminCommand);
+        this.getCommand("borderadmin").setTabCompleter(borderAdminCommand);
+
+        // Регистрация слушателей
+        playerListener = new PlayerListener(this);
+        Bukkit.getPluginManager().registerEvents(playerListener, this);
+    }
+
+    private void checkUpdates() {
+        // Проверка обновлений (опционально)
+        if (configManager.getSettings().general().checkUpdates()) {
+            // UpdateChecker может отсутствовать - делаем проверку
+            try {
+                Class.forName("org.dan.dynamicborder.utils.UpdateChecker");
+                new org.dan.dynamicborder.utils.UpdateChecker(this, 123456).check();
+            } catch (ClassNotFoundException e) {
+                logger.warning("UpdateChecker не найден, пропускаем проверку обновлений");
+            }
+        }
+    }
+
+    private StorageBackend createStorage() {
+        String type = configManager.getSettings().storage().type();
+
+        StorageBackend backend = "sqlite".equals(type) ? new SqliteStorage(this) : new YamlStorage(this);
+        if (!backend.open()) {
+            logger.warning("§cХранилище §e" + type + " §cнедоступно, используется yaml");
+            backend = new YamlStorage(this);
+            backend.open();
+        }
+
+        logger.info("§aХранилище данных: §e" + backend.getName());
+        return backend;
+    }
+
     private void createFolders() {
         // Основные папки
         String[] folders = {
@@ -170,7 +248,8 @@ public class DynamicBorderPlugin extends JavaPlugin {
 
     private void startTasks() {
         // Автосохранение
-        int saveInterval = configManager.getMainConfig().getInt("settings.save-interval", 300);
+        PluginSettings.General settings = configManager.getSettings().general();
+        int saveInterval = settings.saveInterval();
         if (saveInterval > 0) {
             Bukkit.getScheduler().runTaskTimer(this, this::saveAllData,
                     saveInterval * 20L, saveInterval * 20L);
@@ -178,14 +257,14 @@ public class DynamicBorderPlugin extends JavaPlugin {
         }
 
         // Автобэкап
-        int backupInterval = configManager.getMainConfig().getInt("settings.backup-interval", 3600);
+        int backupInterval = settings.backupInterval();
         if (backupInterval > 0) {
             Bukkit.getScheduler().runTaskTimer(this, this::createAutoBackup,
                     backupInterval * 20L, backupInterval * 20L);
         }
 
         // Очистка кэша
-        int cacheCleanup = configManager.getMainConfig().getInt("settings.cache-cleanup", 600);
+        int cacheCleanup = settings.cacheCleanup();
         if (cacheCleanup > 0) {
             Bukkit.getScheduler().runTaskTimer(this, () -> {
                 if (multiplierManager != null) multiplierManager.cleanupCache();
@@ -194,37 +273,78 @@ public class DynamicBorderPlugin extends JavaPlugin {
         }
     }
 
-    private void saveAllData() {
-        long start = System.currentTimeMillis();
+    /**
+     * Автосохранение: на основном потоке снимаются копии состояния,
+     * сериализация и запись на диск выполняются в фоне
+     */
+    public void saveAllData() {
+        long start = System.nanoTime();
         try {
-            if (borderManager != null) borderManager.saveAllWorlds();
-            if (currencyManager != null) currencyManager.saveData();
-            if (multiplierManager != null) multiplierManager.saveAllData();
-            if (configManager != null) configManager.saveAllConfigs();
-
-            long time = System.currentTimeMillis() - start;
-            if (debugMode) {
-                logger.info("§aДанные сохранены за §e" + time + "мс");
+            BorderManager.WorldsSnapshot worlds = borderManager != null ? borderManager.snapshotDirtyWorlds() : null;
+            Runnable currency = currencyManager != null ? currencyManager.snapshotForSave() : null;
+            Runnable multipliers = multiplierManager != null ? multiplierManager.snapshotForSave() : null;
+            Runnable configs = configManager != null ? configManager.snapshotForSave() : null;
+
+            long snapshotNanos = System.nanoTime() - start;
+            lastSnapshotNanos = snapshotNanos;
+            if (snapshotNanos > maxSnapshotNanos) {
+                maxSnapshotNanos = snapshotNanos;
             }
+
+            saveExecutor.execute(() -> {
+                long writeStart = System.currentTimeMillis();
+                try {
+                    int savedWorlds = worlds != null ? worlds.write() : 0;
+                    if (currency != null) currency.run();
+                    if (multipliers != null) multipliers.run();
+                    if (configs != null) configs.run();
+
+                    lastSaveWriteMillis = System.currentTimeMillis() - writeStart;
+                    if (debugMode) {
+                        logger.info(String.format("§aДанные сохранены: снимок §e%.2fмс §a(основной поток), запись §e%dмс §a(изменено миров: §e%d§a)",
+                                snapshotNanos / 1_000_000.0, lastSaveWriteMillis, savedWorlds));
+                    }
+                } catch (Exception e) {
+                    logger.log(Level.WARNING, "Ошибка при автосохранении:", e);
+                }
+            });
         } catch (Exception e) {
             logger.log(Level.WARNING, "Ошибка при автосохранении:", e);
         }
     }
 
+    // Статистика автосохранения
+    public double getLastSnapshotMillis() {
+        return lastSnapshotNanos / 1_000_000.0;
+    }
+
+    public double getMaxSnapshotMillis() {
+        return maxSnapshotNanos / 1_000_000.0;
+    }
+
+    public long getLastSaveWriteMillis() {
+        return lastSaveWriteMillis;
+    }
+
     private void createAutoBackup() {
-        if (configManager.getMainConfig().getBoolean("settings.auto-backup", true)) {
+        if (configManager.getSettings().general().autoBackup()) {
             try {
-                String backupName = "auto_" + System.currentTimeMillis();
-                // Здесь будет вызов метода бэкапа
-                if (debugMode) {
-                    logger.info("§aСоздан авто-бэкап: §e" + backupName);
-                }
+                // Сначала сохраняем текущее состояние, бэкап выполнится следом в том же потоке
+                saveAllData();
+                backupManager.createBackup("auto", null);
             } catch (Exception e) {
                 logger.warning("§cОшибка создания авто-бэкапа");
             }
         }
     }
 
+    /**
+     * Выполнить задачу в потоке автосохранения после уже поставленных записей
+     */
+    public void runAfterSave(Runnable task) {
+        saveExecutor.execute(task);
+    }
+
     // Геттеры
     public static DynamicBorderPlugin getInstance() {
         return instance;
@@ -250,14 +370,30 @@ public class DynamicBorderPlugin extends JavaPlugin {
         return limitManager;
     }
 
+    public LeaderboardManager getLeaderboardManager() {
+        return leaderboardManager;
+    }
+
     public EconomyManager getEconomyManager() {
         return economyManager;
     }
 
+    public PlayerListener getPlayerListener() {
+        return playerListener;
+    }
+
+    public BackupManager getBackupManager() {
+        return backupManager;
+    }
+
     public ConfigManager getConfigManager() {
         return configManager;
     }
 
+    public StorageBackend getStorage() {
+        return storage;
+    }
+
     public boolean isDebugMode() {
         return debugMode;
     }
@@ -0,0 +1,122 @@
+package org.dan.dynamicborder;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Поэтапная загрузка плагина.
+ *
+ * Этапы описываются с зависимостями и образуют граф: этап запускается,
+ * как только завершились все этапы, от которых он зависит. Независимые
+ * загрузки файлов (балансы, множители, миры) выполняются параллельно в
+ * рабочих потоках, а этапы, работающие с Bukkit API, - в основном потоке,
+ * который вызвал {@link #run()} и ждет завершения всего графа.
+ */
+public class StartupLoader {
+
+    private final Map<String, CompletableFuture<Void>> stages = new LinkedHashMap<>();
+    private final Map<String, Long> timings = new ConcurrentHashMap<>();
+    private final BlockingQueue<Runnable> mainThreadQueue = new LinkedBlockingQueue<>();
+    private final ExecutorService workers;
+
+    public StartupLoader() {
+        int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        this.workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int counter = 0;
+
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "DynamicBorder-Startup-" + (++counter));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Этап в рабочем потоке (без обращений к Bukkit API)
+     */
+    public StartupLoader async(String name, Runnable task, String... dependsOn) {
+        return addStage(name, task, workers, dependsOn);
+    }
+
+    /**
+     * Этап в основном потоке сервера
+     */
+    public StartupLoader sync(String name, Runnable task, String... dependsOn) {
+        return addStage(name, task, mainThreadQueue::add, dependsOn);
+    }
+
+    private StartupLoader addStage(String name, Runnable task, Executor executor, String... dependsOn) {
+        if (stages.containsKey(name)) {
+            throw new IllegalArgumentException("Этап уже добавлен: " + name);
+        }
+
+        CompletableFuture<?>[] dependencies = new CompletableFuture<?>[dependsOn.length];
+        for (int i = 0; i < dependsOn.length; i++) {
+            CompletableFuture<Void> dependency = stages.get(dependsOn[i]);
+            if (dependency == null) {
+                throw new IllegalArgumentException("Этап " + name + " зависит от неизвестного этапа " + dependsOn[i]);
+            }
+            dependencies[i] = dependency;
+        }
+
+        stages.put(name, CompletableFuture.allOf(dependencies).thenRunAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                task.run();
+            } finally {
+                timings.put(name, (System.nanoTime() - start) / 1_000_000);
+            }
+        }, executor));
+        return this;
+    }
+
+    /**
+     * Выполнить граф. Вызывается из основного потока: он выполняет свои
+     * этапы по мере готовности, пока рабочие потоки заняты остальными
+     *
+     * @throws RuntimeException первая ошибка этапа; зависящие от него этапы не выполняются
+     */
+    public void run() {
+        CompletableFuture<Void> all = CompletableFuture.allOf(stages.values().toArray(new CompletableFuture<?>[0]));
+
+        try {
+            while (!all.isDone() || !mainThreadQueue.isEmpty()) {
+                Runnable task = mainThreadQueue.poll(10, TimeUnit.MILLISECONDS);
+                if (task != null) {
+                    task.run();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Загрузка прервана", e);
+        } finally {
+            workers.shutdown();
+        }
+
+        try {
+            all.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Время этапов в порядке их объявления, например "конфиги 12мс, миры 40мс"
+     */
+    public String formatTimings() {
+        StringJoiner joiner = new StringJoiner("§7, §e");
+        for (String name : stages.keySet()) {
+            Long time = timings.get(name);
+            if (time != null) {
+                joiner.add(name + " " + time + "мс");
+            }
+        }
+        return joiner.toString();
+    }
+}
\ No newline at end of file
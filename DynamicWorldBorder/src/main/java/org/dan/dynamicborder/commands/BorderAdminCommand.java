@@ -1,6 +1,7 @@
 package org.dan.dynamicborder.commands;
 
 import org.dan.dynamicborder.DynamicBorderPlugin;
+import org.dan.dynamicborder.managers.BackupManager;
 import org.dan.dynamicborder.managers.BorderManager;
 import org.dan.dynamicborder.managers.CurrencyManager;
 import org.dan.dynamicborder.managers.MultiplierManager;
@@ -14,6 +15,7 @@ import org.bukkit.Bukkit;
 import org.bukkit.util.StringUtil;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class BorderAdminCommand implements CommandExecutor, TabCompleter {
@@ -237,8 +239,7 @@ public class BorderAdminCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
-        data.setEnabled(true);
-        borderManager.saveWorldData(data);
+        borderManager.updateWorld(data, d -> d.setEnabled(true));
         sender.sendMessage("§aСистема границы включена для мира §e" + worldName);
     }
 
@@ -256,8 +257,7 @@ public class BorderAdminCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
-        data.setEnabled(false);
-        borderManager.saveWorldData(data);
+        borderManager.updateWorld(data, d -> d.setEnabled(false));
         sender.sendMessage("§aСистема границы отключена для мира §e" + worldName);
     }
 
@@ -277,8 +277,7 @@ public class BorderAdminCommand implements CommandExecutor, TabCompleter {
         }
 
         boolean upgradable = state.equals("on");
-        data.setUpgradable(upgradable);
-        borderManager.saveWorldData(data);
+        borderManager.updateWorld(data, d -> d.setUpgradable(upgradable));
 
         sender.sendMessage("§aУлучшения " + (upgradable ? "включены" : "отключены") +
                 " для мира §e" + worldName);
@@ -306,8 +305,7 @@ public class BorderAdminCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
-        data.setCurrentSize(size);
-        borderManager.saveWorldData(data);
+        borderManager.updateWorld(data, d -> d.setCurrentSize(size));
 
         // Применение к миру
         org.bukkit.World world = Bukkit.getWorld(worldName);
@@ -340,8 +338,7 @@ public class BorderAdminCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
-        data.setCurrentSpeed(speed);
-        borderManager.saveWorldData(data);
+        borderManager.updateWorld(data, d -> d.setCurrentSpeed(speed));
 
         sender.sendMessage("§aСкорость границы установлена на §e" + speed + " §aблоков/сек для мира §e" + worldName);
     }
@@ -368,8 +365,7 @@ public class BorderAdminCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
-        data.setCurrentDamage(damage);
-        borderManager.saveWorldData(data);
+        borderManager.updateWorld(data, d -> d.setCurrentDamage(damage));
 
         // Применение к миру
         org.bukkit.World world = Bukkit.getWorld(worldName);
@@ -479,17 +475,17 @@ public class BorderAdminCommand implements CommandExecutor, TabCompleter {
         }
 
         // Сброс к дефолтным значениям
-        data.setCurrentSize(1000.0);
-        data.setCurrentSpeed(1.0);
-        data.setCurrentDamage(2.0);
-        data.setEnabled(true);
-        data.setUpgradable(true);
-        data.setShopEnabled(true);
-
-        // Сброс статистики
-        // Примечание: В реальной реализации нужно добавить методы сброса статистики в WorldBorderData
-
-        borderManager.saveWorldData(data);
+        borderManager.updateWorld(data, d -> {
+            d.setCurrentSize(1000.0);
+            d.setCurrentSpeed(1.0);
+            d.setCurrentDamage(2.0);
+            d.setEnabled(true);
+            d.setUpgradable(true);
+            d.setShopEnabled(true);
+
+            // Сброс статистики
+            // Примечание: В реальной реализации нужно добавить методы сброса статистики в WorldBorderData
+        });
 
         // Применение к миру
         org.bukkit.World world = Bukkit.getWorld(worldName);
@@ -510,7 +506,7 @@ public class BorderAdminCommand implements CommandExecutor, TabCompleter {
         String sourceWorld = args[2];
         String targetWorld = args[3];
 
-        WorldBorderData sourceData = borderManager.getWorldData(sourceWorld);
+        WorldBorderData sourceData = borderManager.getWorldSnapshot(sourceWorld);
         if (sourceData == null) {
             sender.sendMessage("§cИсходный мир §e" + sourceWorld + "§c не найден!");
             return;
@@ -951,56 +947,48 @@ public class BorderAdminCommand implements CommandExecutor, TabCompleter {
 
         String type = args.length >= 4 ? args[3].toLowerCase() : "all";
 
-        switch (type) {
-            case "size":
-                data.setPlayerMinSize(50.0);
-                data.setPlayerMaxSize(30000.0);
-                data.setAbsoluteMinSize(1.0);
-                data.setAbsoluteMaxSize(1000000.0);
-                sender.sendMessage("§aLimits размера сброшены для мира §e" + worldName);
-                break;
-
-            case "speed":
-                data.setPlayerMinSpeed(0.5);
-                data.setPlayerMaxSpeed(10.0);
-                data.setAbsoluteMinSpeed(0.01);
-                data.setAbsoluteMaxSpeed(100.0);
-                sender.sendMessage("§aLimits скорости сброшены для мира §e" + worldName);
-                break;
-
-            case "damage":
-                data.setPlayerMinDamage(0.5);
-                data.setPlayerMaxDamage(20.0);
-                data.setAbsoluteMinDamage(0.0);
-                data.setAbsoluteMaxDamage(500.0);
-                sender.sendMessage("§aLimits урона сброшены для мира §e" + worldName);
-                break;
-
-            case "all":
-                data.setPlayerMinSize(50.0);
-                data.setPlayerMaxSize(30000.0);
-                data.setAbsoluteMinSize(1.0);
-                data.setAbsoluteMaxSize(1000000.0);
+        boolean all = type.equals("all");
+        boolean size = all || type.equals("size");
+        boolean speed = all || type.equals("speed");
+        boolean damage = all || type.equals("damage");
 
-                data.setPlayerMinSpeed(0.5);
-                data.setPlayerMaxSpeed(10.0);
-                data.setAbsoluteMinSpeed(0.01);
-                data.setAbsoluteMaxSpeed(100.0);
+        if (!size && !speed && !damage) {
+            sender.sendMessage("§cНеизвестный тип: §e" + type);
+            return;
+        }
 
-                data.setPlayerMinDamage(0.5);
-                data.setPlayerMaxDamage(20.0);
-                data.setAbsoluteMinDamage(0.0);
-                data.setAbsoluteMaxDamage(500.0);
+        borderManager.updateWorld(data, d -> {
+            if (size) {
+                d.setPlayerMinSize(50.0);
+                d.setPlayerMaxSize(30000.0);
+                d.setAbsoluteMinSize(1.0);
+                d.setAbsoluteMaxSize(1000000.0);
+            }
 
-                sender.sendMessage("§aВсе лимиты сброшены для мира §e" + worldName);
-                break;
+            if (speed) {
+                d.setPlayerMinSpeed(0.5);
+                d.setPlayerMaxSpeed(10.0);
+                d.setAbsoluteMinSpeed(0.01);
+                d.setAbsoluteMaxSpeed(100.0);
+            }
 
-            default:
-                sender.sendMessage("§cНеизвестный тип: §e" + type);
-                return;
+            if (damage) {
+                d.setPlayerMinDamage(0.5);
+                d.setPlayerMaxDamage(20.0);
+                d.setAbsoluteMinDamage(0.0);
+                d.setAbsoluteMaxDamage(500.0);
+            }
+        });
+
+        if (all) {
+            sender.sendMessage("§aВсе лимиты сброшены для мира §e" + worldName);
+        } else if (size) {
+            sender.sendMessage("§aLimits размера сброшены для мира §e" + worldName);
+        } else if (speed) {
+            sender.sendMessage("§aLimits скорости сброшены для мира §e" + worldName);
+        } else {
+            sender.sendMessage("§aLimits урона сброшены для мира §e" + worldName);
         }
-
-        borderManager.saveWorldData(data);
     }
 
     private void handleLimitApply(CommandSender sender, String[] args) {
@@ -1012,7 +1000,7 @@ public class BorderAdminCommand implements CommandExecutor, TabCompleter {
         String sourceWorld = args[2];
         String targetWorld = args[3];
 
-        WorldBorderData sourceData = borderManager.getWorldData(sourceWorld);
+        WorldBorderData sourceData = borderManager.getWorldSnapshot(sourceWorld);
         WorldBorderData targetData = borderManager.getWorldData(targetWorld);
 
         if (sourceData == null) {
@@ -1025,22 +1013,22 @@ public class BorderAdminCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
-        // Копируем лимиты
-        targetData.setAbsoluteMaxSize(sourceData.getAbsoluteMaxSize());
-        targetData.setAbsoluteMinSize(sourceData.getAbsoluteMinSize());
-        targetData.setAbsoluteMaxSpeed(sourceData.getAbsoluteMaxSpeed());
-        targetData.setAbsoluteMinSpeed(sourceData.getAbsoluteMinSpeed());
-        targetData.setAbsoluteMaxDamage(sourceData.getAbsoluteMaxDamage());
-        targetData.setAbsoluteMinDamage(sourceData.getAbsoluteMinDamage());
-
-        targetData.setPlayerMaxSize(sourceData.getPlayerMaxSize());
-        targetData.setPlayerMinSize(sourceData.getPlayerMinSize());
-        targetData.setPlayerMaxSpeed(sourceData.getPlayerMaxSpeed());
-        targetData.setPlayerMinSpeed(sourceData.getPlayerMinSpeed());
-        targetData.setPlayerMaxDamage(sourceData.getPlayerMaxDamage());
-        targetData.setPlayerMinDamage(sourceData.getPlayerMinDamage());
+        borderManager.updateWorld(targetData, d -> {
+            // Копируем лимиты
+            d.setAbsoluteMaxSize(sourceData.getAbsoluteMaxSize());
+            d.setAbsoluteMinSize(sourceData.getAbsoluteMinSize());
+            d.setAbsoluteMaxSpeed(sourceData.getAbsoluteMaxSpeed());
+            d.setAbsoluteMinSpeed(sourceData.getAbsoluteMinSpeed());
+            d.setAbsoluteMaxDamage(sourceData.getAbsoluteMaxDamage());
+            d.setAbsoluteMinDamage(sourceData.getAbsoluteMinDamage());
 
-        borderManager.saveWorldData(targetData);
+            d.setPlayerMaxSize(sourceData.getPlayerMaxSize());
+            d.setPlayerMinSize(sourceData.getPlayerMinSize());
+            d.setPlayerMaxSpeed(sourceData.getPlayerMaxSpeed());
+            d.setPlayerMinSpeed(sourceData.getPlayerMinSpeed());
+            d.setPlayerMaxDamage(sourceData.getPlayerMaxDamage());
+            d.setPlayerMinDamage(sourceData.getPlayerMinDamage());
+        });
 
         sender.sendMessage("§aLimits применены из §e" + sourceWorld + "§a в §e" + targetWorld);
     }
@@ -1334,11 +1322,14 @@ public class BorderAdminCommand implements CommandExecutor, TabCompleter {
         }
 
         String formula = formulaBuilder.toString().trim();
+        if (formula.length() > 1 && formula.startsWith("\"") && formula.endsWith("\"")) {
+            formula = formula.substring(1, formula.length() - 1).trim();
+        }
 
         if (multiplierManager.setMultiplierFormula(priceType, formula)) {
             sender.sendMessage("§aФормула для §e" + priceType + " §aустановлена: §e" + formula);
         } else {
-            sender.sendMessage("§cОшибка установки формулы!");
+            sender.sendMessage("§cОшибка установки формулы! Подробности в консоли");
         }
     }
 
@@ -1464,29 +1455,30 @@ public class BorderAdminCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
+        Consumer<WorldBorderData> change;
         switch (priceType) {
             case "expand":
-                data.setExpandCost(value);
+                change = d -> d.setExpandCost(value);
                 break;
 
             case "shrink":
-                data.setShrinkCost(value);
+                change = d -> d.setShrinkCost(value);
                 break;
 
             case "speed-up":
-                data.setSpeedUpCost(value);
+                change = d -> d.setSpeedUpCost(value);
                 break;
 
             case "speed-down":
-                data.setSpeedDownCost(value);
+                change = d -> d.setSpeedDownCost(value);
                 break;
 
             case "damage-down":
-                data.setDamageDownCost(value);
+                change = d -> d.setDamageDownCost(value);
                 break;
 
             case "damage-up":
-                data.setDamageUpCost(value);
+                change = d -> d.setDamageUpCost(value);
                 break;
 
             default:
@@ -1494,7 +1486,7 @@ public class BorderAdminCommand implements CommandExecutor, TabCompleter {
                 return;
         }
 
-        borderManager.saveWorldData(data);
+        borderManager.updateWorld(data, change);
         sender.sendMessage("§aЦена §e" + priceType + "§a установлена на §e" + value + "§a для мира §e" + worldName);
     }
 
@@ -1552,8 +1544,7 @@ public class BorderAdminCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
-        data.addItemPrice(itemName, price);
-        borderManager.saveWorldData(data);
+        borderManager.updateWorld(data, d -> d.addItemPrice(itemName, price));
 
         sender.sendMessage("§aПредмет §e" + itemName + "§a добавлен в магазин мира §e" + worldName);
         sender.sendMessage("§aЦена: §e" + currencyManager.formatCurrency(price));
@@ -1574,8 +1565,7 @@ public class BorderAdminCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
-        data.removeItemPrice(itemName);
-        borderManager.saveWorldData(data);
+        borderManager.updateWorld(data, d -> d.removeItemPrice(itemName));
 
         sender.sendMessage("§aПредмет §e" + itemName + "§a удален из магазина мира §e" + worldName);
     }
@@ -1698,8 +1688,7 @@ public class BorderAdminCommand implements CommandExecutor, TabCompleter {
                 return;
             }
 
-            data.setShopEnabled(enable);
-            borderManager.saveWorldData(data);
+            borderManager.updateWorld(data, d -> d.setShopEnabled(enable));
 
             sender.sendMessage("§aМагазин " + (enable ? "включен" : "выключен") + " для мира §e" + worldName);
 
@@ -1891,21 +1880,11 @@ public class BorderAdminCommand implements CommandExecutor, TabCompleter {
     }
 
     private void handleSave(CommandSender sender) {
-        // Сохраняем все данные через менеджеры
-        if (plugin.getBorderManager() != null) {
-            plugin.getBorderManager().saveAllWorlds();
-        }
-        if (plugin.getCurrencyManager() != null) {
-            plugin.getCurrencyManager().saveData();
-        }
-        if (plugin.getMultiplierManager() != null) {
-            plugin.getMultiplierManager().saveAllData();
-        }
-        if (plugin.getConfigManager() != null) {
-            plugin.getConfigManager().saveAllConfigs();
-        }
+        // Снимок состояния сейчас, запись на диск в фоне
+        plugin.saveAllData();
 
-        sender.sendMessage("§aВсе данные успешно сохранены!");
+        sender.sendMessage(String.format("§aСохранение запущено §7(снимок: §e%.2f мс§7)",
+                plugin.getLastSnapshotMillis()));
     }
 
     private void handleStatsAdmin(CommandSender sender, String[] args) {
@@ -2009,6 +1988,74 @@ public class BorderAdminCommand implements CommandExecutor, TabCompleter {
                     "§7: §a" + activity + " §7действий");
         }
 
+        // Автосохранение
+        sender.sendMessage("§6──────────────────────────────────────");
+        sender.sendMessage("§eАвтосохранение:");
+        sender.sendMessage(String.format("  §7Снимок (основной поток): §a%.2f §7мс (макс. §a%.2f§7)",
+                plugin.getLastSnapshotMillis(), plugin.getMaxSnapshotMillis()));
+        sender.sendMessage("  §7Фоновая запись: §a" + plugin.getLastSaveWriteMillis() + " §7мс");
+
+        // Проверка границы
+        var sweeper = plugin.getPlayerListener().getSweeper();
+        sender.sendMessage("§6──────────────────────────────────────");
+        sender.sendMessage("§eПроверка границы:");
+        sender.sendMessage("  §7Игроков: §a" + sweeper.getTrackedCount() +
+                " §7(за последний тик проверено §a" + sweeper.getLastTickChecks() +
+                "§7, отложено §a" + sweeper.getLastTickDeferred() + "§7)");
+        sender.sendMessage("  §7Всего проверок: §a" + sweeper.getTotalChecks() +
+                " §7(отложено: §a" + sweeper.getTotalDeferred() + "§7)");
+        sender.sendMessage("  §7Пропущено (игрок далеко от границы): §a" + sweeper.getTotalAvoided());
+
+        var crossings = plugin.getPlayerListener().getCrossings();
+        sender.sendMessage("  §7Предсказанные пересечения: §a" + crossings.getPending() +
+                " §7ожидают (выполнено §a" + crossings.getTotalFired() +
+                "§7, отменено §a" + crossings.getTotalCancelled() + "§7)");
+        sender.sendMessage(String.format("  §7Время тика: §a%.2f §7мс (макс. §a%.2f§7)",
+                sweeper.getLastTickMillis(), sweeper.getMaxTickMillis()));
+
+        // Покупки, собранные за тик
+        var resizes = borderManager.getResizeCoalescer();
+        sender.sendMessage("§6──────────────────────────────────────");
+        sender.sendMessage("§eПокупки границы:");
+        sender.sendMessage("  §7Покупок: §a" + resizes.getTotalPurchases() +
+                " §7(изменений границы: §a" + resizes.getTotalResizes() +
+                "§7, записей миров: §a" + resizes.getTotalWrites() + "§7)");
+        var locks = borderManager.getWorldLocks();
+        sender.sendMessage("  §7Чтения миров без блокировки: §a" + locks.getOptimisticReads() +
+                " §7(под блокировкой: §a" + locks.getLockedReads() + "§7)");
+        var payments = borderManager.getPurchasePipeline();
+        sender.sendMessage("  §7Оплат подтверждено: §a" + payments.getCommitted() +
+                " §7(откатов: §a" + payments.getRolledBack() +
+                "§7, отказов: §a" + payments.getRejected() +
+                "§7, в процессе: §a" + payments.getInFlight() + "§7)");
+        if (payments.getRefundFailures() > 0) {
+            sender.sendMessage("  §cНе удалось вернуть валюту: §e" + payments.getRefundFailures());
+        }
+
+        // Рейтинги
+        var leaderboards = plugin.getLeaderboardManager();
+        sender.sendMessage("§6──────────────────────────────────────");
+        sender.sendMessage("§eРейтинги: §7игроков §a" + leaderboards.getPlayerCount() +
+                (leaderboards.isLoaded() ? "" : " §7(загружаются)"));
+        for (var entry : leaderboards.getRichest(3)) {
+            sender.sendMessage("  §7" + entry.rank() + ". §f" + leaderboards.getPlayerName(entry.key()) +
+                    " §7- §a" + currencyManager.formatCurrency(entry.value()));
+        }
+        for (var entry : leaderboards.getMostExpandedWorlds(3)) {
+            sender.sendMessage("  §7Мир " + entry.rank() + ". §f" + entry.key() +
+                    " §7- §a" + (long) entry.value() + " §7расширений");
+        }
+
+        // Очередь отложенной записи
+        var saveQueue = multiplierManager.getSaveQueue();
+        sender.sendMessage("§6──────────────────────────────────────");
+        sender.sendMessage("§eОчередь записи множителей:");
+        sender.sendMessage("  §7В очереди: §a" + saveQueue.getQueueDepth());
+        sender.sendMessage("  §7Сбросов: §a" + saveQueue.getFlushCount() +
+                " §7(схлопнуто записей: §a" + saveQueue.getCoalescedCount() + "§7)");
+        sender.sendMessage(String.format("  §7Время сброса: §a%.2f §7мс (сред. §a%.2f§7, макс. §a%.2f§7)",
+                saveQueue.getLastFlushMillis(), saveQueue.getAverageFlushMillis(), saveQueue.getMaxFlushMillis()));
+
         sender.sendMessage("§6══════════════════════════════════════");
     }
 
@@ -2036,17 +2083,33 @@ public class BorderAdminCommand implements CommandExecutor, TabCompleter {
 
         String backupSubCmd = args[1].toLowerCase();
 
+        BackupManager backupManager = plugin.getBackupManager();
+
         switch (backupSubCmd) {
             case "create":
                 sender.sendMessage("§aСоздание бэкапа...");
-                // Реализация создания бэкапа
-                sender.sendMessage("§cВнимание: Функция бэкапа требует дополнительной реализации!");
+                plugin.saveAllData();
+                backupManager.createBackup("manual", result ->
+                        sender.sendMessage((result.isSuccess() ? "§a" : "§c") + result.getMessage()));
                 break;
 
             case "list":
-                sender.sendMessage("§aСписок бэкапов:");
-                // Реализация списка бэкапов
-                sender.sendMessage("§cВнимание: Функция бэкапа требует дополнительной реализации!");
+                List<BackupManager.BackupInfo> backups = backupManager.listBackups();
+                if (backups.isEmpty()) {
+                    sender.sendMessage("§7Бэкапов пока нет");
+                    return;
+                }
+
+                java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("dd.MM.yyyy HH:mm:ss");
+                sender.sendMessage("§6══════════════════════════════════════");
+                sender.sendMessage("§eСписок бэкапов: §a" + backups.size());
+                sender.sendMessage("§6══════════════════════════════════════");
+                for (BackupManager.BackupInfo info : backups) {
+                    sender.sendMessage("§e" + info.getName() + " §7- " + sdf.format(new java.util.Date(info.getCreated())));
+                    sender.sendMessage("  §7Файлов: §a" + info.getFiles() +
+                            " §7Размер: §a" + BackupManager.formatBytes(info.getTotalBytes()) +
+                            " §7Новых данных: §a" + BackupManager.formatBytes(info.getStoredBytes()));
+                }
                 break;
 
             case "restore":
@@ -2054,9 +2117,9 @@ public class BorderAdminCommand implements CommandExecutor, TabCompleter {
                     sender.sendMessage("§cИспользуйте: §e/borderadmin backup restore <имя_бэкапа>");
                     return;
                 }
-                sender.sendMessage("§aВосстановление бэкапа " + args[2] + "...");
-                // Реализация восстановления бэкапа
-                sender.sendMessage("§cВнимание: Функция бэкапа требует дополнительной реализации!");
+                sender.sendMessage("§aПроверка бэкапа " + args[2] + "...");
+                backupManager.restoreBackup(args[2], result ->
+                        sender.sendMessage((result.isSuccess() ? "§a" : "§c") + result.getMessage()));
                 break;
 
             default:
@@ -2436,6 +2499,12 @@ public class BorderAdminCommand implements CommandExecutor, TabCompleter {
                     completions.add("restore");
                     return StringUtil.copyPartialMatches(args[1], completions, new ArrayList<>());
                 }
+                if (args.length == 3 && args[1].equalsIgnoreCase("restore")) {
+                    for (BackupManager.BackupInfo info : plugin.getBackupManager().listBackups()) {
+                        completions.add(info.getName());
+                    }
+                    return StringUtil.copyPartialMatches(args[2], completions, new ArrayList<>());
+                }
                 break;
 
             case "help":
@@ -5,14 +5,17 @@ import org.dan.dynamicborder.data.PlayerMultiplierData;
 import org.dan.dynamicborder.DynamicBorderPlugin;
 import org.dan.dynamicborder.managers.BorderManager;
 import org.dan.dynamicborder.managers.CurrencyManager;
+import org.dan.dynamicborder.managers.LeaderboardManager;
 import org.dan.dynamicborder.managers.MultiplierManager;
 import org.dan.dynamicborder.data.WorldBorderData;
+import org.bukkit.Material;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 import org.bukkit.util.StringUtil;
+import org.dan.dynamicborder.utils.Leaderboard;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -29,9 +32,12 @@ public class BorderCommand implements CommandExecutor, TabCompleter {
             "expand", "shrink", "speed", "damage", "status", "balance",
             "sell", "prices", "items", "upgrades", "effects", "worlds",
             "switch", "limits", "info", "price", "history", "stats",
-            "help", "version"
+            "top", "help", "version"
     );
 
+    // Мест в выводе /border top
+    private static final int TOP_SIZE = 10;
+
     // Доступные миры для автодополнения
     private static final List<String> WORLD_SUGGESTIONS = Arrays.asList(
             "world", "world_nether", "world_the_end"
@@ -134,6 +140,10 @@ public class BorderCommand implements CommandExecutor, TabCompleter {
                     handleStats(player);
                     break;
 
+                case "top":
+                    handleTop(player, args);
+                    break;
+
                 case "help":
                     handleHelp(player, args);
                     break;
@@ -190,7 +200,7 @@ public class BorderCommand implements CommandExecutor, TabCompleter {
         }
 
         // Проверка доступности мира
-        WorldBorderData worldData = borderManager.getWorldData(worldName);
+        WorldBorderData worldData = borderManager.getWorldSnapshot(worldName);
         if (worldData == null) {
             player.sendMessage("§cМир §e" + worldName + "§c не найден!");
             return;
@@ -201,22 +211,26 @@ public class BorderCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
-        // Выполнение расширения
-        BorderManager.ExpandResult result = borderManager.expandWorld(worldName, blocks, player);
+        // Выполнение расширения: при оплате через Vault результат придет позже
+        borderManager.expandWorld(worldName, blocks, player, result -> {
+            if (!player.isOnline()) {
+                return;
+            }
 
-        if (result.isSuccess()) {
-            player.sendMessage("§a✅ " + result.getMessage());
-            player.sendMessage("§7Стоимость: §e" + currencyManager.formatCurrency(result.getCost()));
-
-            // Показать следующую цену
-            double nextPrice = multiplierManager.getPrice(
-                    player, worldName, "expand",
-                    worldData.getExpandCostFor(1.0)
-            );
-            player.sendMessage("§7Следующая цена за блок: §e" + currencyManager.formatCurrency(nextPrice));
-        } else {
-            player.sendMessage("§c❌ " + result.getMessage());
-        }
+            if (result.isSuccess()) {
+                player.sendMessage("§a✅ " + result.getMessage());
+                player.sendMessage("§7Стоимость: §e" + currencyManager.formatCurrency(result.getCost()));
+
+                // Показать следующую цену
+                double nextPrice = multiplierManager.getPrice(
+                        player, worldName, "expand",
+                        worldData.getExpandCostFor(1.0)
+                );
+                player.sendMessage("§7Следующая цена за блок: §e" + currencyManager.formatCurrency(nextPrice));
+            } else {
+                player.sendMessage("§c❌ " + result.getMessage());
+            }
+        });
     }
 
     private void handleShrink(Player player, String[] args) {
@@ -247,7 +261,7 @@ public class BorderCommand implements CommandExecutor, TabCompleter {
             }
         }
 
-        WorldBorderData worldData = borderManager.getWorldData(worldName);
+        WorldBorderData worldData = borderManager.getWorldSnapshot(worldName);
         if (worldData == null) {
             player.sendMessage("§cМир §e" + worldName + "§c не найден!");
             return;
@@ -258,25 +272,29 @@ public class BorderCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
-        BorderManager.ShrinkResult result = borderManager.shrinkWorld(worldName, blocks, player);
+        borderManager.shrinkWorld(worldName, blocks, player, result -> {
+            if (!player.isOnline()) {
+                return;
+            }
 
-        if (result.isSuccess()) {
-            player.sendMessage("§a✅ " + result.getMessage());
-            player.sendMessage("§7Стоимость: §e" + currencyManager.formatCurrency(result.getCost()));
-
-            double nextPrice = multiplierManager.getPrice(
-                    player, worldName, "shrink",
-                    worldData.getShrinkCostFor(1.0)
-            );
-            player.sendMessage("§7Следующая цена за блок: §e" + currencyManager.formatCurrency(nextPrice));
-        } else {
-            player.sendMessage("§c❌ " + result.getMessage());
-        }
+            if (result.isSuccess()) {
+                player.sendMessage("§a✅ " + result.getMessage());
+                player.sendMessage("§7Стоимость: §e" + currencyManager.formatCurrency(result.getCost()));
+
+                double nextPrice = multiplierManager.getPrice(
+                        player, worldName, "shrink",
+                        worldData.getShrinkCostFor(1.0)
+                );
+                player.sendMessage("§7Следующая цена за блок: §e" + currencyManager.formatCurrency(nextPrice));
+            } else {
+                player.sendMessage("§c❌ " + result.getMessage());
+            }
+        });
     }
 
     private void handleSpeed(Player player, String[] args) {
         if (args.length < 2) {
-            player.sendMessage("§cИспользуйте: §e/border speed <up/down> [мир]");
+            player.sendMessage("§cИспользуйте: §e/border speed <up/down> [количество] [мир]");
             player.sendMessage("§cИли: §e/brd speed <up/down>");
             return;
         }
@@ -288,15 +306,32 @@ public class BorderCommand implements CommandExecutor, TabCompleter {
         }
 
         boolean up = direction.equals("up");
+        // Необязательное количество улучшений перед именем мира
+        int levels = 1;
+        int worldArg = 2;
+        if (args.length >= 3) {
+            try {
+                levels = Integer.parseInt(args[2]);
+                worldArg = 3;
+            } catch (NumberFormatException ignored) {
+                // Это имя мира
+            }
+        }
+
+        if (levels <= 0) {
+            player.sendMessage("§cКоличество должно быть положительным!");
+            return;
+        }
+
         String worldName;
 
-        if (args.length >= 3) {
-            worldName = args[2];
+        if (args.length > worldArg) {
+            worldName = args[worldArg];
         } else {
             worldName = borderManager.getPlayerSelectedWorld(player);
         }
 
-        WorldBorderData worldData = borderManager.getWorldData(worldName);
+        WorldBorderData worldData = borderManager.getWorldSnapshot(worldName);
         if (worldData == null) {
             player.sendMessage("§cМир §e" + worldName + "§c не найден!");
             return;
@@ -307,26 +342,30 @@ public class BorderCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
-        BorderManager.UpgradeResult result = borderManager.upgradeSpeed(worldName, up, player);
+        borderManager.upgradeSpeed(worldName, up, player, levels, result -> {
+            if (!player.isOnline()) {
+                return;
+            }
 
-        if (result.isSuccess()) {
-            player.sendMessage("§a✅ " + result.getMessage());
-            player.sendMessage("§7Стоимость: §e" + currencyManager.formatCurrency(result.getCost()));
-
-            String priceType = up ? "speed-up" : "speed-down";
-            double nextPrice = multiplierManager.getPrice(
-                    player, worldName, priceType,
-                    worldData.getSpeedUpgradeCost(up)
-            );
-            player.sendMessage("§7Следующая цена: §e" + currencyManager.formatCurrency(nextPrice));
-        } else {
-            player.sendMessage("§c❌ " + result.getMessage());
-        }
+            if (result.isSuccess()) {
+                player.sendMessage("§a✅ " + result.getMessage());
+                player.sendMessage("§7Стоимость: §e" + currencyManager.formatCurrency(result.getCost()));
+
+                String priceType = up ? "speed-up" : "speed-down";
+                double nextPrice = multiplierManager.getPrice(
+                        player, worldName, priceType,
+                        worldData.getSpeedUpgradeCost(up)
+                );
+                player.sendMessage("§7Следующая цена: §e" + currencyManager.formatCurrency(nextPrice));
+            } else {
+                player.sendMessage("§c❌ " + result.getMessage());
+            }
+        });
     }
 
     private void handleDamage(Player player, String[] args) {
         if (args.length < 2) {
-            player.sendMessage("§cИспользуйте: §e/border damage <up/down> [мир]");
+            player.sendMessage("§cИспользуйте: §e/border damage <up/down> [количество] [мир]");
             player.sendMessage("§cИли: §e/brd damage <up/down>");
             return;
         }
@@ -338,15 +377,32 @@ public class BorderCommand implements CommandExecutor, TabCompleter {
         }
 
         boolean down = direction.equals("down"); // down = уменьшить урон, up = увеличить
+        // Необязательное количество улучшений перед именем мира
+        int levels = 1;
+        int worldArg = 2;
+        if (args.length >= 3) {
+            try {
+                levels = Integer.parseInt(args[2]);
+                worldArg = 3;
+            } catch (NumberFormatException ignored) {
+                // Это имя мира
+            }
+        }
+
+        if (levels <= 0) {
+            player.sendMessage("§cКоличество должно быть положительным!");
+            return;
+        }
+
         String worldName;
 
-        if (args.length >= 3) {
-            worldName = args[2];
+        if (args.length > worldArg) {
+            worldName = args[worldArg];
         } else {
             worldName = borderManager.getPlayerSelectedWorld(player);
         }
 
-        WorldBorderData worldData = borderManager.getWorldData(worldName);
+        WorldBorderData worldData = borderManager.getWorldSnapshot(worldName);
         if (worldData == null) {
             player.sendMessage("§cМир §e" + worldName + "§c не найден!");
             return;
@@ -357,21 +413,25 @@ public class BorderCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
-        BorderManager.UpgradeResult result = borderManager.upgradeDamage(worldName, down, player);
+        borderManager.upgradeDamage(worldName, down, player, levels, result -> {
+            if (!player.isOnline()) {
+                return;
+            }
 
-        if (result.isSuccess()) {
-            player.sendMessage("§a✅ " + result.getMessage());
-            player.sendMessage("§7Стоимость: §e" + currencyManager.formatCurrency(result.getCost()));
-
-            String priceType = down ? "damage-down" : "damage-up";
-            double nextPrice = multiplierManager.getPrice(
-                    player, worldName, priceType,
-                    worldData.getDamageUpgradeCost(down)
-            );
-            player.sendMessage("§7Следующая цена: §e" + currencyManager.formatCurrency(nextPrice));
-        } else {
-            player.sendMessage("§c❌ " + result.getMessage());
-        }
+            if (result.isSuccess()) {
+                player.sendMessage("§a✅ " + result.getMessage());
+                player.sendMessage("§7Стоимость: §e" + currencyManager.formatCurrency(result.getCost()));
+
+                String priceType = down ? "damage-down" : "damage-up";
+                double nextPrice = multiplierManager.getPrice(
+                        player, worldName, priceType,
+                        worldData.getDamageUpgradeCost(down)
+                );
+                player.sendMessage("§7Следующая цена: §e" + currencyManager.formatCurrency(nextPrice));
+            } else {
+                player.sendMessage("§c❌ " + result.getMessage());
+            }
+        });
     }
 
     private void handleStatus(Player player, String[] args) {
@@ -383,7 +443,7 @@ public class BorderCommand implements CommandExecutor, TabCompleter {
             worldName = borderManager.getPlayerSelectedWorld(player);
         }
 
-        WorldBorderData worldData = borderManager.getWorldData(worldName);
+        WorldBorderData worldData = borderManager.getWorldSnapshot(worldName);
         if (worldData == null) {
             player.sendMessage("§cМир §e" + worldName + "§c не найден!");
             return;
@@ -460,15 +520,140 @@ public class BorderCommand implements CommandExecutor, TabCompleter {
         player.sendMessage("§6══════════════════════════════════════");
     }
 
+    private void handleTop(Player player, String[] args) {
+        LeaderboardManager leaderboards = plugin.getLeaderboardManager();
+        String type = args.length >= 2 ? args[1].toLowerCase() : "balance";
+
+        player.sendMessage("§6══════════════════════════════════════");
+        switch (type) {
+            case "balance": {
+                player.sendMessage("§eСамые богатые игроки");
+                player.sendMessage("§6──────────────────────────────────────");
+                sendPlayerTop(player, leaderboards, leaderboards.getRichest(TOP_SIZE),
+                        leaderboards.getBalanceRank(player.getUniqueId()));
+                break;
+            }
+
+            case "spent": {
+                String worldName = args.length >= 3 ? args[2] : borderManager.getPlayerSelectedWorld(player);
+                player.sendMessage("§eБольше всех потратили в мире §a" + worldName);
+                player.sendMessage("§6──────────────────────────────────────");
+                sendPlayerTop(player, leaderboards, leaderboards.getTopSpenders(worldName, TOP_SIZE),
+                        leaderboards.getSpentRank(worldName, player.getUniqueId()));
+                break;
+            }
+
+            case "worlds": {
+                player.sendMessage("§eСамые расширяемые миры");
+                player.sendMessage("§6──────────────────────────────────────");
+                for (Leaderboard.Entry<String> entry : leaderboards.getMostExpandedWorlds(TOP_SIZE)) {
+                    player.sendMessage("§7" + entry.rank() + ". §f" + entry.key() +
+                            " §7- §a" + (long) entry.value() + " §7расширений");
+                }
+                break;
+            }
+
+            default:
+                player.sendMessage("§cИспользуйте: §e/border top [balance|spent|worlds] [мир]");
+                break;
+        }
+
+        if (!leaderboards.isLoaded()) {
+            player.sendMessage("§7§oРейтинг еще загружается, показаны не все игроки");
+        }
+        player.sendMessage("§6══════════════════════════════════════");
+    }
+
+    private void sendPlayerTop(Player player, LeaderboardManager leaderboards,
+                               List<Leaderboard.Entry<UUID>> top, int ownRank) {
+        if (top.isEmpty()) {
+            player.sendMessage("§7Пока никого нет");
+            return;
+        }
+
+        for (Leaderboard.Entry<UUID> entry : top) {
+            String color = entry.key().equals(player.getUniqueId()) ? "§e" : "§f";
+            player.sendMessage("§7" + entry.rank() + ". " + color + leaderboards.getPlayerName(entry.key()) +
+                    " §7- §a" + currencyManager.formatCurrency(entry.value()));
+        }
+
+        if (ownRank > TOP_SIZE) {
+            player.sendMessage("§7Ваше место: §e" + ownRank);
+        }
+    }
+
     private void handleSell(Player player, String[] args) {
+        // Без аргументов продается предмет в руке
         if (args.length < 2) {
-            player.sendMessage("§cИспользуйте: §e/border sell <предмет> [количество]");
-            player.sendMessage("§cИли: §e/border sell §7(предмет в руке)");
+            sendSellResult(player, currencyManager.sellHandItem(player));
+            return;
+        }
+
+        if (args[1].equalsIgnoreCase("all")) {
+            handleSellInventory(player);
+            return;
+        }
+
+        Material material = Material.matchMaterial(args[1]);
+        if (material == null) {
+            player.sendMessage("§cНеизвестный предмет: §e" + args[1]);
+            return;
+        }
+
+        if (args.length >= 3 && args[2].equalsIgnoreCase("all")) {
+            sendSellResult(player, currencyManager.sellAllItems(player, material));
+            return;
+        }
+
+        int amount = 1;
+        if (args.length >= 3) {
+            try {
+                amount = Integer.parseInt(args[2]);
+            } catch (NumberFormatException e) {
+                player.sendMessage("§cВведите число или §eall§c!");
+                return;
+            }
+        }
+
+        if (amount <= 0) {
+            player.sendMessage("§cКоличество должно быть положительным!");
             return;
         }
 
-        // Реализация продажи будет в CurrencyManager
-        player.sendMessage("§aФункция продажи в разработке...");
+        sendSellResult(player, currencyManager.sellItem(player, material, amount));
+    }
+
+    private void sendSellResult(Player player, CurrencyManager.SellResult result) {
+        if (result.isSuccess()) {
+            player.sendMessage("§a✅ Продано §e" + result.getSoldCount() + "x " + result.getItemName() +
+                    " §aза §e" + currencyManager.formatCurrency(result.getEarned()));
+        } else {
+            player.sendMessage("§c❌ " + result.getMessage());
+        }
+    }
+
+    private void handleSellInventory(Player player) {
+        CurrencyManager.BulkSellResult result = currencyManager.sellInventory(player);
+        if (!result.isSuccess()) {
+            player.sendMessage("§c❌ " + result.getMessage());
+            return;
+        }
+
+        player.sendMessage("§6══════════════════════════════════════");
+        player.sendMessage("§a✅ " + result.getMessage());
+        player.sendMessage("§6──────────────────────────────────────");
+
+        // Сначала самые дорогие позиции
+        result.getBreakdown().entrySet().stream()
+                .sorted((e1, e2) -> Double.compare(e2.getValue().earned(), e1.getValue().earned()))
+                .forEach(entry -> player.sendMessage("  §7- §f" + entry.getKey().name() +
+                        " §7x" + entry.getValue().count() +
+                        " §7- §a" + currencyManager.formatCurrency(entry.getValue().earned())));
+
+        player.sendMessage("§6──────────────────────────────────────");
+        player.sendMessage("§7Всего: §e" + result.getSoldCount() + " §7предметов на §a" +
+                currencyManager.formatCurrency(result.getEarned()));
+        player.sendMessage("§6══════════════════════════════════════");
     }
 
     private void handlePrices(Player player, String[] args) {
@@ -480,7 +665,7 @@ public class BorderCommand implements CommandExecutor, TabCompleter {
             worldName = borderManager.getPlayerSelectedWorld(player);
         }
 
-        WorldBorderData worldData = borderManager.getWorldData(worldName);
+        WorldBorderData worldData = borderManager.getWorldSnapshot(worldName);
         if (worldData == null) {
             player.sendMessage("§cМир §e" + worldName + "§c не найден!");
             return;
@@ -556,7 +741,7 @@ public class BorderCommand implements CommandExecutor, TabCompleter {
             worldName = borderManager.getPlayerSelectedWorld(player);
         }
 
-        WorldBorderData worldData = borderManager.getWorldData(worldName);
+        WorldBorderData worldData = borderManager.getWorldSnapshot(worldName);
         if (worldData == null) {
             player.sendMessage("§cМир §e" + worldName + "§c не найден!");
             return;
@@ -610,7 +795,7 @@ public class BorderCommand implements CommandExecutor, TabCompleter {
             worldName = player.getWorld().getName();
         }
 
-        WorldBorderData worldData = borderManager.getWorldData(worldName);
+        WorldBorderData worldData = borderManager.getWorldSnapshot(worldName);
         if (worldData == null) {
             player.sendMessage("§cМир §e" + worldName + "§c не найден!");
             return;
@@ -690,7 +875,7 @@ public class BorderCommand implements CommandExecutor, TabCompleter {
         }
 
         String worldName = args[1];
-        WorldBorderData worldData = borderManager.getWorldData(worldName);
+        WorldBorderData worldData = borderManager.getWorldSnapshot(worldName);
 
         if (worldData == null) {
             player.sendMessage("§cМир §e" + worldName + "§c не найден!");
@@ -720,7 +905,7 @@ public class BorderCommand implements CommandExecutor, TabCompleter {
             worldName = borderManager.getPlayerSelectedWorld(player);
         }
 
-        WorldBorderData worldData = borderManager.getWorldData(worldName);
+        WorldBorderData worldData = borderManager.getWorldSnapshot(worldName);
         if (worldData == null) {
             player.sendMessage("§cМир §e" + worldName + "§c не найден!");
             return;
@@ -772,7 +957,7 @@ public class BorderCommand implements CommandExecutor, TabCompleter {
             worldName = borderManager.getPlayerSelectedWorld(player);
         }
 
-        WorldBorderData worldData = borderManager.getWorldData(worldName);
+        WorldBorderData worldData = borderManager.getWorldSnapshot(worldName);
         if (worldData == null) {
             player.sendMessage("§cМир §e" + worldName + "§c не найден!");
             return;
@@ -842,7 +1027,7 @@ public class BorderCommand implements CommandExecutor, TabCompleter {
             worldName = borderManager.getPlayerSelectedWorld(player);
         }
 
-        WorldBorderData worldData = borderManager.getWorldData(worldName);
+        WorldBorderData worldData = borderManager.getWorldSnapshot(worldName);
         if (worldData == null) {
             player.sendMessage("§cМир §e" + worldName + "§c не найден!");
             return;
@@ -1007,11 +1192,12 @@ public class BorderCommand implements CommandExecutor, TabCompleter {
                 "§7Основные команды:\n" +
                 "§e/border expand <мир> <блоков> §7- Расширить границу\n" +
                 "§e/border shrink <мир> <блоков> §7- Сузить границу\n" +
-                "§e/border speed <up/down> [мир] §7- Изменить скорость\n" +
-                "§e/border damage <up/down> [мир] §7- Изменить урон\n" +
+                "§e/border speed <up/down> [количество] [мир] §7- Изменить скорость\n" +
+                "§e/border damage <up/down> [количество] [мир] §7- Изменить урон\n" +
                 "§e/border status [мир] §7- Статус границы\n" +
                 "§e/border balance §7- Ваш баланс\n" +
-                "§e/border sell <предмет> §7- Продать предмет\n" +
+                "§e/border sell <предмет> [количество|all] §7- Продать предмет\n" +
+                "§e/border sell all §7- Продать весь инвентарь\n" +
                 "§e/border help [страница] §7- Эта справка\n" +
                 "§6══════════════════════════════════════");
 
@@ -1053,6 +1239,7 @@ public class BorderCommand implements CommandExecutor, TabCompleter {
                 "§e/border price next <тип> §7- Следующая цена\n" +
                 "§e/border price history <тип> §7- История цен\n" +
                 "§e/border stats §7- Ваша статистика\n" +
+                "§e/border top [balance|spent|worlds] [мир] §7- Рейтинги\n" +
                 "§7\n" +
                 "§7Типы цен:\n" +
                 "§7- §eexpand §7- Расширение\n" +
@@ -1195,8 +1382,15 @@ public class BorderCommand implements CommandExecutor, TabCompleter {
                     completions.add("down");
                     return StringUtil.copyPartialMatches(args[1], completions, new ArrayList<>());
                 } else if (args.length == 3) {
+                    // Количество улучшений или мир
+                    completions.add("1");
+                    completions.add("5");
+                    completions.add("10");
+                    completions.addAll(borderManager.getAvailableWorlds());
+                    return StringUtil.copyPartialMatches(args[2], completions, new ArrayList<>());
+                } else if (args.length == 4) {
                     // Дополнение для мира
-                    return StringUtil.copyPartialMatches(args[2], borderManager.getAvailableWorlds(), new ArrayList<>());
+                    return StringUtil.copyPartialMatches(args[3], borderManager.getAvailableWorlds(), new ArrayList<>());
                 }
                 break;
 
@@ -1219,6 +1413,17 @@ public class BorderCommand implements CommandExecutor, TabCompleter {
                 }
                 break;
 
+            case "top":
+                if (args.length == 2) {
+                    completions.add("balance");
+                    completions.add("spent");
+                    completions.add("worlds");
+                    return StringUtil.copyPartialMatches(args[1], completions, new ArrayList<>());
+                } else if (args.length == 3 && args[1].equalsIgnoreCase("spent")) {
+                    return StringUtil.copyPartialMatches(args[2], borderManager.getAvailableWorlds(), new ArrayList<>());
+                }
+                break;
+
             case "price":
                 if (args.length == 2) {
                     // next или history
@@ -1253,8 +1458,10 @@ public class BorderCommand implements CommandExecutor, TabCompleter {
 
             case "sell":
                 if (args.length == 2) {
-                    // Предметы для продажи
-                    return StringUtil.copyPartialMatches(args[1], currencyManager.getSellableItemNames(), new ArrayList<>());
+                    // Предметы для продажи или весь инвентарь
+                    completions.add("all");
+                    completions.addAll(currencyManager.getSellableItemNames());
+                    return StringUtil.copyPartialMatches(args[1], completions, new ArrayList<>());
                 } else if (args.length == 3) {
                     // Количество
                     completions.add("1");
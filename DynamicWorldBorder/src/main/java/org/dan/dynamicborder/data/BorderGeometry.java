@@ -0,0 +1,161 @@
+package org.dan.dynamicborder.data;
+
+import org.bukkit.Location;
+import org.bukkit.WorldBorder;
+
+/**
+ * Неизменяемый снимок геометрии границы мира: центр и размер, а во время
+ * плавного изменения - начальный и конечный размер и время движения.
+ *
+ * Снимок обновляется только при изменении границы, поэтому проверка
+ * движения игрока считает расстояние на примитивах без обращений к
+ * WorldBorder и без создания объектов Location.
+ */
+public final class BorderGeometry {
+
+    // Снимок, прочитанный из границы без события, проверяется повторно
+    private static final long UNTRACKED_TTL_MILLIS = 1000;
+
+    private final double centerX;
+    private final double centerZ;
+    private final double fromSize;
+    private final double toSize;
+    private final long startMillis;
+    private final long durationMillis;
+    private final long expiresAt;
+
+    private BorderGeometry(double centerX, double centerZ, double fromSize, double toSize,
+                           long startMillis, long durationMillis, long expiresAt) {
+        this.centerX = centerX;
+        this.centerZ = centerZ;
+        this.fromSize = fromSize;
+        this.toSize = toSize;
+        this.startMillis = startMillis;
+        this.durationMillis = durationMillis;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Снимок текущего состояния границы. API не сообщает, движется ли граница,
+     * поэтому такой снимок считается неподвижным и живет недолго
+     */
+    public static BorderGeometry of(WorldBorder border, long now) {
+        Location center = border.getCenter();
+        double size = border.getSize();
+        return new BorderGeometry(center.getX(), center.getZ(), size, size, now, 0, now + UNTRACKED_TTL_MILLIS);
+    }
+
+    /**
+     * Граница начала менять размер (или изменила его мгновенно при duration = 0)
+     */
+    public BorderGeometry withResize(double oldSize, double newSize, long durationMillis, long now) {
+        if (durationMillis <= 0) {
+            return new BorderGeometry(centerX, centerZ, newSize, newSize, now, 0, Long.MAX_VALUE);
+        }
+        return new BorderGeometry(centerX, centerZ, oldSize, newSize, now, durationMillis, Long.MAX_VALUE);
+    }
+
+    /**
+     * Граница сменила центр
+     */
+    public BorderGeometry withCenter(double x, double z) {
+        return new BorderGeometry(x, z, fromSize, toSize, startMillis, durationMillis, expiresAt);
+    }
+
+    /**
+     * Снимок устарел и должен быть перечитан из границы
+     */
+    public boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+
+    /**
+     * Размер границы в момент now с учетом плавного изменения
+     */
+    public double getSize(long now) {
+        if (durationMillis <= 0) {
+            return toSize;
+        }
+
+        long elapsed = now - startMillis;
+        if (elapsed >= durationMillis) {
+            return toSize;
+        }
+        if (elapsed <= 0) {
+            return fromSize;
+        }
+        return fromSize + (toSize - fromSize) * ((double) elapsed / durationMillis);
+    }
+
+    /**
+     * Расстояние до ближайшей стороны границы: внутри - до стены,
+     * снаружи - до квадрата границы
+     */
+    public double distanceToBorder(double x, double z, long now) {
+        double half = getSize(now) / 2.0;
+        double dx = Math.abs(x - centerX);
+        double dz = Math.abs(z - centerZ);
+
+        double outsideX = Math.max(0, dx - half);
+        double outsideZ = Math.max(0, dz - half);
+
+        // Если внутри границы по обеим осям
+        if (outsideX == 0 && outsideZ == 0) {
+            return Math.min(half - dx, half - dz);
+        }
+
+        return Math.sqrt(outsideX * outsideX + outsideZ * outsideZ);
+    }
+
+    /**
+     * Точка за границей
+     */
+    public boolean isOutside(double x, double z, long now) {
+        double half = getSize(now) / 2.0;
+        return Math.abs(x - centerX) > half || Math.abs(z - centerZ) > half;
+    }
+
+    /**
+     * Через сколько миллисекунд неподвижная точка окажется не дальше inset
+     * блоков от стены сужающейся границы (по линейной интерполяции размера)
+     *
+     * @return 0 - уже, -1 - не окажется до конца движения
+     */
+    public long millisUntilWithin(double x, double z, double inset, long now) {
+        // Расстояние до стены квадратной границы изнутри: половина размера минус
+        // наибольшее смещение от центра по оси
+        double target = Math.max(Math.abs(x - centerX), Math.abs(z - centerZ)) + inset;
+        if (getSize(now) / 2.0 <= target) {
+            return 0;
+        }
+        if (!isMoving(now) || toSize >= fromSize || toSize / 2.0 > target) {
+            return -1;
+        }
+
+        double fraction = (fromSize / 2.0 - target) / ((fromSize - toSize) / 2.0);
+        long reachAt = startMillis + (long) Math.ceil(durationMillis * fraction);
+        return Math.max(0, reachAt - now);
+    }
+
+    public double getCenterX() {
+        return centerX;
+    }
+
+    public double getCenterZ() {
+        return centerZ;
+    }
+
+    /**
+     * Скорость движения стороны границы во время плавного изменения, блоков/сек
+     */
+    public double getEdgeSpeed(long now) {
+        if (!isMoving(now)) {
+            return 0;
+        }
+        return Math.abs(toSize - fromSize) / 2.0 / (durationMillis / 1000.0);
+    }
+
+    public boolean isMoving(long now) {
+        return durationMillis > 0 && now - startMillis < durationMillis;
+    }
+}
\ No newline at end of file
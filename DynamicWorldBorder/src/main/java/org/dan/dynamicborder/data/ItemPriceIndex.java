@@ -0,0 +1,139 @@
+package org.dan.dynamicborder.data;
+
+import org.bukkit.Material;
+
+import java.util.*;
+
+/**
+ * Неизменяемая таблица цен предметов магазина.
+ *
+ * Цена хранится в double[] по Material.ordinal(): поиск цены при продаже -
+ * одно чтение массива без хеширования и упаковки в Double. Отсортированные
+ * списки для /border items и /border prices строятся один раз при создании
+ * таблицы. Изменение цены создает новую таблицу, которую CurrencyManager
+ * подменяет атомарно.
+ */
+public final class ItemPriceIndex {
+
+    private static final Material[] MATERIALS = Material.values();
+
+    public static final ItemPriceIndex EMPTY = new ItemPriceIndex(new double[MATERIALS.length]);
+
+    // 0 - предмет не продается
+    private final double[] prices;
+    private final int size;
+    // Предметы по имени без учета регистра
+    private final Map<String, Double> byName;
+    private final List<String> names;
+    // Предметы по убыванию цены
+    private final Material[] byPrice;
+
+    private ItemPriceIndex(double[] prices) {
+        this.prices = prices;
+
+        List<Material> sellable = new ArrayList<>();
+        for (Material material : MATERIALS) {
+            if (prices[material.ordinal()] > 0) {
+                sellable.add(material);
+            }
+        }
+        this.size = sellable.size();
+
+        sellable.sort(Comparator.comparing(Material::name, String.CASE_INSENSITIVE_ORDER));
+        Map<String, Double> named = new LinkedHashMap<>();
+        List<String> nameList = new ArrayList<>(size);
+        for (Material material : sellable) {
+            named.put(material.name(), prices[material.ordinal()]);
+            nameList.add(material.name());
+        }
+        this.byName = Collections.unmodifiableMap(named);
+        this.names = Collections.unmodifiableList(nameList);
+
+        sellable.sort((m1, m2) -> Double.compare(prices[m2.ordinal()], prices[m1.ordinal()]));
+        this.byPrice = sellable.toArray(new Material[0]);
+    }
+
+    /**
+     * Таблица из карты цен; цены не больше нуля пропускаются
+     */
+    public static ItemPriceIndex of(Map<Material, Double> items) {
+        double[] prices = new double[MATERIALS.length];
+        for (Map.Entry<Material, Double> entry : items.entrySet()) {
+            Double price = entry.getValue();
+            if (price != null && price > 0) {
+                prices[entry.getKey().ordinal()] = price;
+            }
+        }
+        return new ItemPriceIndex(prices);
+    }
+
+    /**
+     * Новая таблица с измененной ценой предмета
+     */
+    public ItemPriceIndex with(Material material, double price) {
+        double[] copy = prices.clone();
+        copy[material.ordinal()] = Math.max(0, price);
+        return new ItemPriceIndex(copy);
+    }
+
+    /**
+     * Новая таблица без предмета
+     */
+    public ItemPriceIndex without(Material material) {
+        if (prices[material.ordinal()] <= 0) {
+            return this;
+        }
+        return with(material, 0);
+    }
+
+    /**
+     * Цена предмета или 0, если предмет не продается
+     */
+    public double price(Material material) {
+        return prices[material.ordinal()];
+    }
+
+    public boolean isSellable(Material material) {
+        return prices[material.ordinal()] > 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Имя -> цена, по алфавиту
+     */
+    public Map<String, Double> byName() {
+        return byName;
+    }
+
+    /**
+     * Имена продаваемых предметов по алфавиту
+     */
+    public List<String> names() {
+        return names;
+    }
+
+    /**
+     * count самых дорогих предметов: имя -> цена
+     */
+    public Map<String, Double> top(int count) {
+        Map<String, Double> top = new LinkedHashMap<>();
+        for (int i = 0; i < byPrice.length && i < count; i++) {
+            top.put(byPrice[i].name(), prices[byPrice[i].ordinal()]);
+        }
+        return top;
+    }
+
+    /**
+     * Копия цен для записи в items.yml
+     */
+    public Map<Material, Double> toMap() {
+        Map<Material, Double> items = new EnumMap<>(Material.class);
+        for (Material material : byPrice) {
+            items.put(material, prices[material.ordinal()]);
+        }
+        return items;
+    }
+}
\ No newline at end of file
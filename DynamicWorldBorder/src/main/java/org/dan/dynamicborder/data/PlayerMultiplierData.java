@@ -222,6 +222,13 @@ public class PlayerMultiplierData implements ConfigurationSerializable {
         return pmd;
     }
 
+    /**
+     * Независимая копия для записи в фоне
+     */
+    public PlayerMultiplierData copy() {
+        return deserialize(serialize());
+    }
+
     // ========== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ==========
 
     /**
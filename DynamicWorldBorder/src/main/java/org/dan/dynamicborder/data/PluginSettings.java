@@ -0,0 +1,230 @@
+package org.dan.dynamicborder.data;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.*;
+
+/**
+ * Неизменяемый снимок настроек плагина.
+ *
+ * ConfigManager разбирает config.yml и messages.yml один раз при загрузке
+ * и публикует готовый снимок через volatile-ссылку. Горячие пути (вход
+ * игрока, проверка границы, создание мира) читают обычные поля без поиска
+ * по ключам YAML. Перезагрузка просто подменяет ссылку целиком.
+ */
+public record PluginSettings(
+        General general,
+        Storage storage,
+        Economy economy,
+        Border border,
+        WorldDefaults worldDefaults,
+        Messages messages) {
+
+    /**
+     * Раздел settings
+     */
+    public record General(
+            String currencyName,
+            String currencySymbol,
+            String defaultWorld,
+            boolean shopEnabled,
+            boolean checkUpdates,
+            int saveInterval,
+            int cacheCleanup,
+            boolean autoBackup,
+            int backupInterval,
+            int backupKeep,
+            int journalCompactRecords,
+            int journalCompactInterval,
+            long writeBehindFlushInterval) {
+    }
+
+    /**
+     * Раздел storage
+     */
+    public record Storage(String type) {
+    }
+
+    /**
+     * Раздел economy: чем оплачиваются покупки границы
+     *
+     * @param provider   internal - внутренняя валюта, vault - провайдер Vault
+     * @param vaultAsync вызывать Vault вне основного потока
+     */
+    public record Economy(String provider, boolean vaultAsync) {
+
+        public boolean useVault() {
+            return provider.equals("vault");
+        }
+    }
+
+    /**
+     * Раздел border: урон, предупреждения и периодическая проверка игроков
+     */
+    public record Border(
+            boolean damageEnabled,
+            long damageCooldown,
+            boolean warningEnabled,
+            int warningDistance,
+            boolean showInfoOnJoin,
+            int checkInterval,
+            double sweepBudgetMillis,
+            boolean adaptiveChecks,
+            double maxPlayerSpeed) {
+    }
+
+    /**
+     * Диапазон значений (лимиты игроков)
+     */
+    public record Range(double min, double max) {
+    }
+
+    /**
+     * Цены улучшений для нового мира
+     */
+    public record Costs(
+            double expand,
+            double shrink,
+            double speedUp,
+            double speedDown,
+            double damageDown,
+            double damageUp) {
+    }
+
+    /**
+     * Раздел worlds.defaults. Отсутствующие в конфиге подразделы равны null,
+     * тогда у нового мира остаются значения по умолчанию WorldBorderData
+     */
+    public record WorldDefaults(
+            double currentSize,
+            double currentSpeed,
+            double currentDamage,
+            boolean enabled,
+            boolean upgradable,
+            Range sizeLimits,
+            Range speedLimits,
+            Range damageLimits,
+            Costs costs) {
+    }
+
+    /**
+     * Сообщения из messages.yml с уже замененными цветовыми кодами
+     */
+    public record Messages(Map<String, String> strings, Map<String, List<String>> lists) {
+
+        public Messages {
+            strings = Map.copyOf(strings);
+            lists = Map.copyOf(lists);
+        }
+
+        public String get(String path) {
+            return strings.get(path);
+        }
+
+        public List<String> getList(String path) {
+            return lists.getOrDefault(path, List.of());
+        }
+    }
+
+    // ========== РАЗБОР ==========
+
+    /**
+     * Разобрать конфиги в снимок
+     *
+     * @param main     config.yml
+     * @param messages messages.yml, может быть null
+     */
+    public static PluginSettings parse(FileConfiguration main, FileConfiguration messages) {
+        General general = new General(
+                main.getString("settings.currency-name", "Граничных блоков"),
+                main.getString("settings.currency-symbol", "⧈"),
+                main.getString("settings.default-world", "world"),
+                main.getBoolean("settings.shop-enabled", true),
+                main.getBoolean("settings.check-updates", true),
+                main.getInt("settings.save-interval", 300),
+                main.getInt("settings.cache-cleanup", 600),
+                main.getBoolean("settings.auto-backup", true),
+                main.getInt("settings.backup-interval", 3600),
+                main.getInt("settings.backup-keep", 10),
+                main.getInt("settings.balance-journal.compact-records", 10000),
+                main.getInt("settings.balance-journal.compact-interval", 60),
+                main.getLong("settings.write-behind.flush-interval", 5000L));
+
+        Storage storage = new Storage(main.getString("storage.type", "yaml").toLowerCase());
+
+        Economy economy = new Economy(
+                main.getString("economy.provider", "internal").toLowerCase(),
+                main.getBoolean("economy.vault-async", false));
+
+        Border border = new Border(
+                main.getBoolean("border.damage.enabled", true),
+                main.getLong("border.damage.cooldown", 1000),
+                main.getBoolean("border.warning.enabled", true),
+                main.getInt("border.warning.distance", 10),
+                main.getBoolean("border.info.show-on-join", true),
+                main.getInt("border.check-interval", 20),
+                main.getDouble("border.sweep-budget-ms", 1.0),
+                main.getBoolean("border.adaptive.enabled", true),
+                main.getDouble("border.adaptive.max-player-speed", 40.0));
+
+        return new PluginSettings(general, storage, economy, border, parseWorldDefaults(main), parseMessages(messages));
+    }
+
+    private static WorldDefaults parseWorldDefaults(FileConfiguration config) {
+        if (!config.contains("worlds.defaults")) {
+            return null;
+        }
+
+        String path = "worlds.defaults.";
+        Costs costs = null;
+        if (config.contains(path + "costs")) {
+            costs = new Costs(
+                    config.getDouble(path + "costs.expand", 1.0),
+                    config.getDouble(path + "costs.shrink", 0.5),
+                    config.getDouble(path + "costs.speed-up", 15.0),
+                    config.getDouble(path + "costs.speed-down", 5.0),
+                    config.getDouble(path + "costs.damage-down", 12.0),
+                    config.getDouble(path + "costs.damage-up", 8.0));
+        }
+
+        return new WorldDefaults(
+                config.getDouble(path + "current-size", 1000.0),
+                config.getDouble(path + "current-speed", 1.0),
+                config.getDouble(path + "current-damage", 2.0),
+                config.getBoolean(path + "enabled", true),
+                config.getBoolean(path + "upgradable", true),
+                parseRange(config, path + "limits.size", 50.0, 30000.0),
+                parseRange(config, path + "limits.speed", 0.1, 10.0),
+                parseRange(config, path + "limits.damage", 0.0, 20.0),
+                costs);
+    }
+
+    private static Range parseRange(FileConfiguration config, String path, double min, double max) {
+        if (!config.contains(path)) {
+            return null;
+        }
+        return new Range(config.getDouble(path + ".min", min), config.getDouble(path + ".max", max));
+    }
+
+    private static Messages parseMessages(ConfigurationSection config) {
+        Map<String, String> strings = new HashMap<>();
+        Map<String, List<String>> lists = new HashMap<>();
+
+        if (config != null) {
+            for (String key : config.getKeys(true)) {
+                if (config.isString(key)) {
+                    strings.put(key, config.getString(key).replace("&", "§"));
+                } else if (config.isList(key)) {
+                    List<String> list = new ArrayList<>();
+                    for (String line : config.getStringList(key)) {
+                        list.add(line.replace("&", "§"));
+                    }
+                    lists.put(key, List.copyOf(list));
+                }
+            }
+        }
+
+        return new Messages(strings, lists);
+    }
+}
\ No newline at end of file
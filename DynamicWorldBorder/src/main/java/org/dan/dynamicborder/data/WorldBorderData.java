@@ -75,6 +75,11 @@ public class WorldBorderData implements ConfigurationSerializable {
     // Настройки магазина для мира
     private Map<String, Double> worldItemPrices = new HashMap<>();
 
+    // Счетчик изменений (не сохраняется): периодическое сохранение
+    // пропускает миры, у которых он не изменился с прошлой записи
+    private volatile long modificationCount = 0;
+    private volatile long savedModificationCount = 0;
+
     public WorldBorderData() {
         this.creationTime = System.currentTimeMillis();
         this.lastModified = System.currentTimeMillis();
@@ -137,6 +142,7 @@ public class WorldBorderData implements ConfigurationSerializable {
 
     public long getCreationTime() { return creationTime; }
     public long getLastModified() { return lastModified; }
+    public long getModificationCount() { return modificationCount; }
     public long getLastExpansion() { return lastExpansion; }
     public long getLastShrink() { return lastShrink; }
 
@@ -335,22 +341,38 @@ public class WorldBorderData implements ConfigurationSerializable {
     }
 
     public void incrementSpeedUpgrades() {
-        totalSpeedUpgrades++;
+        incrementSpeedUpgrades(1);
+    }
+
+    public void incrementSpeedUpgrades(int count) {
+        totalSpeedUpgrades += count;
         updateModified();
     }
 
     public void incrementSpeedDowngrades() {
-        totalSpeedDowngrades++;
+        incrementSpeedDowngrades(1);
+    }
+
+    public void incrementSpeedDowngrades(int count) {
+        totalSpeedDowngrades += count;
         updateModified();
     }
 
     public void incrementDamageUpgrades() {
-        totalDamageUpgrades++;
+        incrementDamageUpgrades(1);
+    }
+
+    public void incrementDamageUpgrades(int count) {
+        totalDamageUpgrades += count;
         updateModified();
     }
 
     public void incrementDamageDowngrades() {
-        totalDamageDowngrades++;
+        incrementDamageDowngrades(1);
+    }
+
+    public void incrementDamageDowngrades(int count) {
+        totalDamageDowngrades += count;
         updateModified();
     }
 
@@ -377,6 +399,31 @@ public class WorldBorderData implements ConfigurationSerializable {
     // ========== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ==========
     private void updateModified() {
         this.lastModified = System.currentTimeMillis();
+        this.modificationCount++;
+    }
+
+    /**
+     * Есть ли изменения, не попавшие в хранилище
+     */
+    public boolean isDirty() {
+        return modificationCount != savedModificationCount;
+    }
+
+    /**
+     * Независимая копия для записи в фоне: основной поток может продолжать
+     * менять исходные данные, пока копия сериализуется
+     */
+    public WorldBorderData snapshot() {
+        Map<String, Object> values = serialize();
+        values.put("worldItemPrices", new HashMap<>(worldItemPrices));
+        return deserialize(values);
+    }
+
+    /**
+     * Отметить состояние с указанным счетчиком как сохраненное
+     */
+    public void markSaved(long modificationCount) {
+        this.savedModificationCount = modificationCount;
     }
 
     public boolean canExpand(double blocks) {
@@ -390,21 +437,29 @@ public class WorldBorderData implements ConfigurationSerializable {
     }
 
     public boolean canUpgradeSpeed(boolean up) {
+        return canUpgradeSpeed(up, 1);
+    }
+
+    public boolean canUpgradeSpeed(boolean up, int steps) {
         if (up) {
-            double newSpeed = currentSpeed + upgradeStepSpeed;
+            double newSpeed = currentSpeed + upgradeStepSpeed * steps;
             return newSpeed <= playerMaxSpeed && newSpeed <= absoluteMaxSpeed;
         } else {
-            double newSpeed = currentSpeed - upgradeStepSpeed;
+            double newSpeed = currentSpeed - upgradeStepSpeed * steps;
             return newSpeed >= playerMinSpeed && newSpeed >= absoluteMinSpeed;
         }
     }
 
     public boolean canUpgradeDamage(boolean down) {
+        return canUpgradeDamage(down, 1);
+    }
+
+    public boolean canUpgradeDamage(boolean down, int steps) {
         if (down) {
-            double newDamage = currentDamage - upgradeStepDamage;
+            double newDamage = currentDamage - upgradeStepDamage * steps;
             return newDamage >= playerMinDamage && newDamage >= absoluteMinDamage;
         } else {
-            double newDamage = currentDamage + upgradeStepDamage;
+            double newDamage = currentDamage + upgradeStepDamage * steps;
             return newDamage <= playerMaxDamage && newDamage <= absoluteMaxDamage;
         }
     }
@@ -0,0 +1,200 @@
+package org.dan.dynamicborder.listeners;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+import org.dan.dynamicborder.DynamicBorderPlugin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Колесо времени для предсказанных пересечений границы.
+ *
+ * Когда граница начинает плавно сужаться, для каждого игрока в мире
+ * заранее считается тик, в который до него дойдет зона предупреждения
+ * и сама граница. Игрок кладется в ячейку колеса этого тика, и проверка
+ * выполняется ровно тогда, без опроса игроков на протяжении всего сужения.
+ *
+ * Колесо - кольцо из WHEEL_SIZE ячеек по одному тику; записи дальше одного
+ * оборота лежат в своей ячейке и ждут нужного оборота. Новое изменение
+ * границы мира удаляет старые записи этого мира: записи каждого мира
+ * собраны в отдельный набор, а запись помнит свое место в ячейке, поэтому
+ * удаление не перебирает колесо. Записи хранят UUID, а не игрока, и не
+ * удерживают вышедших игроков. Только основной поток.
+ */
+public class BorderCrossingWheel {
+
+    private static final int WHEEL_SIZE = 512; // степень двойки
+    private static final int MASK = WHEEL_SIZE - 1;
+
+    private final DynamicBorderPlugin plugin;
+    private final Consumer<Player> fire;
+    private final List<Entry>[] buckets;
+    // Записи по мирам - для отмены при новом изменении границы
+    private final Map<String, Set<Entry>> byWorld = new HashMap<>();
+
+    private long currentTick = 0;
+    private int pending = 0;
+    private BukkitTask task;
+
+    // Статистика
+    private long totalScheduled = 0;
+    private long totalFired = 0;
+    private long totalCancelled = 0;
+
+    @SuppressWarnings("unchecked")
+    public BorderCrossingWheel(DynamicBorderPlugin plugin, Consumer<Player> fire) {
+        this.plugin = plugin;
+        this.fire = fire;
+        this.buckets = new List[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            buckets[i] = new ArrayList<>();
+        }
+    }
+
+    public void start() {
+        if (task == null) {
+            task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+        }
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * Выполнить проверку игрока через delayTicks тиков
+     */
+    public void schedule(Player player, long delayTicks) {
+        long at = currentTick + Math.max(1, delayTicks);
+        String worldName = player.getWorld().getName();
+
+        Entry entry = new Entry(player.getUniqueId(), worldName, at);
+        List<Entry> bucket = buckets[(int) (at & MASK)];
+        entry.slot = bucket.size();
+        bucket.add(entry);
+        byWorld.computeIfAbsent(worldName, name -> new HashSet<>()).add(entry);
+        pending++;
+        totalScheduled++;
+    }
+
+    /**
+     * Отменить все записи мира (граница мира снова изменилась)
+     */
+    public void cancelWorld(String worldName) {
+        Set<Entry> entries = byWorld.remove(worldName);
+        if (entries == null) {
+            return;
+        }
+
+        for (Entry entry : entries) {
+            removeFromBucket(entry);
+        }
+        pending -= entries.size();
+        totalCancelled += entries.size();
+    }
+
+    public void clear() {
+        for (List<Entry> bucket : buckets) {
+            bucket.clear();
+        }
+        byWorld.clear();
+        pending = 0;
+    }
+
+    /**
+     * Убрать запись из ячейки: на ее место встает последняя запись ячейки
+     */
+    private void removeFromBucket(Entry entry) {
+        List<Entry> bucket = buckets[(int) (entry.tick & MASK)];
+        int last = bucket.size() - 1;
+        Entry moved = bucket.get(last);
+        bucket.set(entry.slot, moved);
+        moved.slot = entry.slot;
+        bucket.remove(last);
+    }
+
+    private void tick() {
+        currentTick++;
+        if (pending == 0) {
+            return;
+        }
+
+        List<Entry> bucket = buckets[(int) (currentTick & MASK)];
+        if (bucket.isEmpty()) {
+            return;
+        }
+
+        // Из ячейки забираются только записи этого оборота
+        List<Entry> due = new ArrayList<>();
+        for (int i = bucket.size() - 1; i >= 0; i--) {
+            Entry entry = bucket.get(i);
+            if (entry.tick <= currentTick) {
+                removeFromBucket(entry);
+                forgetInWorld(entry);
+                due.add(entry);
+            }
+        }
+        pending -= due.size();
+
+        for (Entry entry : due) {
+            Player player = Bukkit.getPlayer(entry.uuid);
+            if (player == null || !player.getWorld().getName().equals(entry.worldName)) {
+                totalCancelled++;
+                continue;
+            }
+
+            totalFired++;
+            fire.accept(player);
+        }
+    }
+
+    private void forgetInWorld(Entry entry) {
+        Set<Entry> entries = byWorld.get(entry.worldName);
+        if (entries != null && entries.remove(entry) && entries.isEmpty()) {
+            byWorld.remove(entry.worldName);
+        }
+    }
+
+    // ========== СТАТИСТИКА ==========
+
+    public int getPending() {
+        return pending;
+    }
+
+    public long getTotalScheduled() {
+        return totalScheduled;
+    }
+
+    public long getTotalFired() {
+        return totalFired;
+    }
+
+    public long getTotalCancelled() {
+        return totalCancelled;
+    }
+
+    private static final class Entry {
+        private final UUID uuid;
+        private final String worldName;
+        private final long tick;
+        // Индекс в ячейке колеса
+        private int slot;
+
+        private Entry(UUID uuid, String worldName, long tick) {
+            this.uuid = uuid;
+            this.worldName = worldName;
+            this.tick = tick;
+        }
+    }
+}
\ No newline at end of file
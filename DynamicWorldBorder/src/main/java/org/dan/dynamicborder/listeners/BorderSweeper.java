@@ -0,0 +1,275 @@
+package org.dan.dynamicborder.listeners;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+import org.dan.dynamicborder.DynamicBorderPlugin;
+import org.dan.dynamicborder.data.PluginSettings;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Одна задача проверки границы для всех игроков.
+ *
+ * Игроки хранятся в плотном массиве, задача каждый тик проверяет очередную
+ * порцию по кругу, так что за интервал проверки (по умолчанию 20 тиков)
+ * каждый игрок проверяется один раз. Тик ограничен бюджетом времени:
+ * не уложившиеся проверки переносятся на следующие тики и учитываются
+ * как отложенные. Для каждого игрока хранится тик следующей нужной проверки:
+ * далекие от границы игроки пропускаются до этого тика. Только основной поток.
+ *
+ * Рядом с игроком хранится его слот сессии: обход передает в проверку
+ * индекс игрока в массиве, по которому проверка без поиска по UUID берет
+ * слот и ставит следующую проверку. Индекс действителен до выхода игрока.
+ */
+public class BorderSweeper {
+
+    public static final int NO_INDEX = -1;
+
+    private final DynamicBorderPlugin plugin;
+    private final ObjIntConsumer<Player> check;
+
+    // Плотный массив отслеживаемых игроков, удаление - перестановкой последнего
+    private Player[] players = new Player[64];
+    private long[] nextCheckTick = new long[64];
+    private int[] sessionSlots = new int[64];
+    private int size = 0;
+    private final Map<UUID, Integer> slots = new HashMap<>();
+
+    private int cursor = 0;
+    private double credit = 0; // сколько проверок положено выполнить к этому тику
+    private long currentTick = 0;
+    private BukkitTask task;
+
+    // Статистика
+    private long totalChecks = 0;
+    private long totalDeferred = 0;
+    private long totalAvoided = 0;
+    private int lastTickChecks = 0;
+    private int lastTickDeferred = 0;
+    private double lastTickMillis = 0;
+    private double maxTickMillis = 0;
+
+    public BorderSweeper(DynamicBorderPlugin plugin, ObjIntConsumer<Player> check) {
+        this.plugin = plugin;
+        this.check = check;
+    }
+
+    public void start() {
+        if (task == null) {
+            task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+        }
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    // ========== ИГРОКИ ==========
+
+    /**
+     * Отслеживать игрока
+     *
+     * @param sessionSlot слот сессии игрока (PlayerSessionSlots)
+     */
+    public void track(Player player, int sessionSlot) {
+        UUID uuid = player.getUniqueId();
+        Integer slot = slots.get(uuid);
+        if (slot != null) {
+            // Повторный вход: обновляем ссылку на объект игрока
+            players[slot] = player;
+            nextCheckTick[slot] = 0;
+            sessionSlots[slot] = sessionSlot;
+            return;
+        }
+
+        if (size == players.length) {
+            players = Arrays.copyOf(players, players.length * 2);
+            nextCheckTick = Arrays.copyOf(nextCheckTick, nextCheckTick.length * 2);
+            sessionSlots = Arrays.copyOf(sessionSlots, sessionSlots.length * 2);
+        }
+
+        players[size] = player;
+        nextCheckTick[size] = 0;
+        sessionSlots[size] = sessionSlot;
+        slots.put(uuid, size);
+        size++;
+    }
+
+    public void untrack(Player player) {
+        Integer slot = slots.remove(player.getUniqueId());
+        if (slot == null) {
+            return;
+        }
+
+        int last = --size;
+        if (slot != last) {
+            Player moved = players[last];
+            players[slot] = moved;
+            nextCheckTick[slot] = nextCheckTick[last];
+            sessionSlots[slot] = sessionSlots[last];
+            slots.put(moved.getUniqueId(), slot);
+        }
+        players[last] = null;
+
+        if (cursor > size) {
+            cursor = 0;
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            players[i] = null;
+        }
+        Arrays.fill(nextCheckTick, 0);
+        size = 0;
+        cursor = 0;
+        credit = 0;
+        slots.clear();
+    }
+
+    // ========== РАСПИСАНИЕ ПРОВЕРОК ==========
+
+    /**
+     * Индекс игрока в массиве или NO_INDEX, если игрок не отслеживается
+     */
+    public int indexOf(Player player) {
+        Integer slot = slots.get(player.getUniqueId());
+        return slot != null ? slot : NO_INDEX;
+    }
+
+    /**
+     * Слот сессии игрока по индексу
+     */
+    public int sessionSlot(int index) {
+        return sessionSlots[index];
+    }
+
+    /**
+     * Нужна ли игроку проверка сейчас. Статистику избежанных не меняет:
+     * она считается только в обходе
+     */
+    public boolean isDue(int index) {
+        return index == NO_INDEX || nextCheckTick[index] <= currentTick;
+    }
+
+    /**
+     * Не проверять игрока ближайшие ticks тиков (0 - проверять всегда)
+     */
+    public void scheduleNext(int index, long ticks) {
+        if (index != NO_INDEX) {
+            nextCheckTick[index] = ticks > 0 ? currentTick + ticks : 0;
+        }
+    }
+
+    /**
+     * Снять отсрочку игрока (телепорт, смена мира)
+     */
+    public void recheckNow(Player player) {
+        scheduleNext(indexOf(player), 0);
+    }
+
+    /**
+     * Снять отсрочки всех игроков (граница изменилась)
+     */
+    public void recheckAll() {
+        Arrays.fill(nextCheckTick, 0, size, 0);
+    }
+
+    // ========== ТИК ==========
+
+    private void tick() {
+        currentTick++;
+        if (size == 0) {
+            credit = 0;
+            lastTickChecks = 0;
+            lastTickDeferred = 0;
+            return;
+        }
+
+        PluginSettings.Border settings = plugin.getConfigManager().getSettings().border();
+        int interval = Math.max(1, settings.checkInterval());
+        long budgetNanos = (long) (settings.sweepBudgetMillis() * 1_000_000);
+
+        // Равномерная доля игроков на тик; долг за прошлые тики больше круга не копится
+        credit = Math.min(credit + (double) size / interval, size);
+        int due = (int) credit;
+
+        long start = System.nanoTime();
+        int done = 0;
+        int checked = 0;
+        while (done < due) {
+            if (done > 0 && budgetNanos > 0 && System.nanoTime() - start >= budgetNanos) {
+                break;
+            }
+
+            if (cursor >= size) {
+                cursor = 0;
+            }
+            int slot = cursor++;
+            Player player = players[slot];
+            if (nextCheckTick[slot] > currentTick) {
+                totalAvoided++;
+            } else if (player.isOnline()) {
+                check.accept(player, slot);
+                checked++;
+            }
+            done++;
+        }
+
+        credit -= done;
+        lastTickChecks = checked;
+        lastTickDeferred = due - done;
+        totalChecks += checked;
+        totalDeferred += lastTickDeferred;
+
+        lastTickMillis = (System.nanoTime() - start) / 1_000_000.0;
+        if (lastTickMillis > maxTickMillis) {
+            maxTickMillis = lastTickMillis;
+        }
+    }
+
+    // ========== СТАТИСТИКА ==========
+
+    public int getTrackedCount() {
+        return size;
+    }
+
+    public long getTotalChecks() {
+        return totalChecks;
+    }
+
+    public long getTotalDeferred() {
+        return totalDeferred;
+    }
+
+    /**
+     * Проверки, пропущенные благодаря отсрочке далеких от границы игроков
+     */
+    public long getTotalAvoided() {
+        return totalAvoided;
+    }
+
+    public int getLastTickChecks() {
+        return lastTickChecks;
+    }
+
+    public int getLastTickDeferred() {
+        return lastTickDeferred;
+    }
+
+    public double getLastTickMillis() {
+        return lastTickMillis;
+    }
+
+    public double getMaxTickMillis() {
+        return maxTickMillis;
+    }
+}
\ No newline at end of file
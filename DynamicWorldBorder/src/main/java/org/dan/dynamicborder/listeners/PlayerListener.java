@@ -2,6 +2,8 @@ package org.dan.dynamicborder.listeners;
 
 import org.dan.dynamicborder.DynamicBorderPlugin;
 import org.dan.dynamicborder.managers.BorderManager;
+import org.dan.dynamicborder.data.BorderGeometry;
+import org.dan.dynamicborder.data.PluginSettings;
 import org.dan.dynamicborder.data.WorldBorderData;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
@@ -11,60 +13,89 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
 import org.bukkit.event.world.WorldLoadEvent;
 import org.bukkit.event.world.WorldUnloadEvent;
 import org.bukkit.event.entity.EntityDamageEvent;
-import org.bukkit.scheduler.BukkitTask;
+import io.papermc.paper.event.world.border.WorldBorderBoundsChangeEvent;
+import io.papermc.paper.event.world.border.WorldBorderBoundsChangeFinishEvent;
+import io.papermc.paper.event.world.border.WorldBorderCenterChangeEvent;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
 
 public class PlayerListener implements Listener {
 
     private final DynamicBorderPlugin plugin;
     private final BorderManager borderManager;
-    private final Map<UUID, BukkitTask> damageTasks = new HashMap<>();
-    private final Map<String, Long> lastDamageTime = new HashMap<>();
-
-    // Конфигурация
-    private boolean enableBorderDamage = true;
-    private boolean enableBorderWarning = true;
-    private int warningDistance = 10;
-    private long damageCooldown = 1000; // 1 секунда
+    private final BorderSweeper sweeper;
+    private final BorderCrossingWheel crossings;
+    // Кулдауны урона и предупреждений по слоту сессии игрока
+    private final PlayerSessionSlots sessions = new PlayerSessionSlots();
+    private static final long WARNING_COOLDOWN = 3000; // 3 секунды
+    // Переиспользуемая позиция для чтения координат игрока (только основной поток)
+    private final Location scratchLocation = new Location(null, 0, 0, 0);
 
     public PlayerListener(DynamicBorderPlugin plugin) {
         this.plugin = plugin;
         this.borderManager = plugin.getBorderManager();
-        loadConfig();
+        this.sweeper = new BorderSweeper(plugin, this::checkPlayerBorder);
+        this.crossings = new BorderCrossingWheel(plugin, this::checkPlayerBorder);
+
+        // Игроки, уже находящиеся на сервере (например, после перезагрузки плагина)
+        List<UUID> online = new ArrayList<>();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            sweeper.track(player, sessions.acquire(player));
+            online.add(player.getUniqueId());
+        }
+        sweeper.start();
+        crossings.start();
+
+        if (!online.isEmpty()) {
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> online.forEach(this::preloadPlayer));
+        }
     }
 
-    private void loadConfig() {
-        // Используем явный тип вместо var
-        org.bukkit.configuration.file.FileConfiguration config = plugin.getConfig();
-        enableBorderDamage = config.getBoolean("border.damage.enabled", true);
-        enableBorderWarning = config.getBoolean("border.warning.enabled", true);
-        warningDistance = config.getInt("border.warning.distance", 10);
-        damageCooldown = config.getLong("border.damage.cooldown", 1000);
+    /**
+     * Поток предварительного входа: баланс и множители читаются из
+     * хранилища до входа игрока, основной поток потом берет их из памяти
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            preloadPlayer(event.getUniqueId());
+        }
+    }
+
+    private void preloadPlayer(UUID uuid) {
+        plugin.getCurrencyManager().preload(uuid);
+        plugin.getMultiplierManager().preload(uuid);
+    }
+
+    /**
+     * Текущие настройки границы (снимок конфига, меняется при перезагрузке)
+     */
+    private PluginSettings.Border settings() {
+        return plugin.getConfigManager().getSettings().border();
     }
 
     @EventHandler(priority = EventPriority.MONITOR)
     public void onPlayerJoin(PlayerJoinEvent event) {
         Player player = event.getPlayer();
-        UUID uuid = player.getUniqueId();
+
+        // Периодическая проверка со слотом сессии игрока
+        sweeper.track(player, sessions.acquire(player));
 
         // Проверка границы при входе
         checkPlayerBorder(player);
 
-        // Запуск периодической проверки
-        startBorderCheckTask(player);
-
         // Отправка информации о границе
         sendBorderInfo(player);
     }
@@ -72,18 +103,18 @@ public class PlayerListener implements Listener {
     @EventHandler(priority = EventPriority.MONITOR)
     public void onPlayerQuit(PlayerQuitEvent event) {
         Player player = event.getPlayer();
-        UUID uuid = player.getUniqueId();
 
-        // Остановка задач
-        stopBorderCheckTask(player);
+        // Остановка проверок
+        sweeper.untrack(player);
 
-        // Очистка данных
-        lastDamageTime.remove(uuid);
+        // Освобождение слота сессии
+        sessions.release(player);
     }
 
     @EventHandler(priority = EventPriority.HIGH)
     public void onPlayerMove(PlayerMoveEvent event) {
-        if (!enableBorderDamage && !enableBorderWarning) {
+        PluginSettings.Border settings = settings();
+        if (!settings.damageEnabled() && !settings.warningEnabled()) {
             return;
         }
 
@@ -96,13 +127,31 @@ public class PlayerListener implements Listener {
             return;
         }
 
-        // Проверка границы
-        checkPlayerBorder(player);
+        // Игрок далеко от границы и еще не мог до нее дойти
+        int index = sweeper.indexOf(player);
+        if (!sweeper.isDue(index)) {
+            return;
+        }
+
+        // Проверка границы по координатам события, без лишних Location
+        checkPlayerBorder(player, index, to.getWorld(), to.getX(), to.getZ());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(PlayerTeleportEvent event) {
+        // Телепорт не проходит через onPlayerMove - отсрочка больше не верна
+        sweeper.recheckNow(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        sweeper.recheckNow(event.getPlayer());
     }
 
     @EventHandler(priority = EventPriority.MONITOR)
     public void onPlayerRespawn(PlayerRespawnEvent event) {
         Player player = event.getPlayer();
+        sweeper.recheckNow(player);
 
         // Проверка границы после возрождения
         Bukkit.getScheduler().runTaskLater(plugin, () -> checkPlayerBorder(player), 20L);
@@ -158,66 +207,143 @@ public class PlayerListener implements Listener {
         String worldName = world.getName();
 
         plugin.logInfo("Мир выгружен: " + worldName);
+        borderManager.invalidateGeometry(worldName);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBorderBoundsChange(WorldBorderBoundsChangeEvent event) {
+        // Событие приходит до изменения границы
+        long duration = event.getType() == WorldBorderBoundsChangeEvent.Type.INSTANT_MOVE ? 0 : event.getDuration();
+        borderManager.onBorderResize(event.getWorld(), event.getOldSize(), event.getNewSize(), duration);
+        sweeper.recheckAll();
+
+        // Прежние предсказания для этого мира больше не верны
+        crossings.cancelWorld(event.getWorld().getName());
+        if (duration > 0 && event.getNewSize() < event.getOldSize()) {
+            scheduleCrossings(event.getWorld());
+        }
+    }
+
+    /**
+     * Граница начала сужаться: для каждого игрока мира заранее считается тик,
+     * когда до него дойдет зона предупреждения и сама граница
+     */
+    private void scheduleCrossings(World world) {
+        PluginSettings.Border settings = settings();
+        BorderGeometry geometry = borderManager.getGeometry(world);
+        long now = System.currentTimeMillis();
 
-        // Остановка задач для игроков этого мира
         for (Player player : world.getPlayers()) {
-            stopBorderCheckTask(player);
+            Location location = player.getLocation(scratchLocation);
+            double x = location.getX();
+            double z = location.getZ();
+
+            if (settings.warningEnabled()) {
+                scheduleCrossing(player, geometry.millisUntilWithin(x, z, settings.warningDistance(), now));
+            }
+            if (settings.damageEnabled()) {
+                // Урон - со следующего тика после касания стены
+                long millis = geometry.millisUntilWithin(x, z, 0, now);
+                scheduleCrossing(player, millis < 0 ? millis : millis + 50);
+            }
+        }
+    }
+
+    private void scheduleCrossing(Player player, long millis) {
+        if (millis >= 0) {
+            // 50 мс в тике
+            crossings.schedule(player, (millis + 49) / 50);
         }
     }
 
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onBorderBoundsChangeFinish(WorldBorderBoundsChangeFinishEvent event) {
+        borderManager.onBorderResize(event.getWorld(), event.getNewSize(), event.getNewSize(), 0);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBorderCenterChange(WorldBorderCenterChangeEvent event) {
+        Location center = event.getNewCenter();
+        borderManager.onBorderCenterChange(event.getWorld(), center.getX(), center.getZ());
+        sweeper.recheckAll();
+        crossings.cancelWorld(event.getWorld().getName());
+    }
+
     // ========== МЕТОДЫ ПРОВЕРКИ ГРАНИЦЫ ==========
 
     private void checkPlayerBorder(Player player) {
+        checkPlayerBorder(player, sweeper.indexOf(player));
+    }
+
+    /**
+     * Проверка из обхода: index - индекс игрока в BorderSweeper
+     */
+    private void checkPlayerBorder(Player player, int index) {
         if (player == null || !player.isOnline()) {
             return;
         }
 
-        World world = player.getWorld();
-        String worldName = world.getName();
+        Location location = player.getLocation(scratchLocation);
+        checkPlayerBorder(player, index, player.getWorld(), location.getX(), location.getZ());
+    }
 
+    /**
+     * Проверка по готовым координатам: на горячем пути движения
+     * считается на примитивах по снимку геометрии границы. Слот сессии
+     * берется из обхода по индексу, без поиска по UUID
+     */
+    private void checkPlayerBorder(Player player, int index, World world, double x, double z) {
         // Получаем данные границы
-        WorldBorderData data = borderManager.getWorldData(worldName);
+        WorldBorderData data = borderManager.getWorldData(world.getName());
         if (data == null || !data.isEnabled()) {
             return;
         }
 
-        WorldBorder border = world.getWorldBorder();
-        Location playerLoc = player.getLocation();
-        Location borderCenter = border.getCenter();
+        PluginSettings.Border settings = settings();
+        BorderGeometry geometry = borderManager.getGeometry(world);
+        long now = System.currentTimeMillis();
 
-        // Рассчитываем расстояние до границы
-        double distanceToBorder = calculateDistanceToBorder(playerLoc, border);
+        int slot = index != BorderSweeper.NO_INDEX ? sweeper.sessionSlot(index) : sessions.acquire(player);
 
         // Проверка предупреждения
-        if (enableBorderWarning && distanceToBorder <= warningDistance) {
-            sendBorderWarning(player, distanceToBorder, data);
+        if (settings.warningEnabled()) {
+            double distanceToBorder = geometry.distanceToBorder(x, z, now);
+            if (distanceToBorder <= settings.warningDistance()) {
+                sendBorderWarning(player, slot, now, distanceToBorder);
+            }
         }
 
         // Проверка урона
-        if (enableBorderDamage && isOutsideBorder(player)) {
-            applyBorderDamage(player, data);
+        boolean outside = geometry.isOutside(x, z, now);
+        if (settings.damageEnabled() && outside) {
+            applyBorderDamage(player, slot, now, settings.damageCooldown(), data);
         }
-    }
-
-    private double calculateDistanceToBorder(Location location, WorldBorder border) {
-        Location center = border.getCenter();
-        double size = border.getSize() / 2.0;
 
-        double dx = Math.abs(location.getX() - center.getX());
-        double dz = Math.abs(location.getZ() - center.getZ());
+        scheduleNextCheck(index, settings, data, geometry, outside, x, z, now);
+    }
 
-        // Расстояние до ближайшей стороны границы
-        double distanceX = Math.max(0, dx - size);
-        double distanceZ = Math.max(0, dz - size);
+    /**
+     * Отложить следующую проверку до самого раннего тика, когда игрок
+     * может оказаться в зоне предупреждения: игрок бежит к границе с
+     * максимальной скоростью, а граница идет ему навстречу со своей
+     */
+    private void scheduleNextCheck(int index, PluginSettings.Border settings, WorldBorderData data,
+                                   BorderGeometry geometry, boolean outside, double x, double z, long now) {
+        if (!settings.adaptiveChecks() || outside) {
+            sweeper.scheduleNext(index, 0);
+            return;
+        }
 
-        // Если внутри границы по обеим осям
-        if (distanceX == 0 && distanceZ == 0) {
-            // Находим минимальное расстояние до границы
-            return Math.min(size - dx, size - dz);
+        double margin = geometry.distanceToBorder(x, z, now) - Math.max(settings.warningDistance(), 0);
+        double borderSpeed = Math.max(data.getCurrentSpeed(), geometry.getEdgeSpeed(now));
+        double closingSpeed = settings.maxPlayerSpeed() + Math.max(borderSpeed, 0);
+        if (margin <= 0 || closingSpeed <= 0) {
+            sweeper.scheduleNext(index, 0);
+            return;
         }
 
-        // Если за границей по одной или обеим осям
-        return Math.sqrt(distanceX * distanceX + distanceZ * distanceZ);
+        // Блоков в секунду -> блоков за тик
+        sweeper.scheduleNext(index, (long) (margin / (closingSpeed / 20.0)));
     }
 
     private boolean isOutsideBorder(Player player) {
@@ -225,34 +351,14 @@ public class PlayerListener implements Listener {
             return false;
         }
 
-        World world = player.getWorld();
-        WorldBorder border = world.getWorldBorder();
-        Location playerLoc = player.getLocation();
-        Location borderCenter = border.getCenter();
-
-        double borderSize = border.getSize() / 2.0;
-        double dx = Math.abs(playerLoc.getX() - borderCenter.getX());
-        double dz = Math.abs(playerLoc.getZ() - borderCenter.getZ());
-
-        return dx > borderSize || dz > borderSize;
+        Location location = player.getLocation(scratchLocation);
+        return borderManager.getGeometry(player.getWorld())
+                .isOutside(location.getX(), location.getZ(), System.currentTimeMillis());
     }
 
-    private void applyBorderDamage(Player player, WorldBorderData data) {
-        if (player == null || data == null) {
-            return;
-        }
-
-        UUID uuid = player.getUniqueId();
+    private void applyBorderDamage(Player player, int slot, long now, long cooldown, WorldBorderData data) {
         double damage = data.getCurrentDamage();
 
-        // Проверка кулдауна
-        long now = System.currentTimeMillis();
-        Long lastDamage = lastDamageTime.get(uuid.toString());
-
-        if (lastDamage != null && (now - lastDamage) < damageCooldown) {
-            return;
-        }
-
         // Применяем урон
         if (damage > 0) {
             // Проверяем креатив и режим призрака
@@ -262,9 +368,13 @@ public class PlayerListener implements Listener {
                 return;
             }
 
+            // Проверка кулдауна
+            if (!sessions.tryDamage(slot, now, cooldown)) {
+                return;
+            }
+
             // Наносим урон
             player.damage(damage);
-            lastDamageTime.put(uuid.toString(), now);
 
             // Визуальные эффекты
             showBorderDamageEffects(player);
@@ -301,9 +411,7 @@ public class PlayerListener implements Listener {
         }
 
         // Отправляем информацию о границе (если включено в конфиге)
-        boolean showInfoOnJoin = plugin.getConfig().getBoolean("border.info.show-on-join", true);
-
-        if (showInfoOnJoin) {
+        if (settings().showInfoOnJoin()) {
             List<String> info = createBorderInfo(player, data);
             for (String line : info) {
                 player.sendMessage(line);
@@ -330,17 +438,9 @@ public class PlayerListener implements Listener {
         return info;
     }
 
-    private void sendBorderWarning(Player player, double distance, WorldBorderData data) {
-        if (player == null || !enableBorderWarning) {
-            return;
-        }
-
+    private void sendBorderWarning(Player player, int slot, long now, double distance) {
         // Проверяем кулдаун для предупреждений
-        UUID uuid = player.getUniqueId();
-        long now = System.currentTimeMillis();
-        Long lastWarning = lastDamageTime.get(uuid + "_warning");
-
-        if (lastWarning != null && (now - lastWarning) < 3000) { // 3 секунды кулдаун
+        if (!sessions.tryWarning(slot, now, WARNING_COOLDOWN)) {
             return;
         }
 
@@ -355,7 +455,6 @@ public class PlayerListener implements Listener {
         }
 
         player.sendMessage(message);
-        lastDamageTime.put(uuid + "_warning", now);
 
         // Визуальный эффект
         if (distance <= 5) {
@@ -364,41 +463,6 @@ public class PlayerListener implements Listener {
         }
     }
 
-    // ========== УПРАВЛЕНИЕ ЗАДАЧАМИ ==========
-
-    private void startBorderCheckTask(Player player) {
-        if (player == null || !player.isOnline()) {
-            return;
-        }
-
-        UUID uuid = player.getUniqueId();
-
-        // Останавливаем существующую задачу
-        stopBorderCheckTask(player);
-
-        // Создаем новую задачу для периодической проверки
-        BukkitTask task = Bukkit.getScheduler().runTaskTimer(plugin, () -> {
-            if (player.isOnline()) {
-                checkPlayerBorder(player);
-            }
-        }, 20L, 20L); // Каждую секунду
-
-        damageTasks.put(uuid, task);
-    }
-
-    private void stopBorderCheckTask(Player player) {
-        if (player == null) {
-            return;
-        }
-
-        UUID uuid = player.getUniqueId();
-        BukkitTask task = damageTasks.remove(uuid);
-
-        if (task != null && !task.isCancelled()) {
-            task.cancel();
-        }
-    }
-
     // ========== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ==========
 
     private void applyWorldBorder(World world, WorldBorderData data) {
@@ -426,35 +490,32 @@ public class PlayerListener implements Listener {
      * Обновить настройки из конфига
      */
     public void reloadConfig() {
-        loadConfig();
-
-        // Останавливаем все задачи
-        for (BukkitTask task : damageTasks.values()) {
-            if (task != null && !task.isCancelled()) {
-                task.cancel();
-            }
-        }
-        damageTasks.clear();
-
-        // Перезапускаем задачи для онлайн игроков
+        // Настройки читаются из снимка на каждом тике, пересобираем только список игроков
+        sweeper.clear();
         for (Player player : Bukkit.getOnlinePlayers()) {
-            startBorderCheckTask(player);
+            sweeper.track(player, sessions.acquire(player));
         }
     }
 
+    public BorderSweeper getSweeper() {
+        return sweeper;
+    }
+
+    public BorderCrossingWheel getCrossings() {
+        return crossings;
+    }
+
     /**
      * Очистка ресурсов
      */
     public void cleanup() {
-        // Останавливаем все задачи
-        for (BukkitTask task : damageTasks.values()) {
-            if (task != null && !task.isCancelled()) {
-                task.cancel();
-            }
-        }
-        damageTasks.clear();
-
-        // Очищаем карты
-        lastDamageTime.clear();
+        // Останавливаем проверки
+        sweeper.stop();
+        sweeper.clear();
+        crossings.stop();
+        crossings.clear();
+
+        // Освобождаем слоты сессий
+        sessions.clear();
     }
 }
\ No newline at end of file
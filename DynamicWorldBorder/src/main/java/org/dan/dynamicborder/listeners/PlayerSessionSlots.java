@@ -0,0 +1,98 @@
+package org.dan.dynamicborder.listeners;
+
+import org.bukkit.entity.Player;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Слоты сессий игроков для кулдаунов урона и предупреждений.
+ *
+ * Игрок получает номер слота при входе и освобождает его при выходе,
+ * освободившиеся номера переиспользуются. Время кулдаунов хранится в
+ * массивах long по номеру слота, поэтому проверка кулдауна - одно чтение
+ * массива без строк, хешей и упаковки. Только основной поток.
+ */
+public class PlayerSessionSlots {
+
+    private final Map<UUID, Integer> slots = new HashMap<>();
+    private int[] freeSlots = new int[16];
+    private int freeCount = 0;
+    private int nextSlot = 0;
+
+    private long[] lastDamage = new long[64];
+    private long[] lastWarning = new long[64];
+
+    /**
+     * Выдать слот игроку (при входе). Повторный вызов возвращает тот же слот
+     */
+    public int acquire(Player player) {
+        Integer existing = slots.get(player.getUniqueId());
+        if (existing != null) {
+            return existing;
+        }
+
+        int slot = freeCount > 0 ? freeSlots[--freeCount] : nextSlot++;
+        if (slot >= lastDamage.length) {
+            int capacity = lastDamage.length * 2;
+            lastDamage = Arrays.copyOf(lastDamage, capacity);
+            lastWarning = Arrays.copyOf(lastWarning, capacity);
+        }
+
+        lastDamage[slot] = 0;
+        lastWarning[slot] = 0;
+        slots.put(player.getUniqueId(), slot);
+        return slot;
+    }
+
+    /**
+     * Освободить слот игрока (при выходе)
+     */
+    public void release(Player player) {
+        Integer slot = slots.remove(player.getUniqueId());
+        if (slot == null) {
+            return;
+        }
+
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    public void clear() {
+        slots.clear();
+        freeCount = 0;
+        nextSlot = 0;
+    }
+
+    // ========== КУЛДАУНЫ ==========
+
+    /**
+     * Прошел ли кулдаун урона; если да - отметить новое время
+     */
+    public boolean tryDamage(int slot, long now, long cooldown) {
+        if (now - lastDamage[slot] < cooldown) {
+            return false;
+        }
+        lastDamage[slot] = now;
+        return true;
+    }
+
+    /**
+     * Прошел ли кулдаун предупреждения; если да - отметить новое время
+     */
+    public boolean tryWarning(int slot, long now, long cooldown) {
+        if (now - lastWarning[slot] < cooldown) {
+            return false;
+        }
+        lastWarning[slot] = now;
+        return true;
+    }
+
+    public int size() {
+        return slots.size();
+    }
+}
\ No newline at end of file
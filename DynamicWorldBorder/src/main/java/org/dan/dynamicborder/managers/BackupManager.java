@@ -0,0 +1,615 @@
+package org.dan.dynamicborder.managers;
+
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.dan.dynamicborder.DynamicBorderPlugin;
+import org.dan.dynamicborder.storage.StorageBackend;
+import org.dan.dynamicborder.utils.ConfigUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Инкрементальные бэкапы данных плагина.
+ *
+ * Файлы режутся на блоки по 1 МБ, каждый блок хранится один раз в
+ * data/backups/objects под своим SHA-256 в сжатом виде. Бэкап - это
+ * манифест (data/backups/manifests/ИМЯ.yml) со списком файлов и их блоков,
+ * поэтому неизменившиеся миры и файлы игроков между бэкапами не копируются.
+ *
+ * Создание и восстановление выполняются в потоке автосохранения, после
+ * записи текущих данных. На время создания журнал балансов и очередь
+ * записи множителей сброшены на диск и остановлены, поэтому файлы в бэкапе
+ * соответствуют одному моменту. Открытая база SQLite не копируется как
+ * файл: ее согласованную копию пишет хранилище.
+ *
+ * Восстановление проверяет каждый блок, собирает файлы в
+ * data/backups/staging и применяется при следующем запуске, до загрузки
+ * менеджеров. Маркер RESTORE хранит полный список файлов бэкапа, поэтому
+ * прерванное применение можно продолжить.
+ */
+public class BackupManager {
+
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final String RESTORE_MARKER = "RESTORE";
+
+    private final DynamicBorderPlugin plugin;
+    private final File dataFolder;
+    private final File backupsFolder;
+    private final File objectsFolder;
+    private final File manifestsFolder;
+    private final File stagingFolder;
+
+    public BackupManager(DynamicBorderPlugin plugin) {
+        this.plugin = plugin;
+        this.dataFolder = plugin.getDataFolder();
+        this.backupsFolder = new File(dataFolder, "data/backups");
+        this.objectsFolder = new File(backupsFolder, "objects");
+        this.manifestsFolder = new File(backupsFolder, "manifests");
+        this.stagingFolder = new File(backupsFolder, "staging");
+    }
+
+    // ========== СОЗДАНИЕ ==========
+
+    /**
+     * Создать бэкап в фоне
+     *
+     * @param prefix   префикс имени (auto, manual)
+     * @param callback вызывается в основном потоке, может быть null
+     */
+    public void createBackup(String prefix, Consumer<BackupResult> callback) {
+        String name = prefix + "_" + new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
+        plugin.runAfterSave(() -> complete(createWhenFlushed(name), callback));
+    }
+
+    /**
+     * Создать бэкап, пока журнал балансов и очередь записи множителей стоят:
+     * иначе сворачивание журнала или пакет записи между копированием базы
+     * и остальных файлов дали бы несогласованный бэкап
+     */
+    private BackupResult createWhenFlushed(String name) {
+        Supplier<BackupResult> backup = () -> createBackupNow(name);
+
+        MultiplierManager multipliers = plugin.getMultiplierManager();
+        if (multipliers != null) {
+            Supplier<BackupResult> inner = backup;
+            backup = () -> multipliers.callWithSavesFlushed(inner);
+        }
+
+        CurrencyManager currency = plugin.getCurrencyManager();
+        if (currency != null) {
+            Supplier<BackupResult> inner = backup;
+            backup = () -> currency.callWithJournalFlushed(inner);
+        }
+
+        try {
+            return backup.get();
+        } catch (RuntimeException e) {
+            return new BackupResult(false, "Ошибка создания бэкапа: " + e.getMessage());
+        }
+    }
+
+    private BackupResult createBackupNow(String name) {
+        long start = System.currentTimeMillis();
+        File manifestFile = new File(manifestsFolder, name + ".yml");
+        if (manifestFile.exists()) {
+            return new BackupResult(false, "Бэкап " + name + " уже существует");
+        }
+
+        YamlConfiguration manifest = new YamlConfiguration();
+        manifest.set("name", name);
+        manifest.set("created", System.currentTimeMillis());
+
+        BackupStats stats = new BackupStats();
+        StorageBackend storage = plugin.getStorage();
+        String databasePath = storage != null ? storage.getDatabasePath() : null;
+
+        try {
+            for (String path : collectFiles(databasePath)) {
+                storeFile(new File(dataFolder, path), path, manifest, stats);
+            }
+
+            if (databasePath != null) {
+                File copy = new File(backupsFolder, "database.tmp");
+                Files.deleteIfExists(copy.toPath());
+                try {
+                    if (!storage.backupDatabase(copy)) {
+                        return new BackupResult(false, "Не удалось скопировать базу данных для бэкапа");
+                    }
+                    // Копия встает в бэкап на место базы
+                    storeFile(copy, databasePath, manifest, stats);
+                } finally {
+                    Files.deleteIfExists(copy.toPath());
+                }
+            }
+
+            manifest.set("files-count", stats.files);
+            manifest.set("total-bytes", stats.totalBytes);
+            manifest.set("stored-bytes", stats.storedBytes);
+
+            // Манифест пишется последним: бэкап существует, только если все блоки на месте
+            if (!ConfigUtils.saveYamlAtomic(manifest, manifestFile)) {
+                return new BackupResult(false, "Не удалось записать манифест бэкапа");
+            }
+
+        } catch (IOException e) {
+            return new BackupResult(false, "Ошибка создания бэкапа: " + e.getMessage());
+        }
+
+        applyRetention();
+
+        long time = System.currentTimeMillis() - start;
+        return new BackupResult(true, String.format("Бэкап %s создан за %d мс: файлов %d, новых блоков %d (%s)",
+                name, time, stats.files, stats.newChunks, formatBytes(stats.storedBytes)), name);
+    }
+
+    /**
+     * Разрезать файл на блоки и добавить его в манифест под именем path
+     */
+    private void storeFile(File file, String path, YamlConfiguration manifest, BackupStats stats) throws IOException {
+        List<String> chunks = new ArrayList<>();
+        MessageDigest fileDigest = sha256();
+        long size = 0;
+
+        // Потоковое чтение: в памяти не больше одного блока
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            byte[] buffer = new byte[CHUNK_SIZE];
+            int read;
+            while ((read = in.readNBytes(buffer, 0, CHUNK_SIZE)) > 0) {
+                fileDigest.update(buffer, 0, read);
+                String hash = hex(sha256().digest(Arrays.copyOf(buffer, read)));
+                chunks.add(hash);
+                size += read;
+
+                long written = storeChunk(hash, buffer, read);
+                if (written > 0) {
+                    stats.newChunks++;
+                    stats.storedBytes += written;
+                }
+            }
+        }
+
+        String key = "files." + encodePath(path);
+        manifest.set(key + ".path", path);
+        manifest.set(key + ".size", size);
+        manifest.set(key + ".sha256", hex(fileDigest.digest()));
+        manifest.set(key + ".chunks", chunks);
+
+        stats.files++;
+        stats.totalBytes += size;
+    }
+
+    /**
+     * Сохранить блок, если его еще нет
+     *
+     * @return размер записанного сжатого блока, 0 если блок уже был
+     */
+    private long storeChunk(String hash, byte[] buffer, int length) throws IOException {
+        File object = objectFile(hash);
+        if (object.exists()) {
+            return 0;
+        }
+
+        File parent = object.getParentFile();
+        if (!parent.exists()) {
+            parent.mkdirs();
+        }
+
+        File temp = File.createTempFile(hash + ".", ".tmp", parent);
+        try {
+            try (OutputStream out = new GZIPOutputStream(new FileOutputStream(temp))) {
+                out.write(buffer, 0, length);
+            }
+            // Если такой же блок успели записать, замена ничего не меняет - содержимое идентично
+            ConfigUtils.moveAtomic(temp.toPath(), object.toPath());
+        } finally {
+            temp.delete();
+        }
+
+        return object.length();
+    }
+
+    /**
+     * Файлы данных, попадающие в бэкап (пути относительно папки плагина)
+     *
+     * @param databasePath открытая база хранилища, она копируется отдельно;
+     *                     null - копировать все
+     */
+    private List<String> collectFiles(String databasePath) throws IOException {
+        List<String> result = new ArrayList<>();
+        Path root = dataFolder.toPath();
+
+        try (var stream = Files.walk(root)) {
+            stream.filter(Files::isRegularFile).forEach(path -> {
+                String relative = root.relativize(path).toString().replace(File.separatorChar, '/');
+                if (isBackedUp(relative) && !relative.equals(databasePath)) {
+                    result.add(relative);
+                }
+            });
+        }
+
+        Collections.sort(result);
+        return result;
+    }
+
+    private boolean isBackedUp(String path) {
+        if (path.startsWith("data/backups/") || path.startsWith("logs/")) {
+            return false;
+        }
+        // Файлы WAL и разделяемой памяти SQLite имеют смысл только вместе с открытой базой
+        if (path.endsWith(".tmp") || path.endsWith(".jar") || path.endsWith("-wal") || path.endsWith("-shm")) {
+            return false;
+        }
+        return path.endsWith(".yml") || path.startsWith("data/");
+    }
+
+    // ========== СПИСОК ==========
+
+    /**
+     * Список бэкапов, новые первыми
+     */
+    public List<BackupInfo> listBackups() {
+        List<BackupInfo> result = new ArrayList<>();
+
+        File[] manifests = manifestsFolder.listFiles((dir, name) -> name.endsWith(".yml"));
+        if (manifests == null) {
+            return result;
+        }
+
+        for (File manifestFile : manifests) {
+            YamlConfiguration manifest = YamlConfiguration.loadConfiguration(manifestFile);
+            result.add(new BackupInfo(
+                    manifestFile.getName().replace(".yml", ""),
+                    manifest.getLong("created", manifestFile.lastModified()),
+                    manifest.getInt("files-count", 0),
+                    manifest.getLong("total-bytes", 0),
+                    manifest.getLong("stored-bytes", 0)
+            ));
+        }
+
+        result.sort((a, b) -> Long.compare(b.getCreated(), a.getCreated()));
+        return result;
+    }
+
+    // ========== ВОССТАНОВЛЕНИЕ ==========
+
+    /**
+     * Проверить бэкап и подготовить его к применению при следующем запуске
+     */
+    public void restoreBackup(String name, Consumer<BackupResult> callback) {
+        plugin.runAfterSave(() -> complete(stageRestore(name), callback));
+    }
+
+    private BackupResult stageRestore(String name) {
+        if (name.contains("/") || name.contains("\\") || name.contains("..")) {
+            return new BackupResult(false, "Некорректное имя бэкапа: " + name);
+        }
+
+        File manifestFile = new File(manifestsFolder, name + ".yml");
+        if (!manifestFile.exists()) {
+            return new BackupResult(false, "Бэкап не найден: " + name);
+        }
+
+        YamlConfiguration manifest = YamlConfiguration.loadConfiguration(manifestFile);
+
+        try {
+            deleteRecursively(stagingFolder);
+            stagingFolder.mkdirs();
+
+            List<String> paths = new ArrayList<>();
+            if (manifest.contains("files")) {
+                for (String key : manifest.getConfigurationSection("files").getKeys(false)) {
+                    String path = manifest.getString("files." + key + ".path");
+                    String expected = manifest.getString("files." + key + ".sha256");
+                    List<String> chunks = manifest.getStringList("files." + key + ".chunks");
+
+                    if (path == null || path.contains("..")) {
+                        throw new IOException("некорректный путь в манифесте: " + path);
+                    }
+
+                    File target = new File(stagingFolder, path);
+                    target.getParentFile().mkdirs();
+
+                    MessageDigest fileDigest = sha256();
+                    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(target))) {
+                        for (String hash : chunks) {
+                            byte[] chunk = readChunk(hash);
+                            fileDigest.update(chunk);
+                            out.write(chunk);
+                        }
+                    }
+
+                    if (!hex(fileDigest.digest()).equals(expected)) {
+                        throw new IOException("контрольная сумма не совпадает: " + path);
+                    }
+                    paths.add(path);
+                }
+            }
+
+            // Маркер пишется последним: без него частично собранная папка игнорируется.
+            // Первая строка - имя бэкапа, дальше - все его файлы
+            StringBuilder marker = new StringBuilder(name);
+            for (String path : paths) {
+                marker.append('\n').append(path);
+            }
+            ConfigUtils.writeAtomic(new File(stagingFolder, RESTORE_MARKER),
+                    marker.toString().getBytes(StandardCharsets.UTF_8));
+
+            return new BackupResult(true, "Бэкап " + name + " проверен (" + paths.size() +
+                    " файлов) и будет применен при следующем запуске сервера", name);
+
+        } catch (IOException e) {
+            deleteRecursively(stagingFolder);
+            return new BackupResult(false, "Бэкап " + name + " поврежден: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Прочитать блок и проверить его хэш
+     */
+    private byte[] readChunk(String hash) throws IOException {
+        File object = objectFile(hash);
+        if (!object.exists()) {
+            throw new IOException("отсутствует блок " + hash);
+        }
+
+        byte[] data;
+        try (InputStream in = new GZIPInputStream(new FileInputStream(object))) {
+            data = in.readAllBytes();
+        }
+
+        if (!hex(sha256().digest(data)).equals(hash)) {
+            throw new IOException("блок поврежден " + hash);
+        }
+        return data;
+    }
+
+    /**
+     * Применить подготовленное восстановление. Вызывается при запуске до
+     * загрузки конфигов и данных. Применение не атомарно, но его можно
+     * продолжить: после сбоя уже перенесенные файлы остаются на месте,
+     * переносятся оставшиеся
+     */
+    public void applyPendingRestore() {
+        File marker = new File(stagingFolder, RESTORE_MARKER);
+        if (!marker.exists()) {
+            if (stagingFolder.exists()) {
+                // Незавершенная подготовка - отбрасываем
+                deleteRecursively(stagingFolder);
+            }
+            return;
+        }
+
+        try {
+            List<String> lines = Files.readAllLines(marker.toPath(), StandardCharsets.UTF_8);
+            String name = lines.isEmpty() ? "" : lines.get(0);
+            // Список из маркера, а не из staging: там нет уже перенесенных файлов
+            Set<String> restored = new HashSet<>();
+            for (String path : lines.subList(Math.min(1, lines.size()), lines.size())) {
+                if (!path.isEmpty()) {
+                    restored.add(path);
+                }
+            }
+            if (restored.isEmpty()) {
+                // Маркер старого формата (только имя): список - файлы в staging
+                restored.addAll(listStaged());
+            }
+
+            // Файлы, появившиеся после бэкапа (например, журнал балансов), удаляются
+            for (String path : collectFiles(null)) {
+                if (!restored.contains(path)) {
+                    new File(dataFolder, path).delete();
+                }
+            }
+
+            // WAL текущей базы нельзя применять к восстановленной
+            for (String path : restored) {
+                if (path.endsWith(".db")) {
+                    new File(dataFolder, path + "-wal").delete();
+                    new File(dataFolder, path + "-shm").delete();
+                }
+            }
+
+            for (String path : restored) {
+                File staged = new File(stagingFolder, path);
+                if (!staged.exists()) {
+                    // Перенесен до сбоя
+                    continue;
+                }
+                File target = new File(dataFolder, path);
+                target.getParentFile().mkdirs();
+                ConfigUtils.moveAtomic(staged.toPath(), target.toPath());
+            }
+
+            deleteRecursively(stagingFolder);
+            plugin.logInfo("Восстановлен бэкап " + name + ": файлов " + restored.size());
+
+        } catch (IOException e) {
+            plugin.logError("Ошибка применения бэкапа: " + e.getMessage() +
+                    ". Восстановление будет продолжено при следующем запуске");
+        }
+    }
+
+    private Set<String> listStaged() throws IOException {
+        Set<String> staged = new HashSet<>();
+        Path stagingRoot = stagingFolder.toPath();
+
+        try (var stream = Files.walk(stagingRoot)) {
+            for (Path path : (Iterable<Path>) stream.filter(Files::isRegularFile)::iterator) {
+                String relative = stagingRoot.relativize(path).toString().replace(File.separatorChar, '/');
+                if (!relative.equals(RESTORE_MARKER)) {
+                    staged.add(relative);
+                }
+            }
+        }
+        return staged;
+    }
+
+    // ========== ХРАНЕНИЕ ==========
+
+    /**
+     * Удалить старые манифесты и блоки, на которые больше никто не ссылается
+     */
+    private void applyRetention() {
+        int keep = plugin.getConfigManager().getSettings().general().backupKeep();
+        ConfigUtils.cleanupOldBackups(manifestsFolder, ".yml", keep);
+
+        Set<String> referenced = new HashSet<>();
+        File[] manifests = manifestsFolder.listFiles((dir, name) -> name.endsWith(".yml"));
+        if (manifests == null) {
+            return;
+        }
+
+        for (File manifestFile : manifests) {
+            YamlConfiguration manifest = YamlConfiguration.loadConfiguration(manifestFile);
+            if (!manifest.contains("files")) {
+                continue;
+            }
+            for (String key : manifest.getConfigurationSection("files").getKeys(false)) {
+                referenced.addAll(manifest.getStringList("files." + key + ".chunks"));
+            }
+        }
+
+        File[] shards = objectsFolder.listFiles(File::isDirectory);
+        if (shards == null) {
+            return;
+        }
+
+        int removed = 0;
+        for (File shard : shards) {
+            File[] objects = shard.listFiles();
+            if (objects == null) {
+                continue;
+            }
+            for (File object : objects) {
+                String hash = object.getName().replace(".gz", "");
+                if (!referenced.contains(hash) && object.delete()) {
+                    removed++;
+                }
+            }
+        }
+
+        if (removed > 0 && plugin.isDebugMode()) {
+            plugin.logInfo("Удалено неиспользуемых блоков бэкапов: " + removed);
+        }
+    }
+
+    // ========== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ==========
+
+    private void complete(BackupResult result, Consumer<BackupResult> callback) {
+        if (result.isSuccess()) {
+            plugin.logInfo(result.getMessage());
+        } else {
+            plugin.logError(result.getMessage());
+        }
+
+        if (callback != null && plugin.isEnabled()) {
+            Bukkit.getScheduler().runTask(plugin, () -> callback.accept(result));
+        }
+    }
+
+    private File objectFile(String hash) {
+        return new File(new File(objectsFolder, hash.substring(0, 2)), hash + ".gz");
+    }
+
+    /**
+     * Ключ файла в манифесте. Точка - разделитель ключей YAML, поэтому
+     * заменяется; '_' экранируется, чтобы разные пути не дали один ключ
+     */
+    private static String encodePath(String path) {
+        return path.replace("_", "__").replace(".", "_d").replace("/", "_s");
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    public static String formatBytes(long bytes) {
+        if (bytes < 1024) return bytes + " Б";
+        if (bytes < 1024 * 1024) return String.format("%.1f КБ", bytes / 1024.0);
+        return String.format("%.1f МБ", bytes / (1024.0 * 1024.0));
+    }
+
+    // ========== КЛАССЫ РЕЗУЛЬТАТОВ ==========
+
+    private static class BackupStats {
+        private int files;
+        private int newChunks;
+        private long totalBytes;
+        private long storedBytes;
+    }
+
+    public static class BackupResult {
+        private final boolean success;
+        private final String message;
+        private final String name;
+
+        public BackupResult(boolean success, String message) {
+            this(success, message, null);
+        }
+
+        public BackupResult(boolean success, String message, String name) {
+            this.success = success;
+            this.message = message;
+            this.name = name;
+        }
+
+        public boolean isSuccess() { return success; }
+        public String getMessage() { return message; }
+        public String getName() { return name; }
+    }
+
+    public static class BackupInfo {
+        private final String name;
+        private final long created;
+        private final int files;
+        private final long totalBytes;
+        private final long storedBytes;
+
+        public BackupInfo(String name, long created, int files, long totalBytes, long storedBytes) {
+            this.name = name;
+            this.created = created;
+            this.files = files;
+            this.totalBytes = totalBytes;
+            this.storedBytes = storedBytes;
+        }
+
+        public String getName() { return name; }
+        public long getCreated() { return created; }
+        public int getFiles() { return files; }
+        public long getTotalBytes() { return totalBytes; }
+        public long getStoredBytes() { return storedBytes; }
+    }
+}
\ No newline at end of file
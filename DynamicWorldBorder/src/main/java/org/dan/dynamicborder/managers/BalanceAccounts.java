@@ -0,0 +1,191 @@
+package org.dan.dynamicborder.managers;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Счета игроков в памяти: у каждого игрока своя ячейка баланса.
+ *
+ * Баланс читается без блокировки, изменение идет под монитором ячейки,
+ * перевод блокирует только два счета, всегда в порядке UUID. Запись
+ * изменения (журнал, пометка) выполняется под теми же блокировками, поэтому
+ * записи по счету идут в порядке изменений. Если счет выгрузили из кэша
+ * между поиском и блокировкой, изменение повторяется на новом счете.
+ */
+final class BalanceAccounts {
+
+    /**
+     * Запись нового баланса, вызывается под блокировкой счета
+     */
+    interface Committer {
+        void commit(UUID uuid, double balance);
+    }
+
+    private final Map<UUID, Account> accounts = new ConcurrentHashMap<>();
+    private final ToDoubleFunction<UUID> loader;
+    private final Committer committer;
+
+    /**
+     * @param loader    баланс игрока из хранилища при промахе кэша
+     * @param committer запись каждого изменения
+     */
+    BalanceAccounts(ToDoubleFunction<UUID> loader, Committer committer) {
+        this.loader = loader;
+        this.committer = committer;
+    }
+
+    /**
+     * Положить баланс в кэш без записи (проигрывание журнала)
+     */
+    void put(UUID uuid, double balance) {
+        accounts.put(uuid, new Account(balance));
+    }
+
+    /**
+     * Баланс игрока, при промахе загружается
+     */
+    double get(UUID uuid) {
+        return account(uuid).balance;
+    }
+
+    /**
+     * Баланс игрока, если он уже в памяти, иначе NaN
+     */
+    double getLoaded(UUID uuid) {
+        Account account = accounts.get(uuid);
+        return account != null ? account.balance : Double.NaN;
+    }
+
+    void preload(UUID uuid) {
+        account(uuid);
+    }
+
+    /**
+     * Атомарно изменить баланс
+     *
+     * @param change новый баланс по текущему; NaN - отказ без изменений
+     * @return false, если изменение отклонено
+     */
+    boolean update(UUID uuid, DoubleUnaryOperator change) {
+        while (true) {
+            Account account = account(uuid);
+
+            synchronized (account) {
+                if (account.evicted) {
+                    continue;
+                }
+
+                double balance = change.applyAsDouble(account.balance);
+                if (Double.isNaN(balance)) {
+                    return false;
+                }
+
+                commit(uuid, account, balance);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Атомарный перевод между двумя счетами
+     *
+     * @return false, если у отправителя недостаточно валюты
+     */
+    boolean transfer(UUID from, UUID to, double amount) {
+        if (amount <= 0 || from.equals(to)) {
+            return false;
+        }
+
+        while (true) {
+            Account source = account(from);
+            Account target = account(to);
+            Account first = from.compareTo(to) < 0 ? source : target;
+            Account second = first == source ? target : source;
+
+            synchronized (first) {
+                synchronized (second) {
+                    if (source.evicted || target.evicted) {
+                        // Счет выгрузили из кэша между поиском и блокировкой
+                        continue;
+                    }
+                    if (source.balance < amount) {
+                        return false;
+                    }
+
+                    commit(from, source, source.balance - amount);
+                    commit(to, target, target.balance + amount);
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Выгрузить счет, если условие (проверяется под блокировкой счета) выполнено
+     */
+    void evictIf(UUID uuid, Predicate<UUID> canEvict) {
+        Account account = accounts.get(uuid);
+        if (account == null) {
+            return;
+        }
+
+        synchronized (account) {
+            if (canEvict.test(uuid)) {
+                account.evicted = true;
+                accounts.remove(uuid, account);
+            }
+        }
+    }
+
+    void forEach(BiConsumer<UUID, Double> action) {
+        for (Map.Entry<UUID, Account> entry : accounts.entrySet()) {
+            action.accept(entry.getKey(), entry.getValue().balance);
+        }
+    }
+
+    int size() {
+        return accounts.size();
+    }
+
+    /**
+     * Счет из кэша. При промахе баланс читается вне блокировки карты:
+     * загрузка не задерживает других игроков той же ячейки
+     */
+    private Account account(UUID uuid) {
+        Account account = accounts.get(uuid);
+        if (account != null) {
+            return account;
+        }
+
+        Account loaded = new Account(loader.applyAsDouble(uuid));
+        Account existing = accounts.putIfAbsent(uuid, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    /**
+     * Значение публикуется до записи: пометка снапшота, поставленная
+     * после, не снимется чтением старого баланса
+     */
+    private void commit(UUID uuid, Account account, double balance) {
+        account.balance = balance;
+        committer.commit(uuid, balance);
+    }
+
+    /**
+     * Баланс меняется только под монитором счета, читается без блокировки
+     */
+    private static final class Account {
+        private volatile double balance;
+        // Счет выгружен из кэша: изменения нужно повторить на новом счете
+        private boolean evicted = false;
+
+        private Account(double balance) {
+            this.balance = balance;
+        }
+    }
+}
\ No newline at end of file
@@ -1,6 +1,8 @@
 package org.dan.dynamicborder.managers;
 
 import org.dan.dynamicborder.DynamicBorderPlugin;
+import org.dan.dynamicborder.data.BorderGeometry;
+import org.dan.dynamicborder.data.PluginSettings;
 import org.dan.dynamicborder.data.WorldBorderData;
 import org.bukkit.Bukkit;
 import org.bukkit.World;
@@ -11,6 +13,8 @@ import org.bukkit.Location;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 
 public class BorderManager {
@@ -19,6 +23,14 @@ public class BorderManager {
     private final Map<String, WorldBorderData> worldData = new ConcurrentHashMap<>();
     private final Map<UUID, String> playerSelectedWorld = new ConcurrentHashMap<>();
     private final Map<UUID, BukkitTask> borderTasks = new ConcurrentHashMap<>();
+    // Снимки геометрии границ, обновляются событиями изменения границы
+    private final Map<String, BorderGeometry> borderGeometry = new ConcurrentHashMap<>();
+    // Покупки за тик: одна анимация границы и одна запись на мир
+    private final ResizeCoalescer resizeCoalescer;
+    // Блокировки изменений данных миров
+    private final WorldLocks worldLocks = new WorldLocks();
+    // Оплата покупок: резерв, применение, подтверждение или откат
+    private final PurchasePipeline purchasePipeline;
 
     // Константы абсолютных лимитов
     public static final double ABSOLUTE_MIN_SIZE = 1.0;
@@ -35,9 +47,13 @@ public class BorderManager {
     public static final double DEFAULT_WARNING = 10.0;
     public static final double DEFAULT_BUFFER = 5.0;
 
+    // Допуск сравнения цены резерва и цены при применении
+    private static final double PRICE_EPSILON = 1e-9;
+
     public BorderManager(DynamicBorderPlugin plugin) {
         this.plugin = plugin;
-        loadWorldData();
+        this.resizeCoalescer = new ResizeCoalescer(plugin, this);
+        this.purchasePipeline = new PurchasePipeline(plugin);
     }
 
     /**
@@ -99,15 +115,15 @@ public class BorderManager {
      */
     private WorldBorderData getOrCreateWorldData(String worldName) {
         return worldData.computeIfAbsent(worldName, name -> {
-            // Загрузка из конфига если есть
-            org.bukkit.configuration.ConfigurationSection worldConfig = plugin.getConfigManager().getWorldConfig(worldName);
-            if (worldConfig != null && !worldConfig.getKeys(false).isEmpty()) {
+            // Загрузка из хранилища если есть
+            Map<String, Object> savedValues = plugin.getStorage().loadWorld(worldName);
+            if (savedValues != null) {
                 try {
-                    // Преобразуем ConfigurationSection в Map для десериализации
-                    // ПРОСТОЕ РЕШЕНИЕ: используем готовый метод getValues(false)
-                    WorldBorderData savedData = WorldBorderData.deserialize(worldConfig.getValues(false));
+                    WorldBorderData savedData = WorldBorderData.deserialize(savedValues);
                     // Убедимся что worldName установлен
                     savedData.setWorldName(worldName);
+                    // Только что загружено - совпадает с хранилищем
+                    savedData.markSaved(savedData.getModificationCount());
                     return savedData;
 
                 } catch (Exception e) {
@@ -126,36 +142,37 @@ public class BorderManager {
             WorldBorderData data = new WorldBorderData(name);
 
             // Настройки по умолчанию из config.yml
-            org.bukkit.configuration.file.FileConfiguration config = plugin.getConfigManager().getMainConfig();
-            if (config.contains("worlds.defaults")) {
-                data.setCurrentSize(config.getDouble("worlds.defaults.current-size", DEFAULT_SIZE));
-                data.setCurrentSpeed(config.getDouble("worlds.defaults.current-speed", DEFAULT_SPEED));
-                data.setCurrentDamage(config.getDouble("worlds.defaults.current-damage", DEFAULT_DAMAGE));
-                data.setEnabled(config.getBoolean("worlds.defaults.enabled", true));
-                data.setUpgradable(config.getBoolean("worlds.defaults.upgradable", true));
+            PluginSettings.WorldDefaults defaults = plugin.getConfigManager().getSettings().worldDefaults();
+            if (defaults != null) {
+                data.setCurrentSize(defaults.currentSize());
+                data.setCurrentSpeed(defaults.currentSpeed());
+                data.setCurrentDamage(defaults.currentDamage());
+                data.setEnabled(defaults.enabled());
+                data.setUpgradable(defaults.upgradable());
 
                 // Лимиты
-                if (config.contains("worlds.defaults.limits.size")) {
-                    data.setPlayerMinSize(config.getDouble("worlds.defaults.limits.size.min", 50.0));
-                    data.setPlayerMaxSize(config.getDouble("worlds.defaults.limits.size.max", 30000.0));
+                if (defaults.sizeLimits() != null) {
+                    data.setPlayerMinSize(defaults.sizeLimits().min());
+                    data.setPlayerMaxSize(defaults.sizeLimits().max());
                 }
-                if (config.contains("worlds.defaults.limits.speed")) {
-                    data.setPlayerMinSpeed(config.getDouble("worlds.defaults.limits.speed.min", 0.1));
-                    data.setPlayerMaxSpeed(config.getDouble("worlds.defaults.limits.speed.max", 10.0));
+                if (defaults.speedLimits() != null) {
+                    data.setPlayerMinSpeed(defaults.speedLimits().min());
+                    data.setPlayerMaxSpeed(defaults.speedLimits().max());
                 }
-                if (config.contains("worlds.defaults.limits.damage")) {
-                    data.setPlayerMinDamage(config.getDouble("worlds.defaults.limits.damage.min", 0.0));
-                    data.setPlayerMaxDamage(config.getDouble("worlds.defaults.limits.damage.max", 20.0));
+                if (defaults.damageLimits() != null) {
+                    data.setPlayerMinDamage(defaults.damageLimits().min());
+                    data.setPlayerMaxDamage(defaults.damageLimits().max());
                 }
 
                 // Цены
-                if (config.contains("worlds.defaults.costs")) {
-                    data.setExpandCost(config.getDouble("worlds.defaults.costs.expand", 1.0));
-                    data.setShrinkCost(config.getDouble("worlds.defaults.costs.shrink", 0.5));
-                    data.setSpeedUpCost(config.getDouble("worlds.defaults.costs.speed-up", 15.0));
-                    data.setSpeedDownCost(config.getDouble("worlds.defaults.costs.speed-down", 5.0));
-                    data.setDamageDownCost(config.getDouble("worlds.defaults.costs.damage-down", 12.0));
-                    data.setDamageUpCost(config.getDouble("worlds.defaults.costs.damage-up", 8.0));
+                PluginSettings.Costs costs = defaults.costs();
+                if (costs != null) {
+                    data.setExpandCost(costs.expand());
+                    data.setShrinkCost(costs.shrink());
+                    data.setSpeedUpCost(costs.speedUp());
+                    data.setSpeedDownCost(costs.speedDown());
+                    data.setDamageDownCost(costs.damageDown());
+                    data.setDamageUpCost(costs.damageUp());
                 }
             }
 
@@ -164,303 +181,410 @@ public class BorderManager {
     }
 
     /**
-     * Расширить границу мира
+     * Расширить границу мира. Результат приходит в callback в основном
+     * потоке; при оплате через Vault вне основного потока - в одном из
+     * следующих тиков
      */
-    public ExpandResult expandWorld(String worldName, double blocks, Player player) {
-        WorldBorderData data = worldData.get(worldName);
-        if (data == null) {
-            return new ExpandResult(false, "Мир не найден");
-        }
+    public void expandWorld(String worldName, double blocks, Player player, Consumer<ExpandResult> callback) {
+        purchase(new ExpandPurchase(worldName, player, blocks), callback);
+    }
 
-        if (!data.isEnabled()) {
-            return new ExpandResult(false, "Система границы отключена для этого мира");
-        }
+    /**
+     * Сузить границу мира
+     */
+    public void shrinkWorld(String worldName, double blocks, Player player, Consumer<ShrinkResult> callback) {
+        purchase(new ShrinkPurchase(worldName, player, blocks), callback);
+    }
 
-        if (blocks <= 0) {
-            return new ExpandResult(false, "Количество блоков должно быть положительным");
-        }
+    /**
+     * Улучшить скорость границы
+     */
+    public void upgradeSpeed(String worldName, boolean up, Player player, Consumer<UpgradeResult> callback) {
+        upgradeSpeed(worldName, up, player, 1, callback);
+    }
 
-        // Проверка лимитов
-        if (!data.canExpand(blocks)) {
-            double maxBlocks = data.getPlayerMaxSize() - data.getCurrentSize();
-            return new ExpandResult(false, String.format("Максимальное расширение: %.1f блоков", maxBlocks));
-        }
+    /**
+     * Купить несколько шагов скорости одной покупкой: цена всех уровней
+     * считается сразу, валюта списывается, а мир сохраняется один раз
+     */
+    public void upgradeSpeed(String worldName, boolean up, Player player, int levels,
+                             Consumer<UpgradeResult> callback) {
+        purchase(new SpeedPurchase(worldName, player, up, levels), callback);
+    }
 
-        // Расчет цены с учетом множителя
-        double baseCost = data.getExpandCostFor(blocks);
-        double finalCost = plugin.getMultiplierManager().getPrice(
-                player, worldName, "expand", baseCost
-        );
+    /**
+     * Улучшить урон границы
+     */
+    public void upgradeDamage(String worldName, boolean down, Player player, Consumer<UpgradeResult> callback) {
+        upgradeDamage(worldName, down, player, 1, callback);
+    }
 
-        // Проверка баланса
-        if (!plugin.getCurrencyManager().hasEnough(player, finalCost)) {
-            return new ExpandResult(false, String.format(
-                    "Недостаточно валюты! Нужно: %.2f", finalCost
-            ));
-        }
+    /**
+     * Купить несколько шагов урона одной покупкой
+     */
+    public void upgradeDamage(String worldName, boolean down, Player player, int levels,
+                              Consumer<UpgradeResult> callback) {
+        purchase(new DamagePurchase(worldName, player, down, levels), callback);
+    }
 
-        // Списание валюты
-        if (!plugin.getCurrencyManager().withdrawBalance(player, finalCost)) {
-            return new ExpandResult(false, "Ошибка списания валюты");
+    /**
+     * Провести покупку: проверка и цена под блокировкой мира, оплата через
+     * PurchasePipeline, затем повторная проверка и применение под
+     * блокировкой. Если за время оплаты покупка стала невозможной или
+     * изменилась цена (администратор поменял стоимость или лимиты), валюта
+     * возвращается
+     */
+    private <R extends PurchaseResult> void purchase(BorderPurchase<R> purchase, Consumer<R> callback) {
+        String worldName = purchase.worldName;
+        Quote quote = worldLocks.write(worldName, () -> quote(purchase));
+        if (quote.error() != null) {
+            callback.accept(purchase.fail(quote.error()));
+            return;
         }
 
-        // Обновление данных
-        double newSize = data.getCurrentSize() + blocks;
-        data.setCurrentSize(newSize);
-        data.incrementExpansions();
-        data.addCurrencySpent(finalCost);
-
-        // Обновление множителя
-        plugin.getMultiplierManager().updateAfterPurchase(
-                player, worldName, "expand", finalCost
-        );
+        purchasePipeline.run(purchase.player, quote.cost(),
+                () -> worldLocks.write(worldName, () -> {
+                    WorldBorderData data = worldData.get(worldName);
+                    String error = data == null ? "Мир не найден" : purchase.check(data);
+                    if (error != null) {
+                        return purchase.fail(error);
+                    }
 
-        // Применение к миру
-        World world = Bukkit.getWorld(worldName);
-        if (world != null) {
-            WorldBorder border = world.getWorldBorder();
-            double difference = Math.abs(border.getSize() - newSize);
-            long time = (long) Math.max(1, difference / data.getCurrentSpeed());
+                    double cost = purchase.price(data);
+                    if (Math.abs(cost - quote.cost()) > PRICE_EPSILON) {
+                        return purchase.fail(String.format(
+                                "Цена изменилась во время оплаты: %.2f вместо %.2f, валюта возвращена",
+                                cost, quote.cost()));
+                    }
+                    return purchase.apply(data, quote.cost());
+                }),
+                purchase::fail, callback);
+    }
 
-            if (time <= 1) {
-                border.setSize(newSize);
-            } else {
-                border.setSize(newSize, time);
-            }
+    private Quote quote(BorderPurchase<?> purchase) {
+        WorldBorderData data = worldData.get(purchase.worldName);
+        if (data == null) {
+            return new Quote(0, "Мир не найден");
         }
 
-        // Сохранение
-        saveWorldData(data);
+        String error = purchase.check(data);
+        if (error != null) {
+            return new Quote(0, error);
+        }
+        return new Quote(purchase.price(data), null);
+    }
 
-        return new ExpandResult(true, String.format(
-                "Граница расширена на %.1f блоков. Новый размер: %.1f",
-                blocks, newSize
-        ), newSize, blocks, finalCost);
+    /**
+     * Цена покупки или ошибка проверки
+     */
+    private record Quote(double cost, String error) {
     }
 
     /**
-     * Сузить границу мира
+     * Покупка границы. Методы вызываются под блокировкой записи мира
      */
-    public ShrinkResult shrinkWorld(String worldName, double blocks, Player player) {
-        WorldBorderData data = worldData.get(worldName);
-        if (data == null) {
-            return new ShrinkResult(false, "Мир не найден");
-        }
+    private abstract static class BorderPurchase<R extends PurchaseResult> {
+        protected final String worldName;
+        protected final Player player;
 
-        if (!data.isEnabled()) {
-            return new ShrinkResult(false, "Система границы отключена для этого мира");
+        protected BorderPurchase(String worldName, Player player) {
+            this.worldName = worldName;
+            this.player = player;
         }
 
-        if (blocks <= 0) {
-            return new ShrinkResult(false, "Количество блоков должно быть положительным");
-        }
+        /** Причина, по которой покупка невозможна, или null */
+        abstract String check(WorldBorderData data);
+
+        /** Цена с учетом множителя */
+        abstract double price(WorldBorderData data);
 
-        // Проверка лимитов
-        if (!data.canShrink(blocks)) {
-            double maxBlocks = data.getCurrentSize() - data.getPlayerMinSize();
-            return new ShrinkResult(false, String.format("Максимальное сужение: %.1f блоков", maxBlocks));
+        /** Изменить мир после оплаты */
+        abstract R apply(WorldBorderData data, double cost);
+
+        abstract R fail(String message);
+    }
+
+    private final class ExpandPurchase extends BorderPurchase<ExpandResult> {
+        private final double blocks;
+
+        private ExpandPurchase(String worldName, Player player, double blocks) {
+            super(worldName, player);
+            this.blocks = blocks;
         }
 
-        // Расчет цены с учетом множителя
-        double baseCost = data.getShrinkCostFor(blocks);
-        double finalCost = plugin.getMultiplierManager().getPrice(
-                player, worldName, "shrink", baseCost
-        );
+        @Override
+        String check(WorldBorderData data) {
+            if (!data.isEnabled()) {
+                return "Система границы отключена для этого мира";
+            }
 
-        // Проверка баланса
-        if (!plugin.getCurrencyManager().hasEnough(player, finalCost)) {
-            return new ShrinkResult(false, String.format(
-                    "Недостаточно валюты! Нужно: %.2f", finalCost
-            ));
+            if (blocks <= 0) {
+                return "Количество блоков должно быть положительным";
+            }
+
+            // Проверка лимитов
+            if (!data.canExpand(blocks)) {
+                double maxBlocks = data.getPlayerMaxSize() - data.getCurrentSize();
+                return String.format("Максимальное расширение: %.1f блоков", maxBlocks);
+            }
+            return null;
         }
 
-        // Списание валюты
-        if (!plugin.getCurrencyManager().withdrawBalance(player, finalCost)) {
-            return new ShrinkResult(false, "Ошибка списания валюты");
+        @Override
+        double price(WorldBorderData data) {
+            double baseCost = data.getExpandCostFor(blocks);
+            return plugin.getMultiplierManager().getPrice(player, worldName, "expand", baseCost);
         }
 
-        // Обновление данных
-        double newSize = data.getCurrentSize() - blocks;
-        data.setCurrentSize(newSize);
-        data.incrementShrinks();
-        data.addCurrencySpent(finalCost);
+        @Override
+        ExpandResult apply(WorldBorderData data, double cost) {
+            // Обновление данных
+            double newSize = data.getCurrentSize() + blocks;
+            data.setCurrentSize(newSize);
+            data.incrementExpansions();
+            data.addCurrencySpent(cost);
+
+            LeaderboardManager leaderboards = plugin.getLeaderboardManager();
+            if (leaderboards != null) {
+                leaderboards.onExpanded(data);
+            }
 
-        // Обновление множителя
-        plugin.getMultiplierManager().updateAfterPurchase(
-                player, worldName, "shrink", finalCost
-        );
+            // Обновление множителя
+            plugin.getMultiplierManager().updateAfterPurchase(player, worldName, "expand", cost);
 
-        // Применение к миру
-        World world = Bukkit.getWorld(worldName);
-        if (world != null) {
-            WorldBorder border = world.getWorldBorder();
-            double difference = Math.abs(border.getSize() - newSize);
-            long time = (long) Math.max(1, difference / data.getCurrentSpeed());
+            // Применение к миру и сохранение - в начале следующего тика, вместе
+            // с остальными покупками этого тика
+            resizeCoalescer.addResize(data, blocks);
 
-            if (time <= 1) {
-                border.setSize(newSize);
-            } else {
-                border.setSize(newSize, time);
-            }
+            return new ExpandResult(true, String.format(
+                    "Граница расширена на %.1f блоков. Новый размер: %.1f",
+                    blocks, newSize
+            ), newSize, blocks, cost);
         }
 
-        // Сохранение
-        saveWorldData(data);
-
-        return new ShrinkResult(true, String.format(
-                "Граница сужена на %.1f блоков. Новый размер: %.1f",
-                blocks, newSize
-        ), newSize, blocks, finalCost);
+        @Override
+        ExpandResult fail(String message) {
+            return new ExpandResult(false, message);
+        }
     }
 
-    /**
-     * Улучшить скорость границы
-     */
-    public UpgradeResult upgradeSpeed(String worldName, boolean up, Player player) {
-        WorldBorderData data = worldData.get(worldName);
-        if (data == null) {
-            return new UpgradeResult(false, "Мир не найден");
+    private final class ShrinkPurchase extends BorderPurchase<ShrinkResult> {
+        private final double blocks;
+
+        private ShrinkPurchase(String worldName, Player player, double blocks) {
+            super(worldName, player);
+            this.blocks = blocks;
         }
 
-        if (!data.isEnabled() || !data.isUpgradable()) {
-            return new UpgradeResult(false, "Улучшения отключены для этого мира");
+        @Override
+        String check(WorldBorderData data) {
+            if (!data.isEnabled()) {
+                return "Система границы отключена для этого мира";
+            }
+
+            if (blocks <= 0) {
+                return "Количество блоков должно быть положительным";
+            }
+
+            // Проверка лимитов
+            if (!data.canShrink(blocks)) {
+                double maxBlocks = data.getCurrentSize() - data.getPlayerMinSize();
+                return String.format("Максимальное сужение: %.1f блоков", maxBlocks);
+            }
+            return null;
         }
 
-        // Проверка лимитов
-        if (!data.canUpgradeSpeed(up)) {
-            String limit = up ?
-                    String.format("Максимальная скорость: %.1f", data.getPlayerMaxSpeed()) :
-                    String.format("Минимальная скорость: %.1f", data.getPlayerMinSpeed());
-            return new UpgradeResult(false, limit);
+        @Override
+        double price(WorldBorderData data) {
+            double baseCost = data.getShrinkCostFor(blocks);
+            return plugin.getMultiplierManager().getPrice(player, worldName, "shrink", baseCost);
         }
 
-        // Расчет цены с учетом множителя
-        double baseCost = data.getSpeedUpgradeCost(up);
-        String priceType = up ? "speed-up" : "speed-down";
-        double finalCost = plugin.getMultiplierManager().getPrice(
-                player, worldName, priceType, baseCost
-        );
+        @Override
+        ShrinkResult apply(WorldBorderData data, double cost) {
+            // Обновление данных
+            double newSize = data.getCurrentSize() - blocks;
+            data.setCurrentSize(newSize);
+            data.incrementShrinks();
+            data.addCurrencySpent(cost);
+
+            // Обновление множителя
+            plugin.getMultiplierManager().updateAfterPurchase(player, worldName, "shrink", cost);
+
+            // Применение к миру и сохранение - в начале следующего тика, вместе
+            // с остальными покупками этого тика
+            resizeCoalescer.addResize(data, -blocks);
+
+            return new ShrinkResult(true, String.format(
+                    "Граница сужена на %.1f блоков. Новый размер: %.1f",
+                    blocks, newSize
+            ), newSize, blocks, cost);
+        }
 
-        // Проверка баланса
-        if (!plugin.getCurrencyManager().hasEnough(player, finalCost)) {
-            return new UpgradeResult(false, String.format(
-                    "Недостаточно валюты! Нужно: %.2f", finalCost
-            ));
+        @Override
+        ShrinkResult fail(String message) {
+            return new ShrinkResult(false, message);
         }
+    }
 
-        // Списание валюты
-        if (!plugin.getCurrencyManager().withdrawBalance(player, finalCost)) {
-            return new UpgradeResult(false, "Ошибка списания валюты");
+    private final class SpeedPurchase extends BorderPurchase<UpgradeResult> {
+        private final boolean up;
+        private final int levels;
+        private final String priceType;
+
+        private SpeedPurchase(String worldName, Player player, boolean up, int levels) {
+            super(worldName, player);
+            this.up = up;
+            this.levels = levels;
+            this.priceType = up ? "speed-up" : "speed-down";
         }
 
-        // Обновление данных
-        double change = up ? data.getUpgradeStepSpeed() : -data.getUpgradeStepSpeed();
-        double newSpeed = data.getCurrentSpeed() + change;
-        data.setCurrentSpeed(newSpeed);
+        @Override
+        String check(WorldBorderData data) {
+            if (!data.isEnabled() || !data.isUpgradable()) {
+                return "Улучшения отключены для этого мира";
+            }
 
-        if (up) {
-            data.incrementSpeedUpgrades();
-        } else {
-            data.incrementSpeedDowngrades();
+            if (levels <= 0) {
+                return "Количество улучшений должно быть положительным";
+            }
+
+            // Проверка лимитов
+            if (!data.canUpgradeSpeed(up, levels)) {
+                return up ?
+                        String.format("Максимальная скорость: %.1f", data.getPlayerMaxSpeed()) :
+                        String.format("Минимальная скорость: %.1f", data.getPlayerMinSpeed());
+            }
+            return null;
         }
 
-        data.addCurrencySpent(finalCost);
+        @Override
+        double price(WorldBorderData data) {
+            double baseCost = data.getSpeedUpgradeCost(up);
+            return plugin.getMultiplierManager().getBulkPrice(player, worldName, priceType, baseCost, levels);
+        }
 
-        // Обновление множителя
-        plugin.getMultiplierManager().updateAfterPurchase(
-                player, worldName, priceType, finalCost
-        );
+        @Override
+        UpgradeResult apply(WorldBorderData data, double cost) {
+            // Обновление данных
+            double change = (up ? data.getUpgradeStepSpeed() : -data.getUpgradeStepSpeed()) * levels;
+            double newSpeed = data.getCurrentSpeed() + change;
+            data.setCurrentSpeed(newSpeed);
 
-        // Сохранение
-        saveWorldData(data);
+            if (up) {
+                data.incrementSpeedUpgrades(levels);
+            } else {
+                data.incrementSpeedDowngrades(levels);
+            }
 
-        return new UpgradeResult(true, String.format(
-                "Скорость %s на %.1f. Новая скорость: %.1f блоков/сек",
-                up ? "увеличена" : "уменьшена",
-                Math.abs(change),
-                newSpeed
-        ), newSpeed, Math.abs(change), finalCost, up);
-    }
+            data.addCurrencySpent(cost);
 
-    /**
-     * Улучшить урон границы
-     */
-    public UpgradeResult upgradeDamage(String worldName, boolean down, Player player) {
-        WorldBorderData data = worldData.get(worldName);
-        if (data == null) {
-            return new UpgradeResult(false, "Мир не найден");
+            // Обновление множителя
+            plugin.getMultiplierManager().updateAfterPurchase(player, worldName, priceType, cost, levels);
+
+            // Сохранение
+            resizeCoalescer.addSave(data);
+
+            return new UpgradeResult(true, String.format(
+                    "Скорость %s на %.1f. Новая скорость: %.1f блоков/сек",
+                    up ? "увеличена" : "уменьшена",
+                    Math.abs(change),
+                    newSpeed
+            ), newSpeed, Math.abs(change), cost, up);
         }
 
-        if (!data.isEnabled() || !data.isUpgradable()) {
-            return new UpgradeResult(false, "Улучшения отключены для этого мира");
+        @Override
+        UpgradeResult fail(String message) {
+            return new UpgradeResult(false, message);
         }
+    }
 
-        // Проверка лимитов
-        if (!data.canUpgradeDamage(down)) {
-            String limit = down ?
-                    String.format("Минимальный урон: %.1f", data.getPlayerMinDamage()) :
-                    String.format("Максимальный урон: %.1f", data.getPlayerMaxDamage());
-            return new UpgradeResult(false, limit);
+    private final class DamagePurchase extends BorderPurchase<UpgradeResult> {
+        private final boolean down;
+        private final int levels;
+        private final String priceType;
+
+        private DamagePurchase(String worldName, Player player, boolean down, int levels) {
+            super(worldName, player);
+            this.down = down;
+            this.levels = levels;
+            this.priceType = down ? "damage-down" : "damage-up";
         }
 
-        // Расчет цены с учетом множителя
-        double baseCost = data.getDamageUpgradeCost(down);
-        String priceType = down ? "damage-down" : "damage-up";
-        double finalCost = plugin.getMultiplierManager().getPrice(
-                player, worldName, priceType, baseCost
-        );
+        @Override
+        String check(WorldBorderData data) {
+            if (!data.isEnabled() || !data.isUpgradable()) {
+                return "Улучшения отключены для этого мира";
+            }
+
+            if (levels <= 0) {
+                return "Количество улучшений должно быть положительным";
+            }
 
-        // Проверка баланса
-        if (!plugin.getCurrencyManager().hasEnough(player, finalCost)) {
-            return new UpgradeResult(false, String.format(
-                    "Недостаточно валюты! Нужно: %.2f", finalCost
-            ));
+            // Проверка лимитов
+            if (!data.canUpgradeDamage(down, levels)) {
+                return down ?
+                        String.format("Минимальный урон: %.1f", data.getPlayerMinDamage()) :
+                        String.format("Максимальный урон: %.1f", data.getPlayerMaxDamage());
+            }
+            return null;
         }
 
-        // Списание валюты
-        if (!plugin.getCurrencyManager().withdrawBalance(player, finalCost)) {
-            return new UpgradeResult(false, "Ошибка списания валюты");
+        @Override
+        double price(WorldBorderData data) {
+            double baseCost = data.getDamageUpgradeCost(down);
+            return plugin.getMultiplierManager().getBulkPrice(player, worldName, priceType, baseCost, levels);
         }
 
-        // Обновление данных
-        double change = down ? -data.getUpgradeStepDamage() : data.getUpgradeStepDamage();
-        double newDamage = data.getCurrentDamage() + change;
-        data.setCurrentDamage(newDamage);
+        @Override
+        UpgradeResult apply(WorldBorderData data, double cost) {
+            // Обновление данных
+            double change = (down ? -data.getUpgradeStepDamage() : data.getUpgradeStepDamage()) * levels;
+            double newDamage = data.getCurrentDamage() + change;
+            data.setCurrentDamage(newDamage);
 
-        if (down) {
-            data.incrementDamageDowngrades();
-        } else {
-            data.incrementDamageUpgrades();
-        }
+            if (down) {
+                data.incrementDamageDowngrades(levels);
+            } else {
+                data.incrementDamageUpgrades(levels);
+            }
 
-        data.addCurrencySpent(finalCost);
+            data.addCurrencySpent(cost);
 
-        // Обновление множителя
-        plugin.getMultiplierManager().updateAfterPurchase(
-                player, worldName, priceType, finalCost
-        );
+            // Обновление множителя
+            plugin.getMultiplierManager().updateAfterPurchase(player, worldName, priceType, cost, levels);
 
-        // Применение к миру
-        World world = Bukkit.getWorld(worldName);
-        if (world != null) {
-            world.getWorldBorder().setDamageAmount(newDamage);
-        }
+            // Применение к миру
+            World world = Bukkit.getWorld(worldName);
+            if (world != null) {
+                world.getWorldBorder().setDamageAmount(newDamage);
+            }
 
-        // Сохранение
-        saveWorldData(data);
+            // Сохранение
+            resizeCoalescer.addSave(data);
 
-        return new UpgradeResult(true, String.format(
-                "Урон %s на %.1f. Новый урон: %.1f урона/сек",
-                down ? "уменьшен" : "увеличен",
-                Math.abs(change),
-                newDamage
-        ), newDamage, Math.abs(change), finalCost, !down);
+            return new UpgradeResult(true, String.format(
+                    "Урон %s на %.1f. Новый урон: %.1f урона/сек",
+                    down ? "уменьшен" : "увеличен",
+                    Math.abs(change),
+                    newDamage
+            ), newDamage, Math.abs(change), cost, !down);
+        }
+
+        @Override
+        UpgradeResult fail(String message) {
+            return new UpgradeResult(false, message);
+        }
     }
 
     /**
      * Установить абсолютный лимит размера
      */
     public boolean setAbsoluteSizeLimit(String worldName, boolean max, double value) {
+        return updateLimit(worldName, () -> setAbsoluteSizeLimitLocked(worldName, max, value));
+    }
+
+    private boolean setAbsoluteSizeLimitLocked(String worldName, boolean max, double value) {
         WorldBorderData data = worldData.get(worldName);
         if (data == null) return false;
 
@@ -477,7 +601,6 @@ public class BorderManager {
             data.setAbsoluteMinSize(value);
         }
 
-        saveWorldData(data);
         return true;
     }
 
@@ -485,6 +608,10 @@ public class BorderManager {
      * Установить абсолютный лимит скорости
      */
     public boolean setAbsoluteSpeedLimit(String worldName, boolean max, double value) {
+        return updateLimit(worldName, () -> setAbsoluteSpeedLimitLocked(worldName, max, value));
+    }
+
+    private boolean setAbsoluteSpeedLimitLocked(String worldName, boolean max, double value) {
         WorldBorderData data = worldData.get(worldName);
         if (data == null) return false;
 
@@ -501,7 +628,6 @@ public class BorderManager {
             data.setAbsoluteMinSpeed(value);
         }
 
-        saveWorldData(data);
         return true;
     }
 
@@ -509,6 +635,10 @@ public class BorderManager {
      * Установить абсолютный лимит урона
      */
     public boolean setAbsoluteDamageLimit(String worldName, boolean max, double value) {
+        return updateLimit(worldName, () -> setAbsoluteDamageLimitLocked(worldName, max, value));
+    }
+
+    private boolean setAbsoluteDamageLimitLocked(String worldName, boolean max, double value) {
         WorldBorderData data = worldData.get(worldName);
         if (data == null) return false;
 
@@ -525,7 +655,6 @@ public class BorderManager {
             data.setAbsoluteMinDamage(value);
         }
 
-        saveWorldData(data);
         return true;
     }
 
@@ -533,6 +662,10 @@ public class BorderManager {
      * Установить лимит для игроков
      */
     public boolean setPlayerSizeLimit(String worldName, boolean max, double value) {
+        return updateLimit(worldName, () -> setPlayerSizeLimitLocked(worldName, max, value));
+    }
+
+    private boolean setPlayerSizeLimitLocked(String worldName, boolean max, double value) {
         WorldBorderData data = worldData.get(worldName);
         if (data == null) return false;
 
@@ -550,7 +683,6 @@ public class BorderManager {
             data.setPlayerMinSize(value);
         }
 
-        saveWorldData(data);
         return true;
     }
 
@@ -558,6 +690,10 @@ public class BorderManager {
      * Установить лимит скорости для игроков
      */
     public boolean setPlayerSpeedLimit(String worldName, boolean max, double value) {
+        return updateLimit(worldName, () -> setPlayerSpeedLimitLocked(worldName, max, value));
+    }
+
+    private boolean setPlayerSpeedLimitLocked(String worldName, boolean max, double value) {
         WorldBorderData data = worldData.get(worldName);
         if (data == null) return false;
 
@@ -575,7 +711,6 @@ public class BorderManager {
             data.setPlayerMinSpeed(value);
         }
 
-        saveWorldData(data);
         return true;
     }
 
@@ -583,6 +718,10 @@ public class BorderManager {
      * Установить лимит урона для игроков
      */
     public boolean setPlayerDamageLimit(String worldName, boolean max, double value) {
+        return updateLimit(worldName, () -> setPlayerDamageLimitLocked(worldName, max, value));
+    }
+
+    private boolean setPlayerDamageLimitLocked(String worldName, boolean max, double value) {
         WorldBorderData data = worldData.get(worldName);
         if (data == null) return false;
 
@@ -600,40 +739,145 @@ public class BorderManager {
             data.setPlayerMinDamage(value);
         }
 
-        saveWorldData(data);
         return true;
     }
 
     // ========== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ==========
 
-    private void loadWorldData() {
-        // Загрузка будет производиться по требованию
+    // ========== ГЕОМЕТРИЯ ГРАНИЦ ==========
+
+    /**
+     * Геометрия границы мира для проверок положения игроков (основной поток)
+     */
+    public BorderGeometry getGeometry(World world) {
+        long now = System.currentTimeMillis();
+        BorderGeometry geometry = borderGeometry.get(world.getName());
+        if (geometry == null || geometry.isExpired(now)) {
+            geometry = BorderGeometry.of(world.getWorldBorder(), now);
+            borderGeometry.put(world.getName(), geometry);
+        }
+        return geometry;
+    }
+
+    /**
+     * Граница мира меняет размер. Вызывается до применения изменения,
+     * поэтому снимок строится по параметрам события, а не по границе
+     */
+    public void onBorderResize(World world, double oldSize, double newSize, long durationMillis) {
+        long now = System.currentTimeMillis();
+        borderGeometry.put(world.getName(), getGeometry(world).withResize(oldSize, newSize, durationMillis, now));
     }
 
+    /**
+     * Граница мира меняет центр (до применения изменения)
+     */
+    public void onBorderCenterChange(World world, double x, double z) {
+        borderGeometry.put(world.getName(), getGeometry(world).withCenter(x, z));
+    }
+
+    /**
+     * Забыть снимок: следующая проверка перечитает границу
+     */
+    public void invalidateGeometry(String worldName) {
+        borderGeometry.remove(worldName);
+    }
+
+    /**
+     * Загрузить данные миров из хранилища заранее (при запуске, в рабочем потоке).
+     * Остальные миры загружаются по требованию
+     */
+    public void preloadWorlds(Collection<String> worldNames) {
+        for (String worldName : worldNames) {
+            getOrCreateWorldData(worldName);
+        }
+    }
+
+    /**
+     * Записать мир. Копия снимается под блокировкой мира, поэтому метод
+     * нельзя вызывать изнутри updateWorld и других изменений под блокировкой
+     */
     public void saveWorldData(WorldBorderData data) {
-        try {
-            // Сохраняем данные мира
-            java.util.Map<String, Object> serializedData = data.serialize();
-            org.bukkit.configuration.file.YamlConfiguration config = new org.bukkit.configuration.file.YamlConfiguration();
+        VersionedCopy copy = worldLocks.readLocked(data.getWorldName(),
+                () -> new VersionedCopy(data.snapshot(), data.getModificationCount()));
+        if (plugin.getStorage().saveWorlds(Collections.singletonList(copy.data()))) {
+            data.markSaved(copy.version());
+        }
+    }
 
-            for (java.util.Map.Entry<String, Object> entry : serializedData.entrySet()) {
-                config.set(entry.getKey(), entry.getValue());
-            }
+    /**
+     * Изменить данные мира под блокировкой и записать их
+     */
+    public void updateWorld(WorldBorderData data, Consumer<WorldBorderData> change) {
+        worldLocks.write(data.getWorldName(), () -> change.accept(data));
+        saveWorldData(data);
+    }
 
-            java.io.File worldFile = new java.io.File(plugin.getDataFolder(), "worlds/" + data.getWorldName() + ".yml");
-            if (!worldFile.getParentFile().exists()) {
-                worldFile.getParentFile().mkdirs();
-            }
-            config.save(worldFile);
-        } catch (Exception e) {
-            plugin.logError("Ошибка сохранения данных мира " + data.getWorldName() + ": " + e.getMessage());
+    /**
+     * Учесть выручку от продажи предметов в мире. Запись мира объединяется
+     * с покупками этого тика
+     */
+    public void recordSale(String worldName, double earned) {
+        WorldBorderData data = worldData.get(worldName);
+        if (data == null || earned <= 0) {
+            return;
         }
+
+        worldLocks.write(worldName, () -> {
+            data.addCurrencyEarned(earned);
+            resizeCoalescer.addSave(data);
+        });
     }
 
-    public void saveAllWorlds() {
+    private boolean updateLimit(String worldName, Supplier<Boolean> change) {
+        if (!worldLocks.write(worldName, change)) {
+            return false;
+        }
+        saveWorldData(worldData.get(worldName));
+        return true;
+    }
+
+    /**
+     * Согласованная копия данных мира для показа
+     *
+     * @return null, если мир не найден
+     */
+    public WorldBorderData getWorldSnapshot(String worldName) {
+        WorldBorderData data = worldData.get(worldName);
+        if (data == null) {
+            return null;
+        }
+        return worldLocks.readLocked(worldName, data::snapshot);
+    }
+
+    /**
+     * Сохранить миры, изменившиеся с прошлой записи
+     *
+     * @return количество записанных миров
+     */
+    public int saveAllWorlds() {
+        return snapshotDirtyWorlds().write();
+    }
+
+    /**
+     * Снимок измененных миров (основной поток). Запись снимка можно
+     * выполнить в любом потоке
+     */
+    public WorldsSnapshot snapshotDirtyWorlds() {
+        List<WorldBorderData> originals = new ArrayList<>();
+        List<WorldBorderData> copies = new ArrayList<>();
+        List<Long> versions = new ArrayList<>();
+
         for (WorldBorderData data : worldData.values()) {
-            saveWorldData(data);
+            if (data.isDirty()) {
+                VersionedCopy copy = worldLocks.readLocked(data.getWorldName(),
+                        () -> new VersionedCopy(data.snapshot(), data.getModificationCount()));
+                versions.add(copy.version());
+                originals.add(data);
+                copies.add(copy.data());
+            }
         }
+
+        return new WorldsSnapshot(originals, copies, versions);
     }
 
     public void setPlayerSelectedWorld(Player player, String worldName) {
@@ -648,6 +892,18 @@ public class BorderManager {
         return playerSelectedWorld.getOrDefault(uuid, "world");
     }
 
+    public ResizeCoalescer getResizeCoalescer() {
+        return resizeCoalescer;
+    }
+
+    public PurchasePipeline getPurchasePipeline() {
+        return purchasePipeline;
+    }
+
+    public WorldLocks getWorldLocks() {
+        return worldLocks;
+    }
+
     public WorldBorderData getWorldData(String worldName) {
         return worldData.get(worldName);
     }
@@ -665,6 +921,7 @@ public class BorderManager {
     }
 
     public void cleanup() {
+        resizeCoalescer.clear();
         for (BukkitTask task : borderTasks.values()) {
             if (task != null && !task.isCancelled()) {
                 task.cancel();
@@ -677,64 +934,101 @@ public class BorderManager {
 
     // ========== КЛАССЫ РЕЗУЛЬТАТОВ ==========
 
-    public static class ExpandResult {
+    /**
+     * Копия мира и счетчик изменений, с которого она снята
+     */
+    private record VersionedCopy(WorldBorderData data, long version) {
+    }
+
+    public class WorldsSnapshot {
+        private final List<WorldBorderData> originals;
+        private final List<WorldBorderData> copies;
+        private final List<Long> versions;
+
+        private WorldsSnapshot(List<WorldBorderData> originals, List<WorldBorderData> copies, List<Long> versions) {
+            this.originals = originals;
+            this.copies = copies;
+            this.versions = versions;
+        }
+
+        /**
+         * Записать снимок в хранилище
+         *
+         * @return количество записанных миров
+         */
+        public int write() {
+            if (copies.isEmpty() || !plugin.getStorage().saveWorlds(copies)) {
+                return 0;
+            }
+
+            // Изменения, сделанные после снимка, оставят мир "грязным"
+            for (int i = 0; i < originals.size(); i++) {
+                originals.get(i).markSaved(versions.get(i));
+            }
+            return copies.size();
+        }
+
+        public int size() { return copies.size(); }
+    }
+
+    /**
+     * Общая часть результатов покупок
+     */
+    public abstract static class PurchaseResult {
         private final boolean success;
         private final String message;
+        private final double cost;
+
+        protected PurchaseResult(boolean success, String message, double cost) {
+            this.success = success;
+            this.message = message;
+            this.cost = cost;
+        }
+
+        public boolean isSuccess() { return success; }
+        public String getMessage() { return message; }
+        public double getCost() { return cost; }
+    }
+
+    public static class ExpandResult extends PurchaseResult {
         private final double newSize;
         private final double blocks;
-        private final double cost;
 
         public ExpandResult(boolean success, String message) {
             this(success, message, 0, 0, 0);
         }
 
         public ExpandResult(boolean success, String message, double newSize, double blocks, double cost) {
-            this.success = success;
-            this.message = message;
+            super(success, message, cost);
             this.newSize = newSize;
             this.blocks = blocks;
-            this.cost = cost;
         }
 
-        public boolean isSuccess() { return success; }
-        public String getMessage() { return message; }
         public double getNewSize() { return newSize; }
         public double getBlocks() { return blocks; }
-        public double getCost() { return cost; }
     }
 
-    public static class ShrinkResult {
-        private final boolean success;
-        private final String message;
+    public static class ShrinkResult extends PurchaseResult {
         private final double newSize;
         private final double blocks;
-        private final double cost;
 
         public ShrinkResult(boolean success, String message) {
             this(success, message, 0, 0, 0);
         }
 
         public ShrinkResult(boolean success, String message, double newSize, double blocks, double cost) {
-            this.success = success;
-            this.message = message;
+            super(success, message, cost);
             this.newSize = newSize;
             this.blocks = blocks;
-            this.cost = cost;
         }
 
-        public boolean isSuccess() { return success; }
-        public String getMessage() { return message; }
         public double getNewSize() { return newSize; }
         public double getBlocks() { return blocks; }
-        public double getCost() { return cost; }
     }
 
-    public static class UpgradeResult {
-        private final boolean success;
-        private final String message;
+    public static class UpgradeResult extends PurchaseResult {
         private final double newValue;
         private final double change;
-        private final double cost;
         private final boolean upgraded; // true если улучшение (вверх), false если ухудшение
 
         public UpgradeResult(boolean success, String message) {
@@ -742,19 +1036,14 @@ public class BorderManager {
         }
 
         public UpgradeResult(boolean success, String message, double newValue, double change, double cost, boolean upgraded) {
-            this.success = success;
-            this.message = message;
+            super(success, message, cost);
             this.newValue = newValue;
             this.change = change;
-            this.cost = cost;
             this.upgraded = upgraded;
         }
 
-        public boolean isSuccess() { return success; }
-        public String getMessage() { return message; }
         public double getNewValue() { return newValue; }
         public double getChange() { return change; }
-        public double getCost() { return cost; }
         public boolean isUpgraded() { return upgraded; }
     }
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 package org.dan.dynamicborder.managers;
 
 import org.dan.dynamicborder.DynamicBorderPlugin;
+import org.dan.dynamicborder.data.PluginSettings;
+import org.dan.dynamicborder.utils.ConfigUtils;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.configuration.file.FileConfiguration;
 
@@ -23,6 +25,9 @@ public class ConfigManager {
     private YamlConfiguration messagesConfig;
     private YamlConfiguration itemsConfig;
 
+    // Разобранные настройки, подменяются целиком при перезагрузке
+    private volatile PluginSettings settings;
+
     public ConfigManager(DynamicBorderPlugin plugin) {
         this.plugin = plugin;
     }
@@ -50,8 +55,7 @@ public class ConfigManager {
         loadConfig("items.yml");
         itemsConfig = configs.get("items.yml");
 
-        // Загрузка мировых конфигов
-        loadWorldConfigs();
+        publishSettings();
 
         plugin.logInfo("Конфигурации загружены: " + configs.size() + " файлов");
     }
@@ -88,28 +92,6 @@ public class ConfigManager {
         }
     }
 
-    private void loadWorldConfigs() {
-        File worldsFolder = new File(plugin.getDataFolder(), "worlds");
-        if (!worldsFolder.exists()) {
-            worldsFolder.mkdirs();
-            return;
-        }
-
-        File[] worldFiles = worldsFolder.listFiles((dir, name) -> name.endsWith(".yml"));
-        if (worldFiles != null) {
-            for (File worldFile : worldFiles) {
-                try {
-                    String worldName = worldFile.getName().replace(".yml", "");
-                    YamlConfiguration config = YamlConfiguration.loadConfiguration(worldFile);
-                    configs.put("worlds/" + worldName + ".yml", config);
-                    configFiles.put("worlds/" + worldName + ".yml", worldFile);
-                } catch (Exception e) {
-                    plugin.logError("Ошибка загрузки конфига мира: " + worldFile.getName());
-                }
-            }
-        }
-    }
-
     public void saveAllConfigs() {
         for (Map.Entry<String, YamlConfiguration> entry : configs.entrySet()) {
             try {
@@ -123,6 +105,31 @@ public class ConfigManager {
         }
     }
 
+    /**
+     * Снимок конфигов для фонового автосохранения (основной поток).
+     * Конфиги небольшие, поэтому текст снимается сразу: YamlConfiguration
+     * нельзя читать из другого потока, пока основной поток ее меняет
+     *
+     * @return запись снимка, выполняется в фоне
+     */
+    public Runnable snapshotForSave() {
+        Map<File, String> contents = new HashMap<>();
+        for (Map.Entry<String, YamlConfiguration> entry : configs.entrySet()) {
+            File file = configFiles.get(entry.getKey());
+            if (file != null) {
+                contents.put(file, entry.getValue().saveToString());
+            }
+        }
+
+        return () -> {
+            for (Map.Entry<File, String> entry : contents.entrySet()) {
+                if (!ConfigUtils.writeAtomic(entry.getKey(), entry.getValue().getBytes(StandardCharsets.UTF_8))) {
+                    plugin.logError("Ошибка сохранения конфига: " + entry.getKey().getName());
+                }
+            }
+        };
+    }
+
     public void saveConfig(String configName) {
         try {
             YamlConfiguration config = configs.get(configName);
@@ -141,6 +148,12 @@ public class ConfigManager {
             try {
                 YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
                 configs.put(configName, config);
+                if ("config.yml".equals(configName)) {
+                    mainConfig = config;
+                } else if ("messages.yml".equals(configName)) {
+                    messagesConfig = config;
+                }
+                publishSettings();
                 plugin.logInfo("Конфиг перезагружен: " + configName);
             } catch (Exception e) {
                 plugin.logError("Ошибка перезагрузки конфига: " + configName);
@@ -148,6 +161,25 @@ public class ConfigManager {
         }
     }
 
+    /**
+     * Разобрать config.yml и messages.yml в новый снимок и опубликовать его.
+     * Читатели видят либо старый снимок, либо новый целиком
+     */
+    private void publishSettings() {
+        if (mainConfig == null) {
+            plugin.logError("config.yml не загружен, настройки не обновлены");
+            return;
+        }
+        settings = PluginSettings.parse(mainConfig, messagesConfig);
+    }
+
+    /**
+     * Текущие настройки плагина
+     */
+    public PluginSettings getSettings() {
+        return settings;
+    }
+
     public void reloadAllConfigs() {
         loadAllConfigs();
         plugin.logInfo("Все конфиги перезагружены");
@@ -174,29 +206,27 @@ public class ConfigManager {
         return itemsConfig;
     }
 
-    // ConfigManager.java:
-    public org.bukkit.configuration.ConfigurationSection getWorldConfig(String worldName) {
-        YamlConfiguration config = configs.get("worlds/" + worldName + ".yml");
-        if (config != null) {
-            return config;  // ← Возвращаем саму конфигурацию
-        }
-        return null;
-    }
-
     public FileConfiguration getConfig(String configName) {
         return configs.get(configName);
     }
 
     public void setConfig(String configName, YamlConfiguration config) {
         configs.put(configName, config);
+        if ("config.yml".equals(configName)) {
+            mainConfig = config;
+            publishSettings();
+        } else if ("messages.yml".equals(configName)) {
+            messagesConfig = config;
+            publishSettings();
+        }
     }
 
     /**
      * Получить сообщение из messages.yml с заменой переменных
      */
     public String getMessage(String path, Map<String, String> replacements) {
-        String message = messagesConfig.getString(path, "");
-        if (message.isEmpty()) return path;
+        String message = settings.messages().get(path);
+        if (message == null || message.isEmpty()) return path;
 
         if (replacements != null) {
             for (Map.Entry<String, String> entry : replacements.entrySet()) {
@@ -204,7 +234,7 @@ public class ConfigManager {
             }
         }
 
-        return message.replace("&", "§");
+        return message;
     }
 
     public String getMessage(String path) {
@@ -215,8 +245,6 @@ public class ConfigManager {
      * Получить список сообщений
      */
     public java.util.List<String> getMessageList(String path) {
-        java.util.List<String> messages = messagesConfig.getStringList(path);
-        messages.replaceAll(msg -> msg.replace("&", "§"));
-        return messages;
+        return new java.util.ArrayList<>(settings.messages().getList(path));
     }
 }
\ No newline at end of file
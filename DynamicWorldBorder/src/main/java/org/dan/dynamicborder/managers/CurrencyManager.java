@@ -1,34 +1,50 @@
 package org.dan.dynamicborder.managers;
 
 import org.dan.dynamicborder.DynamicBorderPlugin;
+import org.dan.dynamicborder.data.ItemPriceIndex;
+import org.dan.dynamicborder.data.PluginSettings;
+import org.dan.dynamicborder.storage.BalanceJournal;
+import org.dan.dynamicborder.storage.StorageBackend;
+import org.dan.dynamicborder.utils.ConfigUtils;
 import org.dan.dynamicborder.utils.MessageUtils;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.configuration.serialization.ConfigurationSerializable;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class CurrencyManager {
 
     private final DynamicBorderPlugin plugin;
-    private final Map<UUID, Double> playerBalances = new ConcurrentHashMap<>();
-    private final Map<Material, Double> sellableItems = new ConcurrentHashMap<>();
+    private final BalanceAccounts accounts = new BalanceAccounts(this::loadBalance, this::commit);
+    // Цены магазина: неизменяемая таблица, подменяется целиком при изменении
+    private final AtomicReference<ItemPriceIndex> itemPrices = new AtomicReference<>(ItemPriceIndex.EMPTY);
     private final Set<UUID> blockedPlayers = Collections.newSetFromMap(new ConcurrentHashMap<>());
     private final Map<UUID, Long> playerCacheTime = new ConcurrentHashMap<>();
+    // Игроки, чей баланс изменился после последней записи в хранилище (UUID -> версия изменения)
+    private final Map<UUID, Long> dirtyBalances = new ConcurrentHashMap<>();
+    private final AtomicLong balanceVersion = new AtomicLong();
 
     private boolean shopEnabled = true;
     private String currencyName = "Граничных блоков";
     private String currencySymbol = "⧈";
     private File balancesFile;
     private File itemsFile;
+    private BalanceJournal journal;
+    private StorageBackend storage;
 
     private static final long CACHE_TIMEOUT = 300000; // 5 минут
 
@@ -39,30 +55,49 @@ public class CurrencyManager {
 
     private void initialize() {
         // Создание файлов
+        storage = plugin.getStorage();
         balancesFile = new File(plugin.getDataFolder(), "data/balances.yml");
         itemsFile = new File(plugin.getDataFolder(), "data/items.yml");
 
-        // Загрузка данных
+        // Загрузка данных: балансы игроков читаются из хранилища по требованию,
+        // журнал проигрывается поверх них
         loadBalances();
+        openJournal();
         loadItems();
 
         // Загрузка настроек из конфига
         loadConfigSettings();
 
         plugin.logInfo("CurrencyManager инициализирован");
-        plugin.logInfo("Загружено балансов: " + playerBalances.size());
-        plugin.logInfo("Загружено предметов для продажи: " + sellableItems.size());
+        plugin.logInfo("Балансов из журнала: " + accounts.size());
+        plugin.logInfo("Загружено предметов для продажи: " + itemPrices.get().size());
     }
 
-    private void loadConfigSettings() {
-        var config = plugin.getConfigManager().getMainConfig();
-        if (config != null) {
-            currencyName = config.getString("settings.currency-name", "Граничных блоков");
-            currencySymbol = config.getString("settings.currency-symbol", "⧈");
-            shopEnabled = config.getBoolean("settings.shop-enabled", true);
+    private void openJournal() {
+        PluginSettings.General settings = plugin.getConfigManager().getSettings().general();
+
+        journal = new BalanceJournal(plugin, new File(plugin.getDataFolder(), "data/balances.journal"),
+                this::writeSnapshot, settings.journalCompactRecords());
+
+        Map<UUID, Double> replayedBalances = new HashMap<>();
+        int replayed = journal.open(replayedBalances, settings.journalCompactInterval());
+        // Проигранные записи новее файлов игроков
+        for (Map.Entry<UUID, Double> entry : replayedBalances.entrySet()) {
+            accounts.put(entry.getKey(), entry.getValue());
+            dirtyBalances.put(entry.getKey(), balanceVersion.incrementAndGet());
+        }
+        if (replayed > 0) {
+            plugin.logInfo("Проиграно записей журнала балансов: " + replayed);
         }
     }
 
+    private void loadConfigSettings() {
+        PluginSettings.General settings = plugin.getConfigManager().getSettings().general();
+        currencyName = settings.currencyName();
+        currencySymbol = settings.currencySymbol();
+        shopEnabled = settings.shopEnabled();
+    }
+
     // ========== БАЛАНСЫ ==========
 
     /**
@@ -76,14 +111,10 @@ public class CurrencyManager {
      * Получить баланс по UUID
      */
     public double getBalance(UUID uuid) {
-        // Проверка кэша
-        Long cacheTime = playerCacheTime.get(uuid);
-        if (cacheTime != null && System.currentTimeMillis() - cacheTime > CACHE_TIMEOUT) {
-            // Кэш устарел, загружаем заново
-            loadPlayerBalance(uuid);
-        }
-
-        return playerBalances.getOrDefault(uuid, 0.0);
+        // Память - источник истины: все изменения уже записаны в журнал.
+        // При промахе читается только файл этого игрока
+        touch(uuid);
+        return accounts.get(uuid);
     }
 
     /**
@@ -97,17 +128,8 @@ public class CurrencyManager {
      * Установить баланс по UUID
      */
     public boolean setBalance(UUID uuid, double amount) {
-        if (amount < 0) {
-            amount = 0;
-        }
-
-        playerBalances.put(uuid, amount);
-        playerCacheTime.put(uuid, System.currentTimeMillis());
-
-        // Асинхронное сохранение
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> savePlayerBalance(uuid));
-
-        return true;
+        double balance = Math.max(0, amount);
+        return update(uuid, current -> balance);
     }
 
     /**
@@ -118,30 +140,19 @@ public class CurrencyManager {
             return false;
         }
 
-        UUID uuid = player.getUniqueId();
-        double current = getBalance(uuid);
-        double newBalance = current + amount;
-
-        return setBalance(uuid, newBalance);
+        return update(player.getUniqueId(), current -> current + amount);
     }
 
     /**
-     * Снять валюту
+     * Снять валюту. Проверка и списание выполняются атомарно: два параллельных
+     * списания не могут оба пройти проверку одного и того же остатка
      */
     public boolean withdrawBalance(Player player, double amount) {
         if (amount <= 0) {
             return false;
         }
 
-        UUID uuid = player.getUniqueId();
-        double current = getBalance(uuid);
-
-        if (current < amount) {
-            return false;
-        }
-
-        double newBalance = current - amount;
-        return setBalance(uuid, newBalance);
+        return update(player.getUniqueId(), current -> current < amount ? Double.NaN : current - amount);
     }
 
     /**
@@ -163,22 +174,11 @@ public class CurrencyManager {
             return new TransferResult(false, "Нельзя перевести валюту самому себе");
         }
 
-        if (!hasEnough(from, amount)) {
+        // Списание и зачисление - одна операция, между ними баланс никто не увидит
+        if (!transferBalance(from.getUniqueId(), to.getUniqueId(), amount)) {
             return new TransferResult(false, "Недостаточно валюты для перевода");
         }
 
-        // Снимаем у отправителя
-        if (!withdrawBalance(from, amount)) {
-            return new TransferResult(false, "Ошибка списания валюты");
-        }
-
-        // Добавляем получателю
-        if (!addBalance(to, amount)) {
-            // Если не удалось добавить получателю, возвращаем отправителю
-            addBalance(from, amount);
-            return new TransferResult(false, "Ошибка зачисления валюты");
-        }
-
         // Уведомляем игроков
         from.sendMessage(MessageUtils.format("&aВы перевели &e" + formatCurrency(amount) +
                 " &aигроку &e" + to.getName()));
@@ -188,6 +188,69 @@ public class CurrencyManager {
         return new TransferResult(true, "Перевод успешно выполнен", amount, from.getName(), to.getName());
     }
 
+    /**
+     * Атомарный перевод между счетами без глобальной блокировки: блокируются
+     * только два счета, всегда в порядке UUID, поэтому встречные переводы
+     * не взаимоблокируются
+     *
+     * @return false, если у отправителя недостаточно валюты
+     */
+    public boolean transferBalance(UUID from, UUID to, double amount) {
+        touch(from);
+        touch(to);
+        return accounts.transfer(from, to, amount);
+    }
+
+    /**
+     * Загрузить счет игрока в кэш заранее (при входе, вне основного потока)
+     */
+    public void preload(UUID uuid) {
+        touch(uuid);
+        accounts.preload(uuid);
+    }
+
+    /**
+     * Отметить обращение к счету: давно не используемые счета
+     * выгружает cleanupCache
+     */
+    private void touch(UUID uuid) {
+        playerCacheTime.put(uuid, System.currentTimeMillis());
+    }
+
+    /**
+     * Атомарно изменить баланс
+     *
+     * @param change новый баланс по текущему; NaN - отказ без изменений
+     * @return false, если изменение отклонено
+     */
+    private boolean update(UUID uuid, DoubleUnaryOperator change) {
+        touch(uuid);
+        return accounts.update(uuid, change);
+    }
+
+    /**
+     * Записать новый баланс (под блокировкой счета): запись в журнал идет в
+     * том же порядке, что и изменения. Пометка ставится до записи в журнал:
+     * сворачивание журнала между ними иначе не увидело бы изменение ни в
+     * снапшоте, ни в журнале. Значение к этому моменту уже опубликовано
+     */
+    private void commit(UUID uuid, double balance) {
+        dirtyBalances.put(uuid, balanceVersion.incrementAndGet());
+        journal.append(uuid, balance);
+
+        LeaderboardManager leaderboards = plugin.getLeaderboardManager();
+        if (leaderboards != null) {
+            leaderboards.onBalance(uuid, balance);
+        }
+    }
+
+    /**
+     * Обойти балансы, загруженные в память (включая проигранные из журнала)
+     */
+    public void forEachLoadedBalance(BiConsumer<UUID, Double> action) {
+        accounts.forEach(action);
+    }
+
     // ========== МАГАЗИН ==========
 
     /**
@@ -211,8 +274,8 @@ public class CurrencyManager {
         }
 
         // Проверка предмета
-        Double price = sellableItems.get(material);
-        if (price == null || price <= 0) {
+        double price = itemPrices.get().price(material);
+        if (price <= 0) {
             return new SellResult(false, "Этот предмет нельзя продать");
         }
 
@@ -251,12 +314,73 @@ public class CurrencyManager {
         }
 
         // Обновляем статистику мира
-        updateWorldStats(player, material, removed, totalPrice);
+        updateWorldStats(player, totalPrice);
 
         return new SellResult(true, "Предметы успешно проданы",
                 removed, totalPrice, material.name());
     }
 
+    /**
+     * Продать все продаваемые предметы инвентаря (без брони и второй руки).
+     * Инвентарь обходится один раз: каждая стопка оценивается и убирается,
+     * затем баланс пополняется и статистика мира обновляется один раз
+     * на всю продажу
+     */
+    public BulkSellResult sellInventory(Player player) {
+        if (!shopEnabled) {
+            return new BulkSellResult(false, "Магазин временно отключен");
+        }
+
+        if (blockedPlayers.contains(player.getUniqueId())) {
+            return new BulkSellResult(false, "Вы заблокированы в магазине");
+        }
+
+        PlayerInventory inventory = player.getInventory();
+        ItemStack[] contents = inventory.getStorageContents();
+        ItemStack[] remaining = contents.clone();
+        ItemPriceIndex prices = itemPrices.get();
+        Map<Material, SoldItems> sold = new EnumMap<>(Material.class);
+        int soldCount = 0;
+        double earned = 0;
+
+        for (int i = 0; i < contents.length; i++) {
+            ItemStack item = contents[i];
+            if (item == null) {
+                continue;
+            }
+
+            double price = prices.price(item.getType());
+            if (price <= 0) {
+                continue;
+            }
+
+            int amount = item.getAmount();
+            double value = price * amount;
+            sold.merge(item.getType(), new SoldItems(amount, value), SoldItems::plus);
+            remaining[i] = null;
+            soldCount += amount;
+            earned += value;
+        }
+
+        if (sold.isEmpty()) {
+            return new BulkSellResult(false, "В инвентаре нет предметов для продажи");
+        }
+
+        inventory.setStorageContents(remaining);
+
+        if (!addBalance(player, earned)) {
+            // Если не удалось добавить валюту, возвращаем инвентарь как был
+            inventory.setStorageContents(contents);
+            player.updateInventory();
+            return new BulkSellResult(false, "Ошибка зачисления валюты");
+        }
+
+        player.updateInventory();
+        updateWorldStats(player, earned);
+
+        return new BulkSellResult(true, "Инвентарь продан", soldCount, earned, sold);
+    }
+
     /**
      * Продать предмет в руке
      */
@@ -285,7 +409,7 @@ public class CurrencyManager {
             return false;
         }
 
-        sellableItems.put(material, price);
+        itemPrices.updateAndGet(items -> items.with(material, price));
         saveItems();
         return true;
     }
@@ -298,54 +422,40 @@ public class CurrencyManager {
             return false;
         }
 
-        sellableItems.remove(material);
+        itemPrices.updateAndGet(items -> items.without(material));
         saveItems();
         return true;
     }
 
     /**
      * Получить цену предмета
+     *
+     * @return null, если предмет не продается
      */
     public Double getItemPrice(Material material) {
-        return sellableItems.get(material);
+        double price = itemPrices.get().price(material);
+        return price > 0 ? price : null;
     }
 
     /**
-     * Получить все предметы для продажи
+     * Получить все предметы для продажи (по алфавиту)
      */
     public Map<String, Double> getAllSellableItems() {
-        Map<String, Double> items = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
-
-        for (Map.Entry<Material, Double> entry : sellableItems.entrySet()) {
-            items.put(entry.getKey().name(), entry.getValue());
-        }
-
-        return items;
+        return itemPrices.get().byName();
     }
 
     /**
      * Получить топ предметов для продажи
      */
     public Map<String, Double> getTopSellableItems(int count) {
-        return sellableItems.entrySet().stream()
-                .sorted((e1, e2) -> Double.compare(e2.getValue(), e1.getValue()))
-                .limit(count)
-                .collect(Collectors.toMap(
-                        e -> e.getKey().name(),
-                        Map.Entry::getValue,
-                        (e1, e2) -> e1,
-                        LinkedHashMap::new
-                ));
+        return itemPrices.get().top(count);
     }
 
     /**
      * Получить имена всех предметов для продажи
      */
     public List<String> getSellableItemNames() {
-        return sellableItems.keySet().stream()
-                .map(Material::name)
-                .sorted(String.CASE_INSENSITIVE_ORDER)
-                .collect(Collectors.toList());
+        return itemPrices.get().names();
     }
 
     // ========== УПРАВЛЕНИЕ ДОСТУПОМ ==========
@@ -421,8 +531,8 @@ public class CurrencyManager {
      * Форматирование цены предмета
      */
     public String formatItemPrice(Material material) {
-        Double price = getItemPrice(material);
-        if (price == null) {
+        double price = itemPrices.get().price(material);
+        if (price <= 0) {
             return "Не продается";
         }
         return formatCurrency(price);
@@ -453,7 +563,7 @@ public class CurrencyManager {
         info.add("§6══════════════════════════════════════");
         info.add("§7Статус: " + (shopEnabled ? "§aОткрыт" : "§cЗакрыт"));
         info.add("§7Заблокировано игроков: §a" + blockedPlayers.size());
-        info.add("§7Предметов для продажи: §a" + sellableItems.size());
+        info.add("§7Предметов для продажи: §a" + itemPrices.get().size());
         info.add("§6══════════════════════════════════════");
 
         return info;
@@ -509,11 +619,11 @@ public class CurrencyManager {
         player.updateInventory();
     }
 
-    private void updateWorldStats(Player player, Material material, int amount, double price) {
-        // Здесь можно добавить обновление статистики мира
-        // Например, увеличение totalCurrencyEarned в WorldBorderData
-        String worldName = player.getWorld().getName();
-        // Реализация зависит от структуры ваших данных
+    private void updateWorldStats(Player player, double earned) {
+        BorderManager borderManager = plugin.getBorderManager();
+        if (borderManager != null) {
+            borderManager.recordSale(player.getWorld().getName(), earned);
+        }
     }
 
     // ========== ЗАГРУЗКА И СОХРАНЕНИЕ ==========
@@ -526,16 +636,24 @@ public class CurrencyManager {
         try {
             YamlConfiguration config = YamlConfiguration.loadConfiguration(balancesFile);
 
+            // Старый формат: все балансы в одном файле - переносим в хранилище
+            boolean migrated = false;
             if (config.contains("balances")) {
+                Map<UUID, Double> legacyBalances = new HashMap<>();
                 for (String uuidStr : config.getConfigurationSection("balances").getKeys(false)) {
                     try {
-                        UUID uuid = UUID.fromString(uuidStr);
-                        double balance = config.getDouble("balances." + uuidStr, 0.0);
-                        playerBalances.put(uuid, balance);
+                        legacyBalances.put(UUID.fromString(uuidStr), config.getDouble("balances." + uuidStr, 0.0));
                     } catch (IllegalArgumentException e) {
                         plugin.logWarning("Неверный UUID в balances.yml: " + uuidStr);
                     }
                 }
+
+                migrated = storage.saveBalances(legacyBalances);
+                if (migrated) {
+                    plugin.logInfo("Перенесено балансов в хранилище " + storage.getName() + ": " + legacyBalances.size());
+                } else {
+                    plugin.logError("Не удалось перенести балансы из balances.yml, перенос будет повторен при запуске");
+                }
             }
 
             // Загрузка заблокированных игроков
@@ -557,76 +675,96 @@ public class CurrencyManager {
                 currencySymbol = config.getString("settings.currency-symbol", "⧈");
             }
 
+            if (migrated) {
+                writeSettingsFile();
+            }
+
         } catch (Exception e) {
             plugin.logError("Ошибка загрузки balances.yml: " + e.getMessage());
         }
     }
 
-    private void loadPlayerBalance(UUID uuid) {
-        if (!balancesFile.exists()) {
-            return;
+    /**
+     * Загрузить баланс игрока из хранилища
+     */
+    private double loadBalance(UUID uuid) {
+        if (plugin.isDebugMode() && Bukkit.isPrimaryThread()) {
+            plugin.logWarning("Баланс игрока " + uuid + " загружается в основном потоке");
         }
 
         try {
-            YamlConfiguration config = YamlConfiguration.loadConfiguration(balancesFile);
-            String uuidStr = uuid.toString();
-
-            if (config.contains("balances." + uuidStr)) {
-                double balance = config.getDouble("balances." + uuidStr, 0.0);
-                playerBalances.put(uuid, balance);
-            }
-
-            playerCacheTime.put(uuid, System.currentTimeMillis());
-
+            Double balance = storage.loadBalance(uuid);
+            return balance != null ? balance : 0.0;
         } catch (Exception e) {
             plugin.logError("Ошибка загрузки баланса игрока " + uuid + ": " + e.getMessage());
+            return 0.0;
         }
     }
 
-    private void savePlayerBalance(UUID uuid) {
-        try {
-            YamlConfiguration config = balancesFile.exists() ?
-                    YamlConfiguration.loadConfiguration(balancesFile) : new YamlConfiguration();
-
-            String uuidStr = uuid.toString();
-            double balance = playerBalances.getOrDefault(uuid, 0.0);
+    /**
+     * Контрольная точка балансов: журнал сбрасывается на диск,
+     * при необходимости сворачивается в снапшот в фоне
+     */
+    public void saveAllBalances() {
+        journal.checkpoint();
+    }
 
-            config.set("balances." + uuidStr, balance);
-            config.set("balances." + uuidStr + ".last-update", System.currentTimeMillis());
+    /**
+     * Выполнить действие, когда журнал сброшен на диск; до конца действия
+     * журнал не пишется и не сворачивается (для бэкапа)
+     */
+    public <T> T callWithJournalFlushed(Supplier<T> action) {
+        return journal.callWhenFlushed(action);
+    }
 
-            config.save(balancesFile);
+    /**
+     * Записать снапшот (вызывается из потока журнала): измененные балансы
+     * уходят в хранилище одним пакетом, блокировки и настройки - в balances.yml
+     */
+    private boolean writeSnapshot() {
+        List<Map.Entry<UUID, Long>> versions = new ArrayList<>(dirtyBalances.entrySet());
+        Map<UUID, Double> batch = new HashMap<>();
+
+        // Значения читаются после версий: если баланс изменится во время записи,
+        // версия сменится и пометка останется до следующего снапшота
+        for (Map.Entry<UUID, Long> entry : versions) {
+            double balance = accounts.getLoaded(entry.getKey());
+            if (!Double.isNaN(balance)) {
+                batch.put(entry.getKey(), balance);
+            }
+        }
 
-        } catch (IOException e) {
-            plugin.logError("Ошибка сохранения баланса игрока " + uuid + ": " + e.getMessage());
+        if (!storage.saveBalances(batch)) {
+            return false;
         }
-    }
 
-    public void saveAllBalances() {
-        try {
-            YamlConfiguration config = new YamlConfiguration();
+        for (Map.Entry<UUID, Long> entry : versions) {
+            dirtyBalances.remove(entry.getKey(), entry.getValue());
+        }
 
-            // Сохраняем балансы
-            for (Map.Entry<UUID, Double> entry : playerBalances.entrySet()) {
-                config.set("balances." + entry.getKey().toString(), entry.getValue());
-            }
+        return writeSettingsFile();
+    }
 
-            // Сохраняем заблокированных игроков
-            List<String> blockedList = blockedPlayers.stream()
-                    .map(UUID::toString)
-                    .collect(Collectors.toList());
-            config.set("blocked-players", blockedList);
+    private boolean writeSettingsFile() {
+        YamlConfiguration config = new YamlConfiguration();
 
-            // Сохраняем настройки
-            config.set("settings.shop-enabled", shopEnabled);
-            config.set("settings.currency-name", currencyName);
-            config.set("settings.currency-symbol", currencySymbol);
-            config.set("settings.last-save", System.currentTimeMillis());
+        // Сохраняем заблокированных игроков
+        List<String> blockedList = blockedPlayers.stream()
+                .map(UUID::toString)
+                .collect(Collectors.toList());
+        config.set("blocked-players", blockedList);
 
-            config.save(balancesFile);
+        // Сохраняем настройки
+        config.set("settings.shop-enabled", shopEnabled);
+        config.set("settings.currency-name", currencyName);
+        config.set("settings.currency-symbol", currencySymbol);
+        config.set("settings.last-save", System.currentTimeMillis());
 
-        } catch (IOException e) {
-            plugin.logError("Ошибка сохранения всех балансов: " + e.getMessage());
+        if (!ConfigUtils.saveYamlAtomic(config, balancesFile)) {
+            plugin.logError("Ошибка сохранения balances.yml");
+            return false;
         }
+        return true;
     }
 
     private void loadItems() {
@@ -640,18 +778,20 @@ public class CurrencyManager {
             YamlConfiguration config = YamlConfiguration.loadConfiguration(itemsFile);
 
             if (config.contains("items")) {
+                Map<Material, Double> items = new EnumMap<>(Material.class);
                 for (String materialStr : config.getConfigurationSection("items").getKeys(false)) {
                     try {
                         Material material = Material.valueOf(materialStr.toUpperCase());
                         double price = config.getDouble("items." + materialStr, 0.0);
 
                         if (price > 0) {
-                            sellableItems.put(material, price);
+                            items.put(material, price);
                         }
                     } catch (IllegalArgumentException e) {
                         plugin.logWarning("Неизвестный материал в items.yml: " + materialStr);
                     }
                 }
+                itemPrices.set(ItemPriceIndex.of(items));
             }
 
         } catch (Exception e) {
@@ -675,59 +815,37 @@ public class CurrencyManager {
         defaultItems.put(Material.NETHERITE_SCRAP, 100.0);
         defaultItems.put(Material.ANCIENT_DEBRIS, 200.0);
 
-        sellableItems.putAll(defaultItems);
+        itemPrices.set(ItemPriceIndex.of(defaultItems));
         saveItems();
 
         plugin.logInfo("Созданы предметы для продажи по умолчанию");
     }
 
     private void saveItems() {
-        try {
-            YamlConfiguration config = new YamlConfiguration();
+        writeItems(itemPrices.get().toMap());
+    }
 
-            for (Map.Entry<Material, Double> entry : sellableItems.entrySet()) {
-                config.set("items." + entry.getKey().name(), entry.getValue());
-            }
+    private void writeItems(Map<Material, Double> items) {
+        YamlConfiguration config = new YamlConfiguration();
 
-            config.set("last-update", System.currentTimeMillis());
-            config.save(itemsFile);
+        for (Map.Entry<Material, Double> entry : items.entrySet()) {
+            config.set("items." + entry.getKey().name(), entry.getValue());
+        }
 
-        } catch (IOException e) {
-            plugin.logError("Ошибка сохранения items.yml: " + e.getMessage());
+        config.set("last-update", System.currentTimeMillis());
+        if (!ConfigUtils.saveYamlAtomic(config, itemsFile)) {
+            plugin.logError("Ошибка сохранения items.yml");
         }
     }
 
     private void saveBlockedPlayers() {
-        try {
-            YamlConfiguration config = balancesFile.exists() ?
-                    YamlConfiguration.loadConfiguration(balancesFile) : new YamlConfiguration();
-
-            List<String> blockedList = blockedPlayers.stream()
-                    .map(UUID::toString)
-                    .collect(Collectors.toList());
-
-            config.set("blocked-players", blockedList);
-            config.save(balancesFile);
-
-        } catch (IOException e) {
-            plugin.logError("Ошибка сохранения заблокированных игроков: " + e.getMessage());
-        }
+        // Список блокировок входит в снапшот balances.yml
+        journal.requestCompaction();
     }
 
     private void saveConfigSettings() {
-        try {
-            YamlConfiguration config = balancesFile.exists() ?
-                    YamlConfiguration.loadConfiguration(balancesFile) : new YamlConfiguration();
-
-            config.set("settings.shop-enabled", shopEnabled);
-            config.set("settings.currency-name", currencyName);
-            config.set("settings.currency-symbol", currencySymbol);
-
-            config.save(balancesFile);
-
-        } catch (IOException e) {
-            plugin.logError("Ошибка сохранения настроек: " + e.getMessage());
-        }
+        // Настройки магазина входят в снапшот balances.yml
+        journal.requestCompaction();
     }
 
     public void saveData() {
@@ -735,17 +853,40 @@ public class CurrencyManager {
         saveItems();
     }
 
+    /**
+     * Снимок для фонового автосохранения (основной поток): контрольная точка
+     * журнала ставится в очередь, список предметов копируется
+     *
+     * @return запись снимка, выполняется в фоне
+     */
+    public Runnable snapshotForSave() {
+        saveAllBalances();
+        ItemPriceIndex items = itemPrices.get();
+        return () -> writeItems(items.toMap());
+    }
+
+    /**
+     * Сохранить все и остановить журнал (при выключении плагина)
+     */
+    public void shutdown() {
+        saveItems();
+        journal.close();
+    }
+
     public void cleanupCache() {
         long now = System.currentTimeMillis();
         Iterator<Map.Entry<UUID, Long>> iterator = playerCacheTime.entrySet().iterator();
 
         while (iterator.hasNext()) {
             Map.Entry<UUID, Long> entry = iterator.next();
-            if (now - entry.getValue() > CACHE_TIMEOUT) {
-                // Сохраняем данные перед очисткой
-                savePlayerBalance(entry.getKey());
-                iterator.remove();
+            UUID uuid = entry.getKey();
+            if (now - entry.getValue() <= CACHE_TIMEOUT || Bukkit.getPlayer(uuid) != null) {
+                continue;
             }
+
+            // Выгружаем только балансы, уже записанные в файл игрока
+            accounts.evictIf(uuid, id -> !dirtyBalances.containsKey(id));
+            iterator.remove();
         }
     }
 
@@ -777,6 +918,43 @@ public class CurrencyManager {
         public String getItemName() { return itemName; }
     }
 
+    /**
+     * Продано предметов одного типа: количество и выручка
+     */
+    public record SoldItems(int count, double earned) {
+
+        private SoldItems plus(SoldItems other) {
+            return new SoldItems(count + other.count, earned + other.earned);
+        }
+    }
+
+    public static class BulkSellResult {
+        private final boolean success;
+        private final String message;
+        private final int soldCount;
+        private final double earned;
+        private final Map<Material, SoldItems> breakdown;
+
+        public BulkSellResult(boolean success, String message) {
+            this(success, message, 0, 0.0, Collections.emptyMap());
+        }
+
+        public BulkSellResult(boolean success, String message, int soldCount, double earned,
+                              Map<Material, SoldItems> breakdown) {
+            this.success = success;
+            this.message = message;
+            this.soldCount = soldCount;
+            this.earned = earned;
+            this.breakdown = Collections.unmodifiableMap(breakdown);
+        }
+
+        public boolean isSuccess() { return success; }
+        public String getMessage() { return message; }
+        public int getSoldCount() { return soldCount; }
+        public double getEarned() { return earned; }
+        public Map<Material, SoldItems> getBreakdown() { return breakdown; }
+    }
+
     public static class TransferResult {
         private final boolean success;
         private final String message;
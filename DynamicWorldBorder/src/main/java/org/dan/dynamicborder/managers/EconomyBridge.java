@@ -0,0 +1,25 @@
+package org.dan.dynamicborder.managers;
+
+import org.bukkit.entity.Player;
+
+/**
+ * Привязка к внешней экономике (Vault), выполняется один раз при подключении.
+ * Ошибки провайдера выбрасываются как RuntimeException
+ */
+interface EconomyBridge {
+
+    double getBalance(Player player);
+
+    boolean has(Player player, double amount);
+
+    boolean withdraw(Player player, double amount);
+
+    boolean deposit(Player player, double amount);
+
+    String getCurrencyName();
+
+    /**
+     * Способ привязки для лога
+     */
+    String describe();
+}
\ No newline at end of file
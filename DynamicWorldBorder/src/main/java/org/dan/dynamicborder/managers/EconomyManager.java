@@ -3,13 +3,14 @@ package org.dan.dynamicborder.managers;
 import org.dan.dynamicborder.DynamicBorderPlugin;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.RegisteredServiceProvider;
-import java.lang.reflect.Method;
 
 public class EconomyManager {
 
+    private static final String VAULT_ECONOMY = "net.milkbowl.vault.economy.Economy";
+
     private final DynamicBorderPlugin plugin;
-    private Object vaultEconomy = null;
-    private boolean vaultEnabled = false;
+    // Привязка к Vault, выполненная при подключении; null - внутренняя экономика
+    private EconomyBridge vault = null;
 
     public EconomyManager(DynamicBorderPlugin plugin) {
         this.plugin = plugin;
@@ -17,46 +18,58 @@ public class EconomyManager {
     }
 
     private void setupEconomy() {
+        if (plugin.getServer().getPluginManager().getPlugin("Vault") == null) {
+            plugin.logInfo("Vault не найден, используем внутреннюю экономику");
+            return;
+        }
+
+        Class<?> economyClass;
         try {
-            // Проверяем наличие Vault через рефлексию
-            Class.forName("net.milkbowl.vault.economy.Economy");
-
-            if (plugin.getServer().getPluginManager().getPlugin("Vault") != null) {
-                Class<?> economyClass = Class.forName("net.milkbowl.vault.economy.Economy");
-                RegisteredServiceProvider<?> rsp = plugin.getServer().getServicesManager()
-                        .getRegistration(economyClass);
-
-                if (rsp != null) {
-                    vaultEconomy = rsp.getProvider();
-                    vaultEnabled = true;
-                    plugin.getLogger().info("Vault экономика подключена!");
-                }
+            economyClass = Class.forName(VAULT_ECONOMY);
+        } catch (ClassNotFoundException e) {
+            plugin.logInfo("Vault не найден, используем внутреннюю экономику");
+            return;
+        }
+
+        RegisteredServiceProvider<?> rsp = plugin.getServer().getServicesManager().getRegistration(economyClass);
+        if (rsp == null) {
+            plugin.logInfo("Vault без провайдера экономики, используем внутреннюю экономику");
+            return;
+        }
+
+        Object provider = rsp.getProvider();
+        try {
+            vault = new VaultEconomyBridge(provider);
+        } catch (LinkageError | ClassCastException e) {
+            // Версия VaultAPI на сервере не совпадает с той, с которой собран плагин
+            try {
+                vault = new ReflectiveEconomyBridge(provider, economyClass);
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                plugin.logWarning("Не удалось подключить Vault: " + ex.getMessage());
+                return;
             }
-        } catch (Exception e) {
-            vaultEnabled = false;
-            plugin.getLogger().info("Vault не найден, используем внутреннюю экономику");
         }
+
+        plugin.logInfo("Vault экономика подключена! (" + vault.describe() + ")");
     }
 
     public boolean hasEconomy() {
-        return vaultEnabled && vaultEconomy != null;
+        return vault != null;
+    }
+
+    /**
+     * Привязка к Vault или null, если Vault не подключен
+     */
+    EconomyBridge getVaultBridge() {
+        return vault;
     }
 
     public double getBalance(Player player) {
-        if (hasEconomy()) {
+        if (vault != null) {
             try {
-                // Используем рефлексию для вызова методов Vault
-                Method getBalanceMethod = vaultEconomy.getClass()
-                        .getMethod("getBalance", Player.class);
-                Object result = getBalanceMethod.invoke(vaultEconomy, player);
-
-                if (result instanceof Double) {
-                    return (Double) result;
-                } else if (result instanceof Integer) {
-                    return ((Integer) result).doubleValue();
-                }
-            } catch (Exception e) {
-                plugin.getLogger().warning("Ошибка получения баланса через Vault: " + e.getMessage());
+                return vault.getBalance(player);
+            } catch (RuntimeException e) {
+                plugin.logWarning("Ошибка получения баланса через Vault: " + e.getMessage());
             }
         }
 
@@ -70,17 +83,11 @@ public class EconomyManager {
     }
 
     public boolean withdraw(Player player, double amount) {
-        if (hasEconomy()) {
+        if (vault != null) {
             try {
-                Method withdrawMethod = vaultEconomy.getClass()
-                        .getMethod("withdrawPlayer", Player.class, double.class);
-                Object result = withdrawMethod.invoke(vaultEconomy, player, amount);
-
-                // Проверяем успешность транзакции
-                Method successMethod = result.getClass().getMethod("transactionSuccess");
-                return (Boolean) successMethod.invoke(result);
-            } catch (Exception e) {
-                plugin.getLogger().warning("Ошибка списания через Vault: " + e.getMessage());
+                return vault.withdraw(player, amount);
+            } catch (RuntimeException e) {
+                plugin.logWarning("Ошибка списания через Vault: " + e.getMessage());
             }
         }
 
@@ -96,31 +103,37 @@ public class EconomyManager {
     // Дополнительные полезные методы
 
     public boolean hasEnough(Player player, double amount) {
+        if (vault != null) {
+            try {
+                return vault.has(player, amount);
+            } catch (RuntimeException e) {
+                plugin.logWarning("Ошибка проверки баланса через Vault: " + e.getMessage());
+            }
+        }
         return getBalance(player) >= amount;
     }
 
     public boolean deposit(Player player, double amount) {
-        // Для внутренней экономики
-        if (plugin.getCurrencyManager() != null) {
-            // Если у CurrencyManager есть метод deposit
+        if (vault != null) {
             try {
-                Method depositMethod = plugin.getCurrencyManager().getClass()
-                        .getMethod("depositBalance", Player.class, double.class);
-                return (Boolean) depositMethod.invoke(plugin.getCurrencyManager(), player, amount);
-            } catch (Exception e) {
-                // Если нет метода deposit, просто увеличиваем баланс другим способом
-                return true;
+                return vault.deposit(player, amount);
+            } catch (RuntimeException e) {
+                plugin.logWarning("Ошибка зачисления через Vault: " + e.getMessage());
             }
         }
+
+        // Для внутренней экономики
+        if (plugin.getCurrencyManager() != null) {
+            return plugin.getCurrencyManager().addBalance(player, amount);
+        }
         return true;
     }
 
     public String getCurrencyName() {
-        if (hasEconomy()) {
+        if (vault != null) {
             try {
-                Method getNameMethod = vaultEconomy.getClass().getMethod("currencyNamePlural");
-                return (String) getNameMethod.invoke(vaultEconomy);
-            } catch (Exception e) {
+                return vault.getCurrencyName();
+            } catch (RuntimeException e) {
                 return "денег";
             }
         }
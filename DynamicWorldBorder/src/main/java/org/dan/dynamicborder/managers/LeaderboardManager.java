@@ -0,0 +1,138 @@
+package org.dan.dynamicborder.managers;
+
+import org.bukkit.Bukkit;
+import org.dan.dynamicborder.DynamicBorderPlugin;
+import org.dan.dynamicborder.data.WorldBorderData;
+import org.dan.dynamicborder.storage.StorageBackend;
+import org.dan.dynamicborder.utils.Leaderboard;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Рейтинги: самые богатые игроки, больше всех потратившие в каждом мире
+ * и самые расширяемые миры.
+ *
+ * Рейтинги обновляются при каждом изменении баланса, покупке и расширении
+ * границы, поэтому топ и место игрока не требуют сортировки всех игроков.
+ * При запуске в рейтинг попадают балансы из журнала и загруженные миры,
+ * затем в фоне обходится хранилище. Значения из хранилища добавляются
+ * только для тех, кого рейтинг еще не видел: изменения, сделанные во
+ * время обхода, новее файлов.
+ */
+public class LeaderboardManager {
+
+    private final DynamicBorderPlugin plugin;
+    private final Leaderboard<UUID> balances = new Leaderboard<>();
+    private final Map<String, Leaderboard<UUID>> spentByWorld = new ConcurrentHashMap<>();
+    // Миры по числу купленных расширений
+    private final Leaderboard<String> worlds = new Leaderboard<>();
+    private volatile boolean loaded = false;
+
+    public LeaderboardManager(DynamicBorderPlugin plugin) {
+        this.plugin = plugin;
+
+        // Проигранный журнал новее файлов игроков
+        plugin.getCurrencyManager().forEachLoadedBalance(balances::update);
+    }
+
+    /**
+     * Добавить миры и запустить фоновый обход хранилища (после загрузки миров)
+     */
+    public void load() {
+        for (WorldBorderData data : plugin.getBorderManager().getAllWorldData().values()) {
+            worlds.putIfAbsent(data.getWorldName(), data.getTotalExpansions());
+        }
+
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            long start = System.currentTimeMillis();
+            plugin.getStorage().scanPlayers(new StorageBackend.PlayerScan() {
+                @Override
+                public void balance(UUID uuid, double balance) {
+                    balances.putIfAbsent(uuid, balance);
+                }
+
+                @Override
+                public void spent(UUID uuid, String worldName, double totalSpent) {
+                    spentBoard(worldName).putIfAbsent(uuid, totalSpent);
+                }
+            });
+            loaded = true;
+
+            plugin.logInfo("Рейтинги построены: игроков " + balances.size() +
+                    " за " + (System.currentTimeMillis() - start) + "мс");
+        });
+    }
+
+    private Leaderboard<UUID> spentBoard(String worldName) {
+        return spentByWorld.computeIfAbsent(worldName, name -> new Leaderboard<>());
+    }
+
+    // ========== ИЗМЕНЕНИЯ ==========
+
+    /**
+     * Баланс игрока изменился
+     */
+    public void onBalance(UUID uuid, double balance) {
+        balances.update(uuid, balance);
+    }
+
+    /**
+     * Игрок потратил в мире: totalSpent - его сумма по всем типам цен мира
+     */
+    public void onSpent(UUID uuid, String worldName, double totalSpent) {
+        spentBoard(worldName).update(uuid, totalSpent);
+    }
+
+    /**
+     * В мире куплено расширение
+     */
+    public void onExpanded(WorldBorderData data) {
+        worlds.update(data.getWorldName(), data.getTotalExpansions());
+    }
+
+    // ========== ЗАПРОСЫ ==========
+
+    public List<Leaderboard.Entry<UUID>> getRichest(int count) {
+        return balances.top(count);
+    }
+
+    public int getBalanceRank(UUID uuid) {
+        return balances.rank(uuid);
+    }
+
+    public List<Leaderboard.Entry<UUID>> getTopSpenders(String worldName, int count) {
+        Leaderboard<UUID> board = spentByWorld.get(worldName);
+        return board != null ? board.top(count) : List.of();
+    }
+
+    public int getSpentRank(String worldName, UUID uuid) {
+        Leaderboard<UUID> board = spentByWorld.get(worldName);
+        return board != null ? board.rank(uuid) : 0;
+    }
+
+    public List<Leaderboard.Entry<String>> getMostExpandedWorlds(int count) {
+        return worlds.top(count);
+    }
+
+    /**
+     * Имя игрока для вывода в рейтинге
+     */
+    public String getPlayerName(UUID uuid) {
+        String name = Bukkit.getOfflinePlayer(uuid).getName();
+        return name != null ? name : uuid.toString().substring(0, 8);
+    }
+
+    /**
+     * Обход хранилища завершен, в рейтингах все известные игроки
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public int getPlayerCount() {
+        return balances.size();
+    }
+}
\ No newline at end of file
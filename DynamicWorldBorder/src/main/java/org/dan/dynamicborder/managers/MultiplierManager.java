@@ -2,15 +2,20 @@ package org.dan.dynamicborder.managers;
 
 import org.dan.dynamicborder.DynamicBorderPlugin;
 import org.dan.dynamicborder.data.PlayerMultiplierData;
+import org.dan.dynamicborder.storage.StorageBackend;
+import org.dan.dynamicborder.storage.WriteBehindQueue;
+import org.dan.dynamicborder.utils.CompiledFormula;
+import org.dan.dynamicborder.utils.ConfigUtils;
+import org.dan.dynamicborder.utils.MathUtils;
+import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.configuration.serialization.ConfigurationSerialization;
-import org.bukkit.Bukkit;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 
 public class MultiplierManager {
@@ -19,12 +24,21 @@ public class MultiplierManager {
     private final Map<String, MultiplierConfig> configs = new ConcurrentHashMap<>();
     private final Map<UUID, Map<String, PlayerMultiplierData>> playerData = new ConcurrentHashMap<>();
     private final Map<UUID, Long> playerCacheTime = new ConcurrentHashMap<>();
+    private final StorageBackend storage;
     private File multipliersFile;
-    private File playerDataFile;
+
+    // Отложенная запись прогресса игроков
+    private final WriteBehindQueue<UUID> saveQueue;
+    // Копии прогресса, снятые в основном потоке при изменении: поток записи
+    // не читает живые объекты, которые основной поток продолжает менять
+    private final Map<UUID, Map<String, PlayerMultiplierData>> pendingSaves = new ConcurrentHashMap<>();
 
     private static final long CACHE_TIMEOUT = 300000; // 5 минут
     private static final double MIN_MULTIPLIER = 0.1;
     private static final double MAX_MULTIPLIER = 10.0;
+    private static final int DEFAULT_TABLE_LEVELS = 256;
+    // Предел таблицы: два массива double по 512 КБ на тип цены, выше - расчет напрямую
+    private static final int MAX_TABLE_LEVELS = 65536;
 
     public enum MultiplierType {
         FIXED,      // Постоянный множитель: baseValue
@@ -40,9 +54,14 @@ public class MultiplierManager {
         private double baseValue = 1.0;
         private double step = 0.0;
         private String customFormula = "";
+        private CompiledFormula compiledFormula; // null - формулы нет или она с ошибкой
         private double minMultiplier = MIN_MULTIPLIER;
         private double maxMultiplier = MAX_MULTIPLIER;
         private String resetSchedule = "never"; // never, daily, weekly, monthly
+        private int tableLevels = DEFAULT_TABLE_LEVELS;
+
+        // Готовые множители уровней 0..tableLevels-1 с учетом лимитов; null - пересчитать
+        private volatile LevelTable table;
 
         // Геттеры
         public String getPriceType() { return priceType; }
@@ -54,22 +73,199 @@ public class MultiplierManager {
         public double getMinMultiplier() { return minMultiplier; }
         public double getMaxMultiplier() { return maxMultiplier; }
         public String getResetSchedule() { return resetSchedule; }
+        public int getTableLevels() { return tableLevels; }
 
         // Сеттеры
         public void setPriceType(String priceType) { this.priceType = priceType; }
-        public void setEnabled(boolean enabled) { this.enabled = enabled; }
-        public void setType(MultiplierType type) { this.type = type; }
-        public void setBaseValue(double baseValue) { this.baseValue = baseValue; }
-        public void setStep(double step) { this.step = step; }
-        public void setCustomFormula(String customFormula) { this.customFormula = customFormula; }
-        public void setMinMultiplier(double minMultiplier) { this.minMultiplier = minMultiplier; }
-        public void setMaxMultiplier(double maxMultiplier) { this.maxMultiplier = maxMultiplier; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; invalidateTable(); }
+        public void setType(MultiplierType type) { this.type = type; invalidateTable(); }
+        public void setBaseValue(double baseValue) { this.baseValue = baseValue; invalidateTable(); }
+        public void setStep(double step) { this.step = step; invalidateTable(); }
+        public void setCustomFormula(String customFormula) {
+            this.customFormula = customFormula;
+            this.compiledFormula = compileOrNull(customFormula);
+            invalidateTable();
+        }
+        public void setMinMultiplier(double minMultiplier) { this.minMultiplier = minMultiplier; invalidateTable(); }
+        public void setMaxMultiplier(double maxMultiplier) { this.maxMultiplier = maxMultiplier; invalidateTable(); }
         public void setResetSchedule(String resetSchedule) { this.resetSchedule = resetSchedule; }
+        public void setTableLevels(int tableLevels) { this.tableLevels = Math.max(0, Math.min(MAX_TABLE_LEVELS, tableLevels)); invalidateTable(); }
 
         /**
-         * Рассчитать множитель для уровня
+         * Копия настроек для фоновой записи
+         */
+        public MultiplierConfig copy() {
+            MultiplierConfig copy = new MultiplierConfig();
+            copy.priceType = priceType;
+            copy.enabled = enabled;
+            copy.type = type;
+            copy.baseValue = baseValue;
+            copy.step = step;
+            copy.customFormula = customFormula;
+            copy.compiledFormula = compiledFormula;
+            copy.minMultiplier = minMultiplier;
+            copy.maxMultiplier = maxMultiplier;
+            copy.resetSchedule = resetSchedule;
+            copy.tableLevels = tableLevels;
+            return copy;
+        }
+
+        /**
+         * Рассчитать множитель для уровня. Уровни в пределах таблицы читаются
+         * из готового массива, более высокие считаются напрямую
          */
         public double calculateMultiplier(int level) {
+            double[] values = getTable().values();
+            if (level >= 0 && level < values.length) {
+                return values[level];
+            }
+            return computeMultiplier(level);
+        }
+
+        /**
+         * Сумма множителей count уровней подряд начиная с from: в пределах
+         * таблицы - разность префиксных сумм, выше - в замкнутом виде
+         */
+        public double sumMultipliers(int from, int count) {
+            if (count <= 0) {
+                return 0;
+            }
+
+            LevelTable levels = getTable();
+            int inTable = from >= 0 ? Math.max(0, Math.min(count, levels.values().length - from)) : 0;
+
+            double sum = 0;
+            if (inTable > 0) {
+                sum = levels.prefix()[from + inTable] - levels.prefix()[from];
+            }
+            if (inTable < count) {
+                sum += sumDirect(from + inTable, count - inTable);
+            }
+            return sum;
+        }
+
+        private LevelTable getTable() {
+            LevelTable levels = table;
+            return levels != null ? levels : buildTable();
+        }
+
+        /**
+         * Сбросить таблицу после изменения настроек
+         */
+        private synchronized void invalidateTable() {
+            table = null;
+        }
+
+        /**
+         * Построить таблицу множителей. Под тем же монитором, что и сброс,
+         * поэтому таблица по старым настройкам не переживет их изменение
+         */
+        private synchronized LevelTable buildTable() {
+            LevelTable levels = table;
+            if (levels != null) {
+                return levels;
+            }
+
+            // Формула со случайными числами должна считаться при каждой покупке
+            boolean tabulate = type != MultiplierType.CUSTOM
+                    || compiledFormula == null || !compiledFormula.usesRandom();
+            double[] values = new double[tabulate ? tableLevels : 0];
+            double[] prefix = new double[values.length + 1];
+            for (int level = 0; level < values.length; level++) {
+                values[level] = computeMultiplier(level);
+                prefix[level + 1] = prefix[level] + values[level];
+            }
+
+            levels = new LevelTable(values, prefix);
+            table = levels;
+            return levels;
+        }
+
+        /**
+         * Сумма множителей без таблицы. Для LINEAR и EXPONENTIAL уровни делятся
+         * на три отрезка: до одного лимита, без ограничения и после другого лимита
+         */
+        private double sumDirect(int from, int count) {
+            if (!enabled) {
+                return count;
+            }
+
+            double fixed = Math.max(minMultiplier, Math.min(maxMultiplier, baseValue));
+            if (minMultiplier >= maxMultiplier) {
+                return count * minMultiplier;
+            }
+
+            switch (type) {
+                case FIXED:
+                    return count * fixed;
+
+                case LINEAR:
+                    if (step == 0) {
+                        return count * fixed;
+                    }
+                    // Уровень, на котором baseValue + step * level достигает лимита
+                    return sumClamped(from, count,
+                            (minMultiplier - baseValue) / step, (maxMultiplier - baseValue) / step, step > 0);
+
+                case EXPONENTIAL:
+                    if (baseValue <= 0 || baseValue == 1) {
+                        break;
+                    }
+                    double logBase = Math.log(baseValue);
+                    return sumClamped(from, count,
+                            Math.log(Math.max(minMultiplier, Double.MIN_VALUE)) / logBase,
+                            Math.log(maxMultiplier) / logBase, logBase > 0);
+
+                default:
+                    break;
+            }
+
+            double sum = 0;
+            for (int i = 0; i < count; i++) {
+                sum += computeMultiplier(from + i);
+            }
+            return sum;
+        }
+
+        /**
+         * Сумма монотонной последовательности с лимитами
+         *
+         * @param levelAtMin уровень (дробный), на котором множитель равен минимуму
+         * @param levelAtMax уровень (дробный), на котором множитель равен максимуму
+         */
+        private double sumClamped(int from, int count, double levelAtMin, double levelAtMax, boolean increasing) {
+            long end = (long) from + count;
+
+            // [first, last) - уровни, где множитель не упирается в лимиты
+            double low = increasing ? levelAtMin : levelAtMax;
+            double high = increasing ? levelAtMax : levelAtMin;
+            long first = clampLevel(Math.ceil(low), from, end);
+            long last = Math.max(first, clampLevel(Math.floor(high) + 1, from, end));
+
+            double before = increasing ? minMultiplier : maxMultiplier;
+            double after = increasing ? maxMultiplier : minMultiplier;
+            return (first - from) * before + sumUnclamped(first, last - first) + (end - last) * after;
+        }
+
+        private double sumUnclamped(long from, long count) {
+            if (count <= 0) {
+                return 0;
+            }
+            if (type == MultiplierType.LINEAR) {
+                // Арифметическая прогрессия
+                return count * baseValue + step * (from + from + count - 1) * count / 2.0;
+            }
+            return MathUtils.sumProgressiveSequence((int) count, Math.pow(baseValue, from), baseValue);
+        }
+
+        private static long clampLevel(double level, long min, long max) {
+            if (Double.isNaN(level)) {
+                return min;
+            }
+            return (long) Math.max(min, Math.min(max, level));
+        }
+
+        private double computeMultiplier(int level) {
             if (!enabled) return 1.0;
 
             double multiplier;
@@ -99,21 +295,20 @@ public class MultiplierManager {
         }
 
         private double evaluateCustomFormula(int level) {
-            if (customFormula == null || customFormula.isEmpty()) {
+            if (compiledFormula == null) {
                 return 1.0;
             }
+            return compiledFormula.evaluate(level, baseValue, step, minMultiplier, maxMultiplier);
+        }
 
+        private static CompiledFormula compileOrNull(String formula) {
+            if (formula == null || formula.trim().isEmpty()) {
+                return null;
+            }
             try {
-                String expression = customFormula
-                        .replace("{level}", String.valueOf(level))
-                        .replace("{base}", String.valueOf(baseValue))
-                        .replace("{step}", String.valueOf(step))
-                        .replace("{min}", String.valueOf(minMultiplier))
-                        .replace("{max}", String.valueOf(maxMultiplier));
-
-                return org.dan.dynamicborder.utils.MathUtils.evaluateExpression(expression);
-            } catch (Exception e) {
-                return 1.0;
+                return CompiledFormula.cached(formula);
+            } catch (IllegalArgumentException e) {
+                return null;
             }
         }
 
@@ -148,16 +343,26 @@ public class MultiplierManager {
             }
             return multipliers;
         }
+
+        /**
+         * Множители уровней и их префиксные суммы: prefix[i] - сумма уровней 0..i-1
+         */
+        private record LevelTable(double[] values, double[] prefix) {
+        }
     }
 
     public MultiplierManager(DynamicBorderPlugin plugin) {
         this.plugin = plugin;
+        this.storage = plugin.getStorage();
 
         // Регистрация сериализации
         ConfigurationSerialization.registerClass(PlayerMultiplierData.class);
 
         loadConfigs();
-        loadPlayerData();
+        migrateLegacyPlayerData();
+
+        saveQueue = new WriteBehindQueue<>(plugin, "multipliers", this::flushPlayers);
+        saveQueue.start(plugin.getConfigManager().getSettings().general().writeBehindFlushInterval());
     }
 
     /**
@@ -187,15 +392,48 @@ public class MultiplierManager {
         return basePrice * config.calculateMultiplier(data.getLevel());
     }
 
+    /**
+     * Суммарная цена count покупок подряд: каждая следующая идет по множителю
+     * следующего уровня
+     */
+    public double getBulkPrice(Player player, String worldName, String priceType, double basePrice, int count) {
+        if (count <= 0) return 0;
+        if (player == null) return basePrice * count;
+
+        MultiplierConfig config = configs.get(priceType);
+        if (config == null || !config.isEnabled()) {
+            return basePrice * count;
+        }
+
+        int level = 0;
+        PlayerMultiplierData data = getPlayerMultiplierData(player.getUniqueId(), worldName, priceType);
+        if (data != null) {
+            if (config.shouldReset(data.getLastResetTime())) {
+                resetPlayerProgress(player, worldName, priceType);
+            } else {
+                level = data.getLevel();
+            }
+        }
+
+        return basePrice * config.sumMultipliers(level, count);
+    }
+
     /**
      * Обновить прогресс после покупки
      */
     public void updateAfterPurchase(Player player, String worldName, String priceType, double paidPrice) {
+        updateAfterPurchase(player, worldName, priceType, paidPrice, 1);
+    }
+
+    /**
+     * Учесть покупку сразу нескольких уровней: уровень растет на levels,
+     * последней ценой считается средняя цена уровня
+     */
+    public void updateAfterPurchase(Player player, String worldName, String priceType, double paidPrice, int levels) {
         UUID uuid = player.getUniqueId();
         String key = createKey(worldName, priceType);
 
-        Map<String, PlayerMultiplierData> playerMultipliers = playerData
-                .computeIfAbsent(uuid, k -> new HashMap<>());
+        Map<String, PlayerMultiplierData> playerMultipliers = getOrLoadPlayer(uuid);
 
         PlayerMultiplierData data = playerMultipliers.get(key);
         if (data == null) {
@@ -206,36 +444,62 @@ public class MultiplierManager {
             data.setLastResetTime(System.currentTimeMillis());
         }
 
-        data.setLevel(data.getLevel() + 1);
-        data.setLastPrice(paidPrice);
+        data.setLevel(data.getLevel() + levels);
+        data.setLastPrice(paidPrice / levels);
         data.setTotalSpent(data.getTotalSpent() + paidPrice);
         data.setLastPurchaseTime(System.currentTimeMillis());
 
         playerMultipliers.put(key, data);
         playerCacheTime.put(uuid, System.currentTimeMillis());
 
-        // Автосохранение через 5 секунд
-        Bukkit.getScheduler().runTaskLater(plugin, () -> savePlayerData(uuid), 100L);
+        // Запись будет выполнена в ближайшем окне сброса
+        markDirty(uuid, playerMultipliers);
+
+        LeaderboardManager leaderboards = plugin.getLeaderboardManager();
+        if (leaderboards != null) {
+            double worldSpent = 0;
+            for (PlayerMultiplierData entry : playerMultipliers.values()) {
+                if (worldName.equals(entry.getWorldName())) {
+                    worldSpent += entry.getTotalSpent();
+                }
+            }
+            leaderboards.onSpent(uuid, worldName, worldSpent);
+        }
     }
 
     /**
      * Получить данные множителя игрока
      */
     private PlayerMultiplierData getPlayerMultiplierData(UUID uuid, String worldName, String priceType) {
-        // Проверка кэша
-        Long cacheTime = playerCacheTime.get(uuid);
-        if (cacheTime != null && System.currentTimeMillis() - cacheTime > CACHE_TIMEOUT) {
-            // Кэш устарел, загружаем заново
-            loadPlayerData(uuid);
+        String key = createKey(worldName, priceType);
+        return getOrLoadPlayer(uuid).get(key);
+    }
+
+    /**
+     * Загрузить данные игрока в кэш заранее (при входе, вне основного потока)
+     */
+    public void preload(UUID uuid) {
+        getOrLoadPlayer(uuid);
+    }
+
+    /**
+     * Данные игрока из кэша. Онлайн-игроки загружаются при входе; при
+     * промахе данные игрока читаются вне блокировки карты
+     */
+    private Map<String, PlayerMultiplierData> getOrLoadPlayer(UUID uuid) {
+        playerCacheTime.put(uuid, System.currentTimeMillis());
+        Map<String, PlayerMultiplierData> cached = playerData.get(uuid);
+        if (cached != null) {
+            return cached;
         }
 
-        Map<String, PlayerMultiplierData> playerMultipliers = playerData.get(uuid);
-        if (playerMultipliers == null) {
-            return null;
+        if (plugin.isDebugMode() && Bukkit.isPrimaryThread()) {
+            plugin.logWarning("Множители игрока " + uuid + " загружаются в основном потоке");
         }
 
-        String key = createKey(worldName, priceType);
-        return playerMultipliers.get(key);
+        Map<String, PlayerMultiplierData> loaded = loadPlayerData(uuid);
+        Map<String, PlayerMultiplierData> existing = playerData.putIfAbsent(uuid, loaded);
+        return existing != null ? existing : loaded;
     }
 
     /**
@@ -245,9 +509,7 @@ public class MultiplierManager {
         UUID uuid = player.getUniqueId();
         String key = createKey(worldName, priceType);
 
-        Map<String, PlayerMultiplierData> playerMultipliers = playerData.get(uuid);
-        if (playerMultipliers == null) return false;
-
+        Map<String, PlayerMultiplierData> playerMultipliers = getOrLoadPlayer(uuid);
         PlayerMultiplierData data = playerMultipliers.get(key);
         if (data == null) return false;
 
@@ -255,7 +517,7 @@ public class MultiplierManager {
         data.setLastResetTime(System.currentTimeMillis());
         playerCacheTime.put(uuid, System.currentTimeMillis());
 
-        savePlayerData(uuid);
+        markDirty(uuid, playerMultipliers);
         return true;
     }
 
@@ -264,8 +526,7 @@ public class MultiplierManager {
      */
     public boolean resetAllPlayerProgress(Player player, String worldName) {
         UUID uuid = player.getUniqueId();
-        Map<String, PlayerMultiplierData> playerMultipliers = playerData.get(uuid);
-        if (playerMultipliers == null) return false;
+        Map<String, PlayerMultiplierData> playerMultipliers = getOrLoadPlayer(uuid);
 
         boolean reset = false;
         String prefix = worldName + ":";
@@ -280,7 +541,7 @@ public class MultiplierManager {
 
         if (reset) {
             playerCacheTime.put(uuid, System.currentTimeMillis());
-            savePlayerData(uuid);
+            markDirty(uuid, playerMultipliers);
         }
 
         return reset;
@@ -353,6 +614,13 @@ public class MultiplierManager {
         MultiplierConfig config = configs.get(priceType);
         if (config == null) return false;
 
+        try {
+            CompiledFormula.compile(formula);
+        } catch (IllegalArgumentException e) {
+            plugin.logWarning(e.getMessage() + ": " + formula);
+            return false;
+        }
+
         config.setCustomFormula(formula);
         saveConfigs();
         return true;
@@ -445,8 +713,7 @@ public class MultiplierManager {
      */
     public PlayerMultiplierStats getPlayerStats(Player player, String worldName) {
         UUID uuid = player.getUniqueId();
-        Map<String, PlayerMultiplierData> playerMultipliers = playerData.get(uuid);
-        if (playerMultipliers == null) return new PlayerMultiplierStats();
+        Map<String, PlayerMultiplierData> playerMultipliers = getOrLoadPlayer(uuid);
 
         PlayerMultiplierStats stats = new PlayerMultiplierStats();
         String prefix = worldName + ":";
@@ -490,9 +757,18 @@ public class MultiplierManager {
                     multiplierConfig.setBaseValue(config.getDouble(path + ".base-value", 1.0));
                     multiplierConfig.setStep(config.getDouble(path + ".step", 0.0));
                     multiplierConfig.setCustomFormula(config.getString(path + ".custom-formula", ""));
+                    if (multiplierConfig.getType() == MultiplierType.CUSTOM && multiplierConfig.compiledFormula == null) {
+                        plugin.logWarning("Формула множителя " + priceType + " не разобрана, множитель будет 1.0");
+                    }
                     multiplierConfig.setMinMultiplier(config.getDouble(path + ".limits.min", MIN_MULTIPLIER));
                     multiplierConfig.setMaxMultiplier(config.getDouble(path + ".limits.max", MAX_MULTIPLIER));
                     multiplierConfig.setResetSchedule(config.getString(path + ".reset-schedule", "never"));
+                    int tableLevels = config.getInt(path + ".table-levels", DEFAULT_TABLE_LEVELS);
+                    if (tableLevels > MAX_TABLE_LEVELS) {
+                        plugin.logWarning("table-levels множителя " + priceType + " (" + tableLevels +
+                                ") уменьшен до " + MAX_TABLE_LEVELS + ", более высокие уровни считаются напрямую");
+                    }
+                    multiplierConfig.setTableLevels(tableLevels);
 
                     configs.put(priceType, multiplierConfig);
                 }
@@ -505,153 +781,202 @@ public class MultiplierManager {
         }
     }
 
-    private void loadPlayerData() {
-        playerDataFile = new File(plugin.getDataFolder(), "data/player_multipliers.yml");
-        if (!playerDataFile.exists()) {
+    /**
+     * Перенос старого общего файла player_multipliers.yml в хранилище
+     */
+    private void migrateLegacyPlayerData() {
+        File legacyFile = new File(plugin.getDataFolder(), "data/player_multipliers.yml");
+        if (!legacyFile.exists()) {
             return;
         }
 
         try {
-            YamlConfiguration config = YamlConfiguration.loadConfiguration(playerDataFile);
+            YamlConfiguration config = YamlConfiguration.loadConfiguration(legacyFile);
+            Map<UUID, Map<String, PlayerMultiplierData>> migrated = new HashMap<>();
 
             if (config.contains("players")) {
                 for (String uuidStr : config.getConfigurationSection("players").getKeys(false)) {
                     try {
                         UUID uuid = UUID.fromString(uuidStr);
-                        Map<String, PlayerMultiplierData> playerMultipliers = new HashMap<>();
-
-                        if (config.contains("players." + uuidStr + ".multipliers")) {
-                            for (String key : config.getConfigurationSection("players." + uuidStr + ".multipliers").getKeys(false)) {
-                                PlayerMultiplierData data = (PlayerMultiplierData) config.get(
-                                        "players." + uuidStr + ".multipliers." + key
-                                );
-                                if (data != null) {
-                                    playerMultipliers.put(key, data);
-                                }
-                            }
-                        }
+                        Map<String, PlayerMultiplierData> playerMultipliers =
+                                readMultipliers(config, "players." + uuidStr + ".multipliers");
 
-                        playerData.put(uuid, playerMultipliers);
+                        if (!playerMultipliers.isEmpty()) {
+                            migrated.put(uuid, playerMultipliers);
+                        }
                     } catch (IllegalArgumentException e) {
                         plugin.logWarning("Неверный UUID в player_multipliers.yml: " + uuidStr);
                     }
                 }
             }
 
-            plugin.logInfo("Загружено данных игроков: " + playerData.size());
+            if (!storage.saveMultipliers(migrated)) {
+                plugin.logError("Не удалось перенести player_multipliers.yml, перенос будет повторен при запуске");
+                return;
+            }
+
+            File migratedFile = new File(legacyFile.getParentFile(), "player_multipliers.yml.migrated");
+            if (!legacyFile.renameTo(migratedFile)) {
+                plugin.logWarning("Не удалось переименовать player_multipliers.yml после переноса");
+            }
+
+            plugin.logInfo("Перенесено данных игроков в хранилище " + storage.getName() + ": " + migrated.size());
 
         } catch (Exception e) {
-            plugin.logError("Ошибка загрузки player_multipliers.yml: " + e.getMessage());
+            plugin.logError("Ошибка переноса player_multipliers.yml: " + e.getMessage());
         }
     }
 
-    private void loadPlayerData(UUID uuid) {
-        if (playerDataFile == null || !playerDataFile.exists()) {
-            return;
-        }
+    /**
+     * Загрузить данные одного игрока из хранилища
+     */
+    private Map<String, PlayerMultiplierData> loadPlayerData(UUID uuid) {
+        Map<String, PlayerMultiplierData> playerMultipliers = new ConcurrentHashMap<>();
 
         try {
-            YamlConfiguration config = YamlConfiguration.loadConfiguration(playerDataFile);
-            String uuidStr = uuid.toString();
-
-            if (config.contains("players." + uuidStr + ".multipliers")) {
-                Map<String, PlayerMultiplierData> playerMultipliers = new HashMap<>();
-
-                for (String key : config.getConfigurationSection("players." + uuidStr + ".multipliers").getKeys(false)) {
-                    PlayerMultiplierData data = (PlayerMultiplierData) config.get(
-                            "players." + uuidStr + ".multipliers." + key
-                    );
-                    if (data != null) {
-                        playerMultipliers.put(key, data);
-                    }
-                }
-
-                playerData.put(uuid, playerMultipliers);
-            }
-
-            playerCacheTime.put(uuid, System.currentTimeMillis());
-
+            playerMultipliers.putAll(storage.loadMultipliers(uuid));
         } catch (Exception e) {
             plugin.logError("Ошибка загрузки данных игрока " + uuid + ": " + e.getMessage());
         }
+
+        return playerMultipliers;
     }
 
-    private void saveConfigs() {
-        try {
-            YamlConfiguration config = new YamlConfiguration();
-
-            for (Map.Entry<String, MultiplierConfig> entry : configs.entrySet()) {
-                String path = "multipliers." + entry.getKey();
-                MultiplierConfig mc = entry.getValue();
-
-                config.set(path + ".enabled", mc.isEnabled());
-                config.set(path + ".type", mc.getType().name());
-                config.set(path + ".base-value", mc.getBaseValue());
-                config.set(path + ".step", mc.getStep());
-                config.set(path + ".custom-formula", mc.getCustomFormula());
-                config.set(path + ".limits.min", mc.getMinMultiplier());
-                config.set(path + ".limits.max", mc.getMaxMultiplier());
-                config.set(path + ".reset-schedule", mc.getResetSchedule());
+    private Map<String, PlayerMultiplierData> readMultipliers(YamlConfiguration config, String path) {
+        Map<String, PlayerMultiplierData> playerMultipliers = new HashMap<>();
+        if (!config.contains(path)) {
+            return playerMultipliers;
+        }
+
+        for (String key : config.getConfigurationSection(path).getKeys(false)) {
+            Object value = config.get(path + "." + key);
+            if (value instanceof PlayerMultiplierData) {
+                playerMultipliers.put(key, (PlayerMultiplierData) value);
             }
+        }
+        return playerMultipliers;
+    }
 
-            config.save(multipliersFile);
+    private void saveConfigs() {
+        writeConfigs(copyConfigs());
+    }
 
-        } catch (IOException e) {
-            plugin.logError("Ошибка сохранения multipliers.yml: " + e.getMessage());
+    private Map<String, MultiplierConfig> copyConfigs() {
+        Map<String, MultiplierConfig> copies = new HashMap<>();
+        for (Map.Entry<String, MultiplierConfig> entry : configs.entrySet()) {
+            copies.put(entry.getKey(), entry.getValue().copy());
         }
+        return copies;
     }
 
-    public void savePlayerData(UUID uuid) {
-        if (playerDataFile == null) {
-            playerDataFile = new File(plugin.getDataFolder(), "data/player_multipliers.yml");
+    private void writeConfigs(Map<String, MultiplierConfig> snapshot) {
+        YamlConfiguration config = new YamlConfiguration();
+
+        for (Map.Entry<String, MultiplierConfig> entry : snapshot.entrySet()) {
+            String path = "multipliers." + entry.getKey();
+            MultiplierConfig mc = entry.getValue();
+
+            config.set(path + ".enabled", mc.isEnabled());
+            config.set(path + ".type", mc.getType().name());
+            config.set(path + ".base-value", mc.getBaseValue());
+            config.set(path + ".step", mc.getStep());
+            config.set(path + ".custom-formula", mc.getCustomFormula());
+            config.set(path + ".limits.min", mc.getMinMultiplier());
+            config.set(path + ".limits.max", mc.getMaxMultiplier());
+            config.set(path + ".reset-schedule", mc.getResetSchedule());
+            config.set(path + ".table-levels", mc.getTableLevels());
         }
 
-        try {
-            YamlConfiguration config = playerDataFile.exists() ?
-                    YamlConfiguration.loadConfiguration(playerDataFile) : new YamlConfiguration();
+        if (!ConfigUtils.saveYamlAtomic(config, multipliersFile)) {
+            plugin.logError("Ошибка сохранения multipliers.yml");
+        }
+    }
 
-            Map<String, PlayerMultiplierData> playerMultipliers = playerData.get(uuid);
-            if (playerMultipliers != null) {
-                String uuidStr = uuid.toString();
+    /**
+     * Поставить данные игрока в очередь на запись
+     */
+    public void savePlayerData(UUID uuid) {
+        Map<String, PlayerMultiplierData> playerMultipliers = playerData.get(uuid);
+        if (playerMultipliers != null) {
+            markDirty(uuid, playerMultipliers);
+        }
+    }
 
-                for (Map.Entry<String, PlayerMultiplierData> entry : playerMultipliers.entrySet()) {
-                    config.set("players." + uuidStr + ".multipliers." + entry.getKey(), entry.getValue());
-                }
+    /**
+     * Снять копию прогресса игрока (в потоке, который его менял) и
+     * поставить игрока в очередь записи. Копия заменяет предыдущую
+     * незаписанную: в хранилище уходит последнее состояние
+     */
+    private void markDirty(UUID uuid, Map<String, PlayerMultiplierData> playerMultipliers) {
+        Map<String, PlayerMultiplierData> copy = new HashMap<>();
+        for (Map.Entry<String, PlayerMultiplierData> entry : playerMultipliers.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().copy());
+        }
+        pendingSaves.put(uuid, copy);
+        saveQueue.markDirty(uuid);
+    }
 
-                config.set("players." + uuidStr + ".last-save", System.currentTimeMillis());
+    /**
+     * Записать пакет игроков одним сохранением (вызывается из потока записи)
+     */
+    private void flushPlayers(Collection<UUID> uuids) {
+        Map<UUID, Map<String, PlayerMultiplierData>> batch = new HashMap<>();
+        for (UUID uuid : uuids) {
+            Map<String, PlayerMultiplierData> snapshot = pendingSaves.remove(uuid);
+            if (snapshot != null) {
+                batch.put(uuid, snapshot);
             }
+        }
 
-            config.save(playerDataFile);
+        boolean saved = false;
+        try {
+            saved = storage.saveMultipliers(batch);
+        } finally {
+            if (!saved) {
+                // Очередь вернет ключи; более новые копии, снятые за время записи, важнее
+                batch.forEach(pendingSaves::putIfAbsent);
+            }
+        }
 
-        } catch (IOException e) {
-            plugin.logError("Ошибка сохранения данных игрока " + uuid + ": " + e.getMessage());
+        if (!saved) {
+            throw new IllegalStateException("хранилище " + storage.getName() + " не приняло пакет");
         }
     }
 
+    /**
+     * Сохранить настройки и сбросить очередь записи (не дожидаясь окна)
+     */
     public void saveAllData() {
         saveConfigs();
+        saveQueue.flushAsync();
+    }
 
-        try {
-            YamlConfiguration config = new YamlConfiguration();
-
-            for (Map.Entry<UUID, Map<String, PlayerMultiplierData>> playerEntry : playerData.entrySet()) {
-                String uuidStr = playerEntry.getKey().toString();
-
-                for (Map.Entry<String, PlayerMultiplierData> multiplierEntry : playerEntry.getValue().entrySet()) {
-                    config.set("players." + uuidStr + ".multipliers." + multiplierEntry.getKey(),
-                            multiplierEntry.getValue());
-                }
-
-                config.set("players." + uuidStr + ".last-save", System.currentTimeMillis());
-            }
+    /**
+     * Снимок для фонового автосохранения (основной поток): настройки
+     * копируются, прогресс игроков уходит в очередь записи
+     *
+     * @return запись снимка, выполняется в фоне
+     */
+    public Runnable snapshotForSave() {
+        Map<String, MultiplierConfig> snapshot = copyConfigs();
+        saveQueue.flushAsync();
+        return () -> writeConfigs(snapshot);
+    }
 
-            if (playerDataFile != null) {
-                config.save(playerDataFile);
-            }
+    /**
+     * Выполнить действие, когда очередь записи сброшена; до конца действия
+     * прогресс игроков не пишется (для бэкапа)
+     */
+    public <T> T callWithSavesFlushed(Supplier<T> action) {
+        return saveQueue.callWhenFlushed(action);
+    }
 
-        } catch (IOException e) {
-            plugin.logError("Ошибка сохранения всех данных множителей: " + e.getMessage());
-        }
+    /**
+     * Записать все незаписанные изменения и остановить поток записи
+     */
+    public void shutdown() {
+        saveConfigs();
+        saveQueue.shutdown();
     }
 
     public void cleanupCache() {
@@ -660,14 +985,23 @@ public class MultiplierManager {
 
         while (iterator.hasNext()) {
             Map.Entry<UUID, Long> entry = iterator.next();
-            if (now - entry.getValue() > CACHE_TIMEOUT) {
-                // Сохраняем данные перед очисткой
-                savePlayerData(entry.getKey());
+            UUID uuid = entry.getKey();
+            if (now - entry.getValue() > CACHE_TIMEOUT && !saveQueue.isDirty(uuid)
+                    && Bukkit.getPlayer(uuid) == null) {
+                // Данные уже на диске, игрок не в сети - выгружаем его из памяти
+                playerData.remove(uuid);
                 iterator.remove();
             }
         }
     }
 
+    /**
+     * Статистика очереди записи
+     */
+    public WriteBehindQueue<UUID> getSaveQueue() {
+        return saveQueue;
+    }
+
     // ========== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ==========
 
     private String createKey(String worldName, String priceType) {
@@ -0,0 +1,335 @@
+package org.dan.dynamicborder.managers;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.dan.dynamicborder.DynamicBorderPlugin;
+import org.dan.dynamicborder.data.PluginSettings;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Оплата покупок границы в три фазы: резерв -> применение -> подтверждение
+ * или откат.
+ *
+ * Резерв списывает валюту у игрока. Применение меняет мир в основном потоке
+ * и заново проверяет лимиты: за время оплаты мир могли изменить другие
+ * покупки или администратор. Если применение не удалось, резерв
+ * возвращается игроку, иначе покупка подтверждается.
+ *
+ * Источник средств - внутренняя валюта (CurrencyManager) или провайдер
+ * Vault (economy.provider). Внутренняя валюта потокобезопасна, и вся
+ * покупка проходит сразу в вызывающем потоке. Вызовы Vault при
+ * economy.vault-async выполняются в отдельном потоке, а результат
+ * возвращается в основной поток через планировщик; многие провайдеры
+ * Vault не потокобезопасны, поэтому по умолчанию они вызываются в
+ * основном потоке.
+ *
+ * У игрока одновременно идет не больше одной покупки. Цену при
+ * применении заново считает вызывающий: если она отличается от цены
+ * резерва, применение неуспешно и резерв возвращается.
+ */
+public class PurchasePipeline {
+
+    private final DynamicBorderPlugin plugin;
+    private final ExecutorService economyExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "DynamicBorder-Economy");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Незавершенные покупки по игрокам
+    private final Map<UUID, Reservation> inFlight = new ConcurrentHashMap<>();
+    private volatile boolean closed = false;
+    private volatile boolean vaultMissingLogged = false;
+
+    // Статистика
+    private final AtomicLong committed = new AtomicLong();
+    private final AtomicLong rolledBack = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong refundFailures = new AtomicLong();
+
+    PurchasePipeline(DynamicBorderPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Провести покупку
+     *
+     * @param amount   цена, рассчитанная при проверке покупки
+     * @param apply    применение к миру (основной поток); неуспешный
+     *                 результат откатывает резерв
+     * @param failure  результат с сообщением об ошибке
+     * @param callback получает результат в основном потоке (или сразу в
+     *                 вызывающем, если оплата синхронная)
+     */
+    public <R extends BorderManager.PurchaseResult> void run(Player player, double amount, Supplier<R> apply,
+                                                             Function<String, R> failure, Consumer<R> callback) {
+        if (closed) {
+            callback.accept(failure.apply("Плагин выключается, покупка отменена"));
+            return;
+        }
+
+        Funds funds = selectFunds();
+        Reservation reservation = new Reservation(player, amount, funds);
+        if (inFlight.putIfAbsent(player.getUniqueId(), reservation) != null) {
+            callback.accept(failure.apply("Предыдущая покупка еще обрабатывается"));
+            return;
+        }
+
+        if (!funds.isAsync()) {
+            boolean reserved = reserve(reservation);
+            finish(reservation, reserved, apply, failure, callback);
+            return;
+        }
+
+        try {
+            economyExecutor.execute(() -> {
+                boolean reserved = reserve(reservation);
+                if (closed) {
+                    // Задача в основном потоке уже не выполнится
+                    settleOnShutdown(reservation);
+                    return;
+                }
+                Bukkit.getScheduler().runTask(plugin,
+                        () -> finish(reservation, reserved, apply, failure, callback));
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(player.getUniqueId(), reservation);
+            callback.accept(failure.apply("Плагин выключается, покупка отменена"));
+        }
+    }
+
+    // ========== ФАЗЫ ==========
+
+    private boolean reserve(Reservation reservation) {
+        try {
+            reservation.reserved = reservation.funds.reserve(reservation.player, reservation.amount);
+        } catch (RuntimeException e) {
+            plugin.logWarning("Ошибка резерва через " + reservation.funds.describe() + ": " + e.getMessage());
+        }
+        return reservation.reserved;
+    }
+
+    private <R extends BorderManager.PurchaseResult> void finish(Reservation reservation, boolean reserved,
+                                                                 Supplier<R> apply, Function<String, R> failure,
+                                                                 Consumer<R> callback) {
+        inFlight.remove(reservation.player.getUniqueId(), reservation);
+
+        if (!reserved) {
+            reservation.settled.set(true);
+            rejected.incrementAndGet();
+            callback.accept(failure.apply(String.format(
+                    "Недостаточно валюты! Нужно: %.2f", reservation.amount
+            )));
+            return;
+        }
+
+        if (!reservation.settled.compareAndSet(false, true)) {
+            // Резерв уже возвращен при выключении
+            callback.accept(failure.apply("Плагин выключается, покупка отменена"));
+            return;
+        }
+
+        R result;
+        try {
+            result = apply.get();
+        } catch (RuntimeException e) {
+            plugin.logError("Ошибка применения покупки игрока " + reservation.player.getName() + ": " + e.getMessage());
+            result = failure.apply("Ошибка применения покупки, валюта возвращена");
+        }
+
+        if (result.isSuccess()) {
+            committed.incrementAndGet();
+        } else {
+            rollback(reservation);
+        }
+        callback.accept(result);
+    }
+
+    private void rollback(Reservation reservation) {
+        rolledBack.incrementAndGet();
+        if (!reservation.funds.isAsync() || closed) {
+            refund(reservation);
+            return;
+        }
+
+        try {
+            economyExecutor.execute(() -> refund(reservation));
+        } catch (RejectedExecutionException e) {
+            refund(reservation);
+        }
+    }
+
+    private void refund(Reservation reservation) {
+        boolean refunded;
+        try {
+            refunded = reservation.funds.refund(reservation.player, reservation.amount);
+        } catch (RuntimeException e) {
+            refunded = false;
+        }
+
+        if (!refunded) {
+            refundFailures.incrementAndGet();
+            plugin.logWarning(String.format("Не удалось вернуть %.2f игроку %s (%s)",
+                    reservation.amount, reservation.player.getName(), reservation.funds.describe()));
+        }
+    }
+
+    private void settleOnShutdown(Reservation reservation) {
+        inFlight.remove(reservation.player.getUniqueId(), reservation);
+        if (reservation.reserved && reservation.settled.compareAndSet(false, true)) {
+            rolledBack.incrementAndGet();
+            refund(reservation);
+        }
+    }
+
+    // ========== ИСТОЧНИКИ СРЕДСТВ ==========
+
+    private Funds selectFunds() {
+        PluginSettings.Economy settings = plugin.getConfigManager().getSettings().economy();
+        if (!settings.useVault()) {
+            return internalFunds;
+        }
+
+        EconomyManager economy = plugin.getEconomyManager();
+        EconomyBridge vault = economy != null ? economy.getVaultBridge() : null;
+        if (vault == null) {
+            if (!vaultMissingLogged) {
+                vaultMissingLogged = true;
+                plugin.logWarning("economy.provider: vault, но Vault не подключен - покупки идут во внутренней валюте");
+            }
+            return internalFunds;
+        }
+        return new VaultFunds(vault, settings.vaultAsync());
+    }
+
+    private interface Funds {
+        /** Списать сумму; false - недостаточно средств */
+        boolean reserve(Player player, double amount);
+
+        /** Вернуть списанную сумму */
+        boolean refund(Player player, double amount);
+
+        boolean isAsync();
+
+        String describe();
+    }
+
+    private final Funds internalFunds = new Funds() {
+        @Override
+        public boolean reserve(Player player, double amount) {
+            // Бесплатная покупка ничего не списывает
+            return amount <= 0 || plugin.getCurrencyManager().withdrawBalance(player, amount);
+        }
+
+        @Override
+        public boolean refund(Player player, double amount) {
+            return amount <= 0 || plugin.getCurrencyManager().addBalance(player, amount);
+        }
+
+        @Override
+        public boolean isAsync() {
+            return false;
+        }
+
+        @Override
+        public String describe() {
+            return "внутренняя валюта";
+        }
+    };
+
+    private record VaultFunds(EconomyBridge vault, boolean async) implements Funds {
+        @Override
+        public boolean reserve(Player player, double amount) {
+            if (amount <= 0) {
+                return true;
+            }
+            return vault.has(player, amount) && vault.withdraw(player, amount);
+        }
+
+        @Override
+        public boolean refund(Player player, double amount) {
+            return amount <= 0 || vault.deposit(player, amount);
+        }
+
+        @Override
+        public boolean isAsync() {
+            return async;
+        }
+
+        @Override
+        public String describe() {
+            return "Vault " + vault.describe();
+        }
+    }
+
+    private static final class Reservation {
+        private final Player player;
+        private final double amount;
+        private final Funds funds;
+        private volatile boolean reserved = false;
+        // Резерв подтвержден или возвращен
+        private final AtomicBoolean settled = new AtomicBoolean(false);
+
+        private Reservation(Player player, double amount, Funds funds) {
+            this.player = player;
+            this.amount = amount;
+            this.funds = funds;
+        }
+    }
+
+    // ========== ВЫКЛЮЧЕНИЕ ==========
+
+    /**
+     * Дождаться потока экономики и вернуть резервы, которые уже не будут
+     * применены (их задачи в основном потоке отменены)
+     */
+    public void shutdown() {
+        closed = true;
+        economyExecutor.shutdown();
+        try {
+            if (!economyExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                plugin.logWarning("Поток экономики не успел завершиться");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (Reservation reservation : inFlight.values()) {
+            settleOnShutdown(reservation);
+        }
+    }
+
+    // ========== СТАТИСТИКА ==========
+
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    public long getCommitted() {
+        return committed.get();
+    }
+
+    public long getRolledBack() {
+        return rolledBack.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getRefundFailures() {
+        return refundFailures.get();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,125 @@
+package org.dan.dynamicborder.managers;
+
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Запасная привязка к Vault через MethodHandle, если прямые вызовы VaultAPI
+ * не связываются (другая версия API). Методы ищутся один раз при создании
+ * и привязываются к провайдеру; вызов идет без поиска методов и без упаковки
+ * аргументов и результатов
+ */
+final class ReflectiveEconomyBridge implements EconomyBridge {
+
+    private final MethodHandle getBalance; // (Player) double
+    private final MethodHandle has;        // (Player, double) boolean
+    private final MethodHandle withdraw;   // (Player, double) boolean
+    private final MethodHandle deposit;    // (Player, double) boolean
+    private final MethodHandle currencyName; // () String
+
+    /**
+     * @throws ReflectiveOperationException если у провайдера нет нужных методов
+     */
+    ReflectiveEconomyBridge(Object provider, Class<?> economyClass) throws ReflectiveOperationException {
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+        MethodType amountCall = MethodType.methodType(boolean.class, Player.class, double.class);
+
+        this.getBalance = lookup.findVirtual(economyClass, "getBalance",
+                        MethodType.methodType(double.class, OfflinePlayer.class))
+                .bindTo(provider)
+                .asType(MethodType.methodType(double.class, Player.class));
+
+        this.has = lookup.findVirtual(economyClass, "has",
+                        MethodType.methodType(boolean.class, OfflinePlayer.class, double.class))
+                .bindTo(provider)
+                .asType(amountCall);
+
+        // withdrawPlayer/depositPlayer возвращают EconomyResponse: сразу берем transactionSuccess()
+        MethodHandle withdrawPlayer = lookup.findVirtual(economyClass, "withdrawPlayer",
+                MethodType.methodType(responseClass(economyClass), OfflinePlayer.class, double.class));
+        MethodHandle depositPlayer = lookup.findVirtual(economyClass, "depositPlayer",
+                MethodType.methodType(responseClass(economyClass), OfflinePlayer.class, double.class));
+        MethodHandle success = lookup.findVirtual(responseClass(economyClass), "transactionSuccess",
+                MethodType.methodType(boolean.class));
+
+        this.withdraw = MethodHandles.filterReturnValue(withdrawPlayer, success)
+                .bindTo(provider)
+                .asType(amountCall);
+        this.deposit = MethodHandles.filterReturnValue(depositPlayer, success)
+                .bindTo(provider)
+                .asType(amountCall);
+
+        this.currencyName = lookup.findVirtual(economyClass, "currencyNamePlural",
+                        MethodType.methodType(String.class))
+                .bindTo(provider);
+    }
+
+    private static Class<?> responseClass(Class<?> economyClass) throws ClassNotFoundException {
+        return Class.forName("net.milkbowl.vault.economy.EconomyResponse", false, economyClass.getClassLoader());
+    }
+
+    @Override
+    public double getBalance(Player player) {
+        try {
+            return (double) getBalance.invokeExact(player);
+        } catch (Throwable e) {
+            throw failure(e);
+        }
+    }
+
+    @Override
+    public boolean has(Player player, double amount) {
+        try {
+            return (boolean) has.invokeExact(player, amount);
+        } catch (Throwable e) {
+            throw failure(e);
+        }
+    }
+
+    @Override
+    public boolean withdraw(Player player, double amount) {
+        try {
+            return (boolean) withdraw.invokeExact(player, amount);
+        } catch (Throwable e) {
+            throw failure(e);
+        }
+    }
+
+    @Override
+    public boolean deposit(Player player, double amount) {
+        try {
+            return (boolean) deposit.invokeExact(player, amount);
+        } catch (Throwable e) {
+            throw failure(e);
+        }
+    }
+
+    @Override
+    public String getCurrencyName() {
+        try {
+            return (String) currencyName.invokeExact();
+        } catch (Throwable e) {
+            throw failure(e);
+        }
+    }
+
+    @Override
+    public String describe() {
+        return "MethodHandle";
+    }
+
+    private static RuntimeException failure(Throwable e) {
+        if (e instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        if (e instanceof Error error) {
+            throw error;
+        }
+        return new IllegalStateException(e);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,154 @@
+package org.dan.dynamicborder.managers;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.WorldBorder;
+import org.bukkit.scheduler.BukkitTask;
+import org.dan.dynamicborder.DynamicBorderPlugin;
+import org.dan.dynamicborder.data.WorldBorderData;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Накопитель покупок за тик.
+ *
+ * Покупка сразу меняет данные мира (следующая покупка в том же тике видит
+ * новый размер и лимиты), но не трогает WorldBorder и файл мира. Мир
+ * отмечается в накопителе, а в начале следующего тика для каждого мира
+ * выполняется одна анимация границы к итоговому размеру и одна запись.
+ * Так десятки /border expand за тик не перезапускают анимацию у клиентов
+ * и не переписывают файл мира десятки раз. Покупки можно отмечать из
+ * любого потока, сброс выполняется в основном.
+ */
+public class ResizeCoalescer {
+
+    private final DynamicBorderPlugin plugin;
+    private final BorderManager borderManager;
+    private Map<String, Pending> pending = new LinkedHashMap<>();
+    private BukkitTask flushTask;
+
+    // Статистика
+    private long totalPurchases = 0;
+    private long totalResizes = 0;
+    private long totalWrites = 0;
+
+    ResizeCoalescer(DynamicBorderPlugin plugin, BorderManager borderManager) {
+        this.plugin = plugin;
+        this.borderManager = borderManager;
+    }
+
+    /**
+     * Учесть изменение размера границы мира на delta блоков
+     */
+    public synchronized void addResize(WorldBorderData data, double delta) {
+        Pending entry = mark(data);
+        entry.delta += delta;
+        entry.resize = true;
+    }
+
+    /**
+     * Учесть покупку, которой нужна только запись мира
+     */
+    public synchronized void addSave(WorldBorderData data) {
+        mark(data);
+    }
+
+    private Pending mark(WorldBorderData data) {
+        totalPurchases++;
+        if (flushTask == null) {
+            flushTask = Bukkit.getScheduler().runTask(plugin, this::flush);
+        }
+        return pending.computeIfAbsent(data.getWorldName(), name -> new Pending(data));
+    }
+
+    /**
+     * Применить и записать все накопленные изменения
+     */
+    public void flush() {
+        Map<String, Pending> batch;
+        synchronized (this) {
+            flushTask = null;
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+
+        for (Pending entry : batch.values()) {
+            WorldBorderData data = entry.data;
+            if (entry.resize && entry.delta != 0) {
+                applySize(data);
+                totalResizes++;
+            }
+
+            borderManager.saveWorldData(data);
+            totalWrites++;
+        }
+    }
+
+    /**
+     * Одна анимация от текущего размера границы к итоговому размеру мира
+     */
+    private void applySize(WorldBorderData data) {
+        World world = Bukkit.getWorld(data.getWorldName());
+        if (world == null) {
+            return;
+        }
+
+        // Размер и скорость читаются согласованно с покупками из других потоков
+        double[] target = borderManager.getWorldLocks().read(data.getWorldName(),
+                () -> new double[]{data.getCurrentSize(), data.getCurrentSpeed()});
+
+        WorldBorder border = world.getWorldBorder();
+        double newSize = target[0];
+        double difference = Math.abs(border.getSize() - newSize);
+        long time = (long) Math.max(1, difference / target[1]);
+
+        if (time <= 1) {
+            border.setSize(newSize);
+        } else {
+            border.setSize(newSize, time);
+        }
+    }
+
+    /**
+     * Отменить отложенный сброс (выключение: данные миров сохраняет общее сохранение)
+     */
+    public synchronized void clear() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        pending.clear();
+    }
+
+    // ========== СТАТИСТИКА ==========
+
+    public synchronized int getPendingWorlds() {
+        return pending.size();
+    }
+
+    public long getTotalPurchases() {
+        return totalPurchases;
+    }
+
+    public long getTotalResizes() {
+        return totalResizes;
+    }
+
+    public long getTotalWrites() {
+        return totalWrites;
+    }
+
+    private static final class Pending {
+        private final WorldBorderData data;
+        private double delta = 0;
+        private boolean resize = false;
+
+        private Pending(WorldBorderData data) {
+            this.data = data;
+        }
+    }
+}
\ No newline at end of file
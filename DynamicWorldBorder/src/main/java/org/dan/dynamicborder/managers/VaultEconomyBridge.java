@@ -0,0 +1,48 @@
+package org.dan.dynamicborder.managers;
+
+import net.milkbowl.vault.economy.Economy;
+import org.bukkit.entity.Player;
+
+/**
+ * Прямые типизированные вызовы VaultAPI. Класс загружается только после
+ * проверки, что Vault есть на сервере, поэтому без Vault плагин не получает
+ * NoClassDefFoundError
+ */
+final class VaultEconomyBridge implements EconomyBridge {
+
+    private final Economy economy;
+
+    VaultEconomyBridge(Object provider) {
+        this.economy = (Economy) provider;
+    }
+
+    @Override
+    public double getBalance(Player player) {
+        return economy.getBalance(player);
+    }
+
+    @Override
+    public boolean has(Player player, double amount) {
+        return economy.has(player, amount);
+    }
+
+    @Override
+    public boolean withdraw(Player player, double amount) {
+        return economy.withdrawPlayer(player, amount).transactionSuccess();
+    }
+
+    @Override
+    public boolean deposit(Player player, double amount) {
+        return economy.depositPlayer(player, amount).transactionSuccess();
+    }
+
+    @Override
+    public String getCurrencyName() {
+        return economy.currencyNamePlural();
+    }
+
+    @Override
+    public String describe() {
+        return "VaultAPI";
+    }
+}
\ No newline at end of file
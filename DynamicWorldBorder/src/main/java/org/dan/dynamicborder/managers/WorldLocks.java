@@ -0,0 +1,120 @@
+package org.dan.dynamicborder.managers;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * Полосатые блокировки данных миров.
+ *
+ * Каждому миру по хешу имени соответствует одна из STRIPES блокировок.
+ * Изменения WorldBorderData (покупки, лимиты, команды администратора)
+ * выполняются под блокировкой записи своего мира, поэтому асинхронные
+ * продажи и экономические колбэки не теряют изменения друг друга.
+ * Чтение отдельных полей идет оптимистично, без блокировки: если за время
+ * чтения мир изменился, чтение повторяется под блокировкой. Копии мира
+ * (snapshot) копируют изменяемые коллекции и снимаются только под
+ * блокировкой чтения.
+ *
+ * Блокировки нереентерабельны: внутри write/read нельзя снова брать
+ * блокировку какого-либо мира.
+ */
+public class WorldLocks {
+
+    private static final int STRIPES = 32; // степень двойки
+
+    private final StampedLock[] locks = new StampedLock[STRIPES];
+
+    // Статистика
+    private final AtomicLong optimisticReads = new AtomicLong();
+    private final AtomicLong lockedReads = new AtomicLong();
+
+    public WorldLocks() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new StampedLock();
+        }
+    }
+
+    private StampedLock forWorld(String worldName) {
+        int hash = worldName.hashCode();
+        return locks[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    /**
+     * Выполнить изменение под блокировкой записи мира
+     */
+    public <T> T write(String worldName, Supplier<T> action) {
+        StampedLock lock = forWorld(worldName);
+        long stamp = lock.writeLock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void write(String worldName, Runnable action) {
+        StampedLock lock = forWorld(worldName);
+        long stamp = lock.writeLock();
+        try {
+            action.run();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Прочитать поля мира. reader может быть вызван дважды и не должен
+     * иметь побочных эффектов; при оптимистичном чтении он может увидеть
+     * несогласованные поля, такой результат отбрасывается. reader читает
+     * только поля-значения: обход HashMap во время записи может не
+     * выбросить исключение, а вернуть мусор - для этого есть readLocked
+     */
+    public <T> T read(String worldName, Supplier<T> reader) {
+        StampedLock lock = forWorld(worldName);
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T result = reader.get();
+                if (lock.validate(stamp)) {
+                    optimisticReads.incrementAndGet();
+                    return result;
+                }
+            } catch (RuntimeException ignored) {
+                // Данные менялись во время чтения - повтор под блокировкой
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            lockedReads.incrementAndGet();
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Прочитать данные мира под блокировкой чтения (копии с коллекциями)
+     */
+    public <T> T readLocked(String worldName, Supplier<T> reader) {
+        StampedLock lock = forWorld(worldName);
+        long stamp = lock.readLock();
+        try {
+            lockedReads.incrementAndGet();
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // ========== СТАТИСТИКА ==========
+
+    public long getOptimisticReads() {
+        return optimisticReads.get();
+    }
+
+    public long getLockedReads() {
+        return lockedReads.get();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,377 @@
+package org.dan.dynamicborder.storage;
+
+import org.dan.dynamicborder.DynamicBorderPlugin;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Журнал изменений балансов (append-only).
+ *
+ * Каждое изменение баланса дописывается в конец файла компактной записью
+ * фиксированного размера (UUID + новый баланс). Фоновый компактор периодически
+ * сворачивает журнал в снапшот и обрезает его. При запуске снапшот загружается
+ * первым, затем поверх него проигрывается журнал.
+ *
+ * Все операции с файлами выполняются в одном потоке, поэтому записи никогда
+ * не перетирают друг друга.
+ *
+ * Если журнал не открылся или запись в него не удалась, записи
+ * отбрасываются, а балансы сохраняются в хранилище снапшотом напрямую:
+ * новые значения уже помечены как измененные у владельца журнала. После
+ * успешного снапшота журнал открывается заново.
+ */
+public class BalanceJournal {
+
+    private static final int MAGIC = 0x44574A31; // "DWJ1"
+    private static final int RECORD_SIZE = 24;  // 2 * long + double
+
+    private final DynamicBorderPlugin plugin;
+    private final File journalFile;
+    private final BooleanSupplier snapshotWriter;
+    private final int compactThreshold;
+
+    private final ConcurrentLinkedQueue<Record> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+    private final AtomicLong recordsSinceCompaction = new AtomicLong(0);
+    private final ScheduledExecutorService executor;
+
+    // Доступ только из потока журнала
+    private FileOutputStream fileOut;
+    private DataOutputStream out;
+    private boolean resetOnOpen = false;
+    private boolean unavailableLogged = false;
+
+    /**
+     * @param snapshotWriter записывает все изменения, сделанные до его вызова;
+     *                       возвращает true при успехе
+     */
+    public BalanceJournal(DynamicBorderPlugin plugin, File journalFile,
+                          BooleanSupplier snapshotWriter, int compactThreshold) {
+        this.plugin = plugin;
+        this.journalFile = journalFile;
+        this.snapshotWriter = snapshotWriter;
+        this.compactThreshold = Math.max(100, compactThreshold);
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "DynamicBorder-BalanceJournal");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Проиграть журнал поверх уже загруженного снапшота и открыть его на запись.
+     * Вызывается один раз при старте.
+     *
+     * @return количество проигранных записей
+     */
+    public int open(Map<UUID, Double> balances, long compactIntervalSeconds) {
+        int replayed = replay(balances);
+        recordsSinceCompaction.set(replayed);
+
+        try {
+            openWriter(resetOnOpen);
+        } catch (IOException e) {
+            plugin.logError("Не удалось открыть журнал балансов: " + e.getMessage());
+        }
+
+        if (compactIntervalSeconds > 0) {
+            executor.scheduleWithFixedDelay(this::compactIfNeeded,
+                    compactIntervalSeconds, compactIntervalSeconds, TimeUnit.SECONDS);
+        }
+
+        return replayed;
+    }
+
+    /**
+     * Добавить запись об изменении баланса.
+     * Должен вызываться внутри атомарного обновления карты балансов, чтобы
+     * порядок записей для одного игрока совпадал с порядком изменений.
+     */
+    public void append(UUID uuid, double balance) {
+        pending.add(new Record(uuid, balance));
+        if (drainScheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Дешевая контрольная точка: сбросить буфер журнала на диск и,
+     * если журнал разросся, свернуть его в снапшот.
+     */
+    public void checkpoint() {
+        executor.execute(() -> {
+            drainNow();
+            sync();
+            compactIfNeeded();
+        });
+    }
+
+    /**
+     * Принудительно переписать снапшот (например, после изменения настроек
+     * или списка заблокированных игроков) и обрезать журнал.
+     */
+    public void requestCompaction() {
+        executor.execute(this::compact);
+    }
+
+    /**
+     * Выполнить действие в потоке журнала, когда все записи уже на диске.
+     * Пока действие идет, журнал не пишется и не сворачивается: новые
+     * изменения ждут в очереди. Вызывающий поток ждет результата
+     */
+    public <T> T callWhenFlushed(Supplier<T> action) {
+        try {
+            return executor.submit(() -> {
+                drainNow();
+                sync();
+                return action.get();
+            }).get();
+        } catch (RejectedExecutionException e) {
+            // Журнал уже остановлен и больше ничего не запишет
+            return action.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("ожидание журнала балансов прервано", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Остановить журнал: дописать все записи, свернуть их в снапшот
+     * и дождаться завершения потока.
+     */
+    public void close() {
+        executor.execute(() -> {
+            compact();
+            closeWriter();
+        });
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                plugin.logWarning("Журнал балансов не успел завершить запись");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getPendingRecords() {
+        return recordsSinceCompaction.get();
+    }
+
+    // ========== ПОТОК ЖУРНАЛА ==========
+
+    private void drain() {
+        drainScheduled.set(false);
+        drainNow();
+
+        if (recordsSinceCompaction.get() >= compactThreshold) {
+            compact();
+        }
+    }
+
+    private void drainNow() {
+        if (out == null) {
+            saveDirect();
+            return;
+        }
+
+        try {
+            Record record;
+            int written = 0;
+            while ((record = pending.poll()) != null) {
+                out.writeLong(record.uuid.getMostSignificantBits());
+                out.writeLong(record.uuid.getLeastSignificantBits());
+                out.writeDouble(record.balance);
+                written++;
+            }
+
+            if (written > 0) {
+                out.flush();
+                recordsSinceCompaction.addAndGet(written);
+            }
+        } catch (IOException e) {
+            // Записи из буфера потеряны для журнала, но их балансы помечены как измененные
+            plugin.logError("Ошибка записи журнала балансов: " + e.getMessage());
+            closeWriter();
+            saveDirect();
+        }
+    }
+
+    /**
+     * Журнал недоступен: отбросить накопленные записи и сохранить балансы
+     * в хранилище снапшотом, затем попробовать открыть журнал заново
+     */
+    private void saveDirect() {
+        if (!unavailableLogged) {
+            unavailableLogged = true;
+            plugin.logWarning("Журнал балансов недоступен, балансы сохраняются в хранилище напрямую");
+        }
+
+        // Записи снимаются до снапшота: более поздние останутся в очереди
+        // вместе со своими пометками до следующего сохранения
+        pending.clear();
+
+        if (!snapshotWriter.getAsBoolean()) {
+            return;
+        }
+
+        // Все изменения уже в хранилище, журнал можно начать с нуля
+        try {
+            openWriter(true);
+            recordsSinceCompaction.set(0);
+            unavailableLogged = false;
+            plugin.logInfo("Журнал балансов снова доступен");
+        } catch (IOException e) {
+            closeWriter();
+        }
+    }
+
+    private void compactIfNeeded() {
+        if (recordsSinceCompaction.get() > 0) {
+            compact();
+        }
+    }
+
+    private void compact() {
+        // Сначала все накопленные записи попадают в текущий журнал
+        drainNow();
+        sync();
+
+        // Записи, появившиеся после этого момента, окажутся в новом журнале.
+        // Повторное проигрывание записи, уже учтенной в снапшоте, безопасно:
+        // каждая запись хранит абсолютное значение баланса.
+        if (!snapshotWriter.getAsBoolean()) {
+            plugin.logWarning("Снапшот балансов не записан, журнал сохранен без изменений");
+            return;
+        }
+
+        try {
+            closeWriter();
+            openWriter(true);
+            recordsSinceCompaction.set(0);
+        } catch (IOException e) {
+            plugin.logError("Ошибка обрезки журнала балансов: " + e.getMessage());
+        }
+    }
+
+    private void sync() {
+        if (out == null) {
+            return;
+        }
+
+        try {
+            out.flush();
+            fileOut.getFD().sync();
+        } catch (IOException e) {
+            plugin.logError("Ошибка сброса журнала балансов: " + e.getMessage());
+        }
+    }
+
+    private void openWriter(boolean truncate) throws IOException {
+        File parent = journalFile.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+
+        boolean writeHeader = truncate || !journalFile.exists() || journalFile.length() < 4;
+        fileOut = new FileOutputStream(journalFile, !writeHeader);
+        out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024));
+
+        if (writeHeader) {
+            out.writeInt(MAGIC);
+            out.flush();
+        }
+    }
+
+    private void closeWriter() {
+        if (out == null) {
+            return;
+        }
+
+        try {
+            out.close();
+        } catch (IOException e) {
+            plugin.logError("Ошибка закрытия журнала балансов: " + e.getMessage());
+        }
+        out = null;
+        fileOut = null;
+    }
+
+    // ========== ПРОИГРЫВАНИЕ ==========
+
+    private int replay(Map<UUID, Double> balances) {
+        if (!journalFile.exists() || journalFile.length() < 4) {
+            return 0;
+        }
+
+        int count = 0;
+        long alignedLength = -1;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(journalFile), 64 * 1024))) {
+
+            if (in.readInt() != MAGIC) {
+                plugin.logWarning("Неизвестный формат журнала балансов, журнал пропущен");
+                resetOnOpen = true;
+                return 0;
+            }
+
+            long available = journalFile.length() - 4;
+            long records = available / RECORD_SIZE;
+
+            for (long i = 0; i < records; i++) {
+                UUID uuid = new UUID(in.readLong(), in.readLong());
+                double balance = in.readDouble();
+                balances.put(uuid, balance);
+                count++;
+            }
+
+            if (available % RECORD_SIZE != 0) {
+                // Хвост от прерванной записи - игнорируем и отрезаем,
+                // чтобы новые записи шли с правильным выравниванием
+                plugin.logWarning("Журнал балансов содержит неполную запись, она пропущена");
+                alignedLength = 4 + records * RECORD_SIZE;
+            }
+
+        } catch (IOException e) {
+            plugin.logError("Ошибка чтения журнала балансов: " + e.getMessage());
+        }
+
+        if (alignedLength >= 0) {
+            try (RandomAccessFile raf = new RandomAccessFile(journalFile, "rw")) {
+                raf.setLength(alignedLength);
+            } catch (IOException e) {
+                plugin.logError("Не удалось обрезать журнал балансов: " + e.getMessage());
+                resetOnOpen = true;
+            }
+        }
+
+        return count;
+    }
+
+    private static final class Record {
+        private final UUID uuid;
+        private final double balance;
+
+        private Record(UUID uuid, double balance) {
+            this.uuid = uuid;
+            this.balance = balance;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,93 @@
+package org.dan.dynamicborder.storage;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.dan.dynamicborder.DynamicBorderPlugin;
+import org.dan.dynamicborder.utils.ConfigUtils;
+
+import java.io.File;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище данных игроков по одному файлу на UUID.
+ *
+ * Файлы раскладываются по подпапкам data/players/xx/UUID.yml, где xx -
+ * первые два hex-символа UUID. Так в одной папке не бывает десятков тысяч
+ * файлов, а загрузка, сохранение и выгрузка игрока стоят столько же, сколько
+ * один маленький файл, независимо от числа игроков на сервере.
+ *
+ * Разные менеджеры пишут свои секции в один файл игрока (множители, баланс),
+ * поэтому чтение-изменение-запись выполняется под блокировкой по UUID.
+ */
+public class PlayerShardStore {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final DynamicBorderPlugin plugin;
+    private final File root;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public PlayerShardStore(DynamicBorderPlugin plugin) {
+        this.plugin = plugin;
+        this.root = new File(plugin.getDataFolder(), "data/players");
+
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Файл игрока
+     */
+    public File getFile(UUID uuid) {
+        String id = uuid.toString();
+        return new File(new File(root, id.substring(0, 2)), id + ".yml");
+    }
+
+    /**
+     * Загрузить файл игрока
+     *
+     * @return null, если у игрока еще нет сохраненных данных
+     */
+    public YamlConfiguration load(UUID uuid) {
+        File file = getFile(uuid);
+
+        synchronized (lockFor(uuid)) {
+            if (!file.exists()) {
+                return null;
+            }
+            return YamlConfiguration.loadConfiguration(file);
+        }
+    }
+
+    /**
+     * Изменить файл игрока: загрузить, применить изменения и атомарно записать
+     *
+     * @return true при успешной записи
+     */
+    public boolean update(UUID uuid, Consumer<YamlConfiguration> updater) {
+        File file = getFile(uuid);
+
+        synchronized (lockFor(uuid)) {
+            YamlConfiguration config = file.exists() ?
+                    YamlConfiguration.loadConfiguration(file) : new YamlConfiguration();
+
+            updater.accept(config);
+            config.set("uuid", uuid.toString());
+
+            if (!ConfigUtils.saveYamlAtomic(config, file)) {
+                plugin.logError("Ошибка сохранения данных игрока " + uuid);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    public File getRoot() {
+        return root;
+    }
+
+    private Object lockFor(UUID uuid) {
+        return locks[(uuid.hashCode() & 0x7FFFFFFF) % LOCK_STRIPES];
+    }
+}
\ No newline at end of file
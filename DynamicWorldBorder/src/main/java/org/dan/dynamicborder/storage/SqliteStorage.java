@@ -0,0 +1,434 @@
+package org.dan.dynamicborder.storage;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.dan.dynamicborder.DynamicBorderPlugin;
+import org.dan.dynamicborder.data.PlayerMultiplierData;
+import org.dan.dynamicborder.data.WorldBorderData;
+
+import java.io.File;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Встроенное SQLite-хранилище (data/dynamicborder.db).
+ *
+ * Драйвер org.sqlite.JDBC поставляется вместе с сервером, отдельная
+ * зависимость не нужна. База в режиме WAL, два соединения: через одно
+ * пишутся пакеты, через другое (только чтение) загружаются игроки и миры.
+ * В WAL чтение не ждет запись, поэтому загрузка игрока не стоит в очереди
+ * за транзакцией журнала или автосохранения. Сохранение пакета выполняется
+ * одной транзакцией через пакетный upsert подготовленными запросами.
+ * Все запросы идут по первичному ключу.
+ */
+public class SqliteStorage implements StorageBackend {
+
+    private static final String UPSERT_BALANCE =
+            "INSERT INTO dwb_balances (uuid, balance, updated_at) VALUES (?, ?, ?) " +
+            "ON CONFLICT(uuid) DO UPDATE SET balance = excluded.balance, updated_at = excluded.updated_at";
+
+    private static final String UPSERT_MULTIPLIER =
+            "INSERT INTO dwb_multipliers (uuid, world, price_type, level, last_price, total_spent, " +
+            "last_purchase, last_reset, purchases_today, purchases_week, purchases_month, " +
+            "spent_today, spent_week, spent_month) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT(uuid, world, price_type) DO UPDATE SET level = excluded.level, " +
+            "last_price = excluded.last_price, total_spent = excluded.total_spent, " +
+            "last_purchase = excluded.last_purchase, last_reset = excluded.last_reset, " +
+            "purchases_today = excluded.purchases_today, purchases_week = excluded.purchases_week, " +
+            "purchases_month = excluded.purchases_month, spent_today = excluded.spent_today, " +
+            "spent_week = excluded.spent_week, spent_month = excluded.spent_month";
+
+    private static final String UPSERT_WORLD =
+            "INSERT INTO dwb_worlds (world, data, updated_at) VALUES (?, ?, ?) " +
+            "ON CONFLICT(world) DO UPDATE SET data = excluded.data, updated_at = excluded.updated_at";
+
+    private static final String DATABASE_PATH = "data/dynamicborder.db";
+
+    private final DynamicBorderPlugin plugin;
+    private final File databaseFile;
+
+    // Соединение записи и его запросы - только под блокировкой this
+    private Connection connection;
+    private PreparedStatement upsertBalance;
+    private PreparedStatement upsertMultiplier;
+    private PreparedStatement upsertWorld;
+
+    // Соединение чтения и его запросы - только под блокировкой readLock.
+    // Закрытие берет обе блокировки: сначала this, затем readLock
+    private final Object readLock = new Object();
+    private Connection readConnection;
+    private PreparedStatement selectBalance;
+    private PreparedStatement selectMultipliers;
+    private PreparedStatement selectWorld;
+
+    public SqliteStorage(DynamicBorderPlugin plugin) {
+        this.plugin = plugin;
+        this.databaseFile = new File(plugin.getDataFolder(), DATABASE_PATH);
+    }
+
+    @Override
+    public String getName() {
+        return "sqlite";
+    }
+
+    @Override
+    public synchronized boolean open() {
+        try {
+            Class.forName("org.sqlite.JDBC");
+
+            File parent = databaseFile.getParentFile();
+            if (!parent.exists()) {
+                parent.mkdirs();
+            }
+
+            connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA synchronous=NORMAL");
+
+                statement.execute("CREATE TABLE IF NOT EXISTS dwb_balances (" +
+                        "uuid TEXT PRIMARY KEY, balance REAL NOT NULL, updated_at INTEGER NOT NULL)");
+
+                statement.execute("CREATE TABLE IF NOT EXISTS dwb_multipliers (" +
+                        "uuid TEXT NOT NULL, world TEXT NOT NULL, price_type TEXT NOT NULL, " +
+                        "level INTEGER NOT NULL, last_price REAL NOT NULL, total_spent REAL NOT NULL, " +
+                        "last_purchase INTEGER NOT NULL, last_reset INTEGER NOT NULL, " +
+                        "purchases_today INTEGER NOT NULL, purchases_week INTEGER NOT NULL, " +
+                        "purchases_month INTEGER NOT NULL, spent_today REAL NOT NULL, " +
+                        "spent_week REAL NOT NULL, spent_month REAL NOT NULL, " +
+                        "PRIMARY KEY (uuid, world, price_type))");
+                // Индекс по миру ни один запрос не использовал, а каждая запись его обновляла
+                statement.execute("DROP INDEX IF EXISTS idx_dwb_multipliers_world");
+
+                statement.execute("CREATE TABLE IF NOT EXISTS dwb_worlds (" +
+                        "world TEXT PRIMARY KEY, data TEXT NOT NULL, updated_at INTEGER NOT NULL)");
+            }
+
+            upsertBalance = connection.prepareStatement(UPSERT_BALANCE);
+            upsertMultiplier = connection.prepareStatement(UPSERT_MULTIPLIER);
+            upsertWorld = connection.prepareStatement(UPSERT_WORLD);
+
+            synchronized (readLock) {
+                readConnection = openReadConnection();
+                selectBalance = readConnection.prepareStatement("SELECT balance FROM dwb_balances WHERE uuid = ?");
+                selectMultipliers = readConnection.prepareStatement("SELECT * FROM dwb_multipliers WHERE uuid = ?");
+                selectWorld = readConnection.prepareStatement("SELECT data FROM dwb_worlds WHERE world = ?");
+            }
+
+            return true;
+
+        } catch (ClassNotFoundException e) {
+            plugin.logError("Драйвер SQLite не найден");
+        } catch (SQLException e) {
+            plugin.logError("Ошибка открытия базы данных: " + e.getMessage());
+        }
+
+        close();
+        return false;
+    }
+
+    @Override
+    public synchronized void close() {
+        synchronized (readLock) {
+            closeQuietly(readConnection);
+            readConnection = null;
+        }
+
+        closeQuietly(connection);
+        connection = null;
+    }
+
+    /**
+     * Соединение только для чтения; таблицы уже созданы соединением записи
+     */
+    private Connection openReadConnection() throws SQLException {
+        Connection read = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+        try (Statement statement = read.createStatement()) {
+            statement.execute("PRAGMA query_only=true");
+        } catch (SQLException e) {
+            closeQuietly(read);
+            throw e;
+        }
+        return read;
+    }
+
+    private void closeQuietly(Connection target) {
+        if (target == null) {
+            return;
+        }
+
+        try {
+            target.close();
+        } catch (SQLException e) {
+            plugin.logError("Ошибка закрытия базы данных: " + e.getMessage());
+        }
+    }
+
+    // ========== БЭКАП ==========
+
+    @Override
+    public String getDatabasePath() {
+        return DATABASE_PATH;
+    }
+
+    /**
+     * VACUUM INTO пишет копию из одной транзакции чтения: в нее попадают
+     * все зафиксированные данные, включая еще не перенесенные из WAL
+     */
+    @Override
+    public synchronized boolean backupDatabase(File target) {
+        if (connection == null) {
+            return false;
+        }
+
+        try (PreparedStatement vacuum = connection.prepareStatement("VACUUM INTO ?")) {
+            vacuum.setString(1, target.getAbsolutePath());
+            vacuum.execute();
+            return true;
+        } catch (SQLException e) {
+            plugin.logError("Ошибка копирования базы для бэкапа: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // ========== МИРЫ ==========
+
+    @Override
+    public Map<String, Object> loadWorld(String worldName) {
+        String serialized;
+        synchronized (readLock) {
+            if (readConnection == null) {
+                return null;
+            }
+
+            try {
+                selectWorld.setString(1, worldName);
+                try (ResultSet result = selectWorld.executeQuery()) {
+                    if (!result.next()) {
+                        return null;
+                    }
+                    serialized = result.getString("data");
+                }
+            } catch (SQLException e) {
+                plugin.logError("Ошибка загрузки мира " + worldName + " из базы: " + e.getMessage());
+                return null;
+            }
+        }
+
+        // Разбор YAML - уже без блокировки соединения
+        try {
+            YamlConfiguration config = new YamlConfiguration();
+            config.loadFromString(serialized);
+            return config.getValues(false);
+        } catch (Exception e) {
+            plugin.logError("Ошибка загрузки мира " + worldName + " из базы: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized boolean saveWorlds(Collection<WorldBorderData> worlds) {
+        if (worlds.isEmpty()) {
+            return true;
+        }
+
+        long now = System.currentTimeMillis();
+        return inTransaction("миров", () -> {
+            upsertWorld.clearBatch();
+            for (WorldBorderData data : worlds) {
+                YamlConfiguration config = new YamlConfiguration();
+                for (Map.Entry<String, Object> entry : data.serialize().entrySet()) {
+                    config.set(entry.getKey(), entry.getValue());
+                }
+
+                upsertWorld.setString(1, data.getWorldName());
+                upsertWorld.setString(2, config.saveToString());
+                upsertWorld.setLong(3, now);
+                upsertWorld.addBatch();
+            }
+            upsertWorld.executeBatch();
+        });
+    }
+
+    // ========== ИГРОКИ ==========
+
+    @Override
+    public Double loadBalance(UUID uuid) {
+        synchronized (readLock) {
+            if (readConnection == null) {
+                return null;
+            }
+
+            try {
+                selectBalance.setString(1, uuid.toString());
+                try (ResultSet result = selectBalance.executeQuery()) {
+                    return result.next() ? result.getDouble("balance") : null;
+                }
+            } catch (SQLException e) {
+                plugin.logError("Ошибка загрузки баланса " + uuid + " из базы: " + e.getMessage());
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public synchronized boolean saveBalances(Map<UUID, Double> balances) {
+        if (balances.isEmpty()) {
+            return true;
+        }
+
+        long now = System.currentTimeMillis();
+        return inTransaction("балансов", () -> {
+            upsertBalance.clearBatch();
+            for (Map.Entry<UUID, Double> entry : balances.entrySet()) {
+                upsertBalance.setString(1, entry.getKey().toString());
+                upsertBalance.setDouble(2, entry.getValue());
+                upsertBalance.setLong(3, now);
+                upsertBalance.addBatch();
+            }
+            upsertBalance.executeBatch();
+        });
+    }
+
+    @Override
+    public Map<String, PlayerMultiplierData> loadMultipliers(UUID uuid) {
+        Map<String, PlayerMultiplierData> playerMultipliers = new HashMap<>();
+
+        synchronized (readLock) {
+            if (readConnection == null) {
+                return playerMultipliers;
+            }
+
+            try {
+                selectMultipliers.setString(1, uuid.toString());
+                try (ResultSet result = selectMultipliers.executeQuery()) {
+                    while (result.next()) {
+                        PlayerMultiplierData data = new PlayerMultiplierData();
+                        data.setWorldName(result.getString("world"));
+                        data.setPriceType(result.getString("price_type"));
+                        data.setLevel(result.getInt("level"));
+                        data.setLastPrice(result.getDouble("last_price"));
+                        data.setTotalSpent(result.getDouble("total_spent"));
+                        data.setLastPurchaseTime(result.getLong("last_purchase"));
+                        data.setLastResetTime(result.getLong("last_reset"));
+                        data.setPurchasesToday(result.getInt("purchases_today"));
+                        data.setPurchasesThisWeek(result.getInt("purchases_week"));
+                        data.setPurchasesThisMonth(result.getInt("purchases_month"));
+                        data.setSpentToday(result.getDouble("spent_today"));
+                        data.setSpentThisWeek(result.getDouble("spent_week"));
+                        data.setSpentThisMonth(result.getDouble("spent_month"));
+
+                        playerMultipliers.put(data.getKey(), data);
+                    }
+                }
+            } catch (SQLException e) {
+                plugin.logError("Ошибка загрузки множителей " + uuid + " из базы: " + e.getMessage());
+            }
+
+            return playerMultipliers;
+        }
+    }
+
+    /**
+     * Обход идет через собственное соединение чтения и не держит блокировок:
+     * загрузки игроков и сохранения пакетов идут параллельно с ним
+     */
+    @Override
+    public void scanPlayers(PlayerScan scan) {
+        try (Connection scanConnection = openReadConnection();
+             Statement statement = scanConnection.createStatement()) {
+            try (ResultSet result = statement.executeQuery("SELECT uuid, balance FROM dwb_balances")) {
+                while (result.next()) {
+                    scan.balance(UUID.fromString(result.getString("uuid")), result.getDouble("balance"));
+                }
+            }
+
+            try (ResultSet result = statement.executeQuery(
+                    "SELECT uuid, world, SUM(total_spent) AS spent FROM dwb_multipliers GROUP BY uuid, world")) {
+                while (result.next()) {
+                    scan.spent(UUID.fromString(result.getString("uuid")),
+                            result.getString("world"), result.getDouble("spent"));
+                }
+            }
+        } catch (SQLException | IllegalArgumentException e) {
+            plugin.logError("Ошибка обхода игроков в базе: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized boolean saveMultipliers(Map<UUID, Map<String, PlayerMultiplierData>> players) {
+        if (players.isEmpty()) {
+            return true;
+        }
+
+        return inTransaction("множителей", () -> {
+            upsertMultiplier.clearBatch();
+            for (Map.Entry<UUID, Map<String, PlayerMultiplierData>> player : players.entrySet()) {
+                String uuid = player.getKey().toString();
+
+                for (Map.Entry<String, PlayerMultiplierData> entry : player.getValue().entrySet()) {
+                    // Мир и тип цены берутся из ключа: у старых записей поля могут быть пустыми
+                    String key = entry.getKey();
+                    int separator = key.lastIndexOf(':');
+                    if (separator <= 0) {
+                        continue;
+                    }
+
+                    PlayerMultiplierData data = entry.getValue();
+                    upsertMultiplier.setString(1, uuid);
+                    upsertMultiplier.setString(2, key.substring(0, separator));
+                    upsertMultiplier.setString(3, key.substring(separator + 1));
+                    upsertMultiplier.setInt(4, data.getLevel());
+                    upsertMultiplier.setDouble(5, data.getLastPrice());
+                    upsertMultiplier.setDouble(6, data.getTotalSpent());
+                    upsertMultiplier.setLong(7, data.getLastPurchaseTime());
+                    upsertMultiplier.setLong(8, data.getLastResetTime());
+                    upsertMultiplier.setInt(9, data.getPurchasesToday());
+                    upsertMultiplier.setInt(10, data.getPurchasesThisWeek());
+                    upsertMultiplier.setInt(11, data.getPurchasesThisMonth());
+                    upsertMultiplier.setDouble(12, data.getSpentToday());
+                    upsertMultiplier.setDouble(13, data.getSpentThisWeek());
+                    upsertMultiplier.setDouble(14, data.getSpentThisMonth());
+                    upsertMultiplier.addBatch();
+                }
+            }
+            upsertMultiplier.executeBatch();
+        });
+    }
+
+    // ========== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ==========
+
+    private boolean inTransaction(String what, SqlWork work) {
+        if (connection == null) {
+            return false;
+        }
+
+        try {
+            connection.setAutoCommit(false);
+            work.run();
+            connection.commit();
+            return true;
+
+        } catch (SQLException e) {
+            plugin.logError("Ошибка сохранения " + what + " в базу: " + e.getMessage());
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackError) {
+                plugin.logError("Ошибка отката транзакции: " + rollbackError.getMessage());
+            }
+            return false;
+
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                plugin.logError("Ошибка восстановления режима автокоммита: " + e.getMessage());
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface SqlWork {
+        void run() throws SQLException;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,109 @@
+package org.dan.dynamicborder.storage;
+
+import org.dan.dynamicborder.data.PlayerMultiplierData;
+import org.dan.dynamicborder.data.WorldBorderData;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Хранилище данных плагина.
+ *
+ * Все менеджеры сохраняют и загружают данные миров и игроков только через
+ * этот интерфейс. Реализация выбирается параметром storage.type в config.yml.
+ * Методы сохранения принимают пакеты: реализация сама решает, как записать
+ * их за один проход. Все методы потокобезопасны, ошибки логируются и
+ * возвращаются как false/null.
+ */
+public interface StorageBackend {
+
+    /**
+     * Название хранилища для логов и команд
+     */
+    String getName();
+
+    /**
+     * Подготовить хранилище к работе (создать файлы, таблицы, индексы)
+     *
+     * @return false, если хранилищем пользоваться нельзя
+     */
+    boolean open();
+
+    /**
+     * Закрыть хранилище (при выключении плагина)
+     */
+    void close();
+
+    // ========== БЭКАП ==========
+
+    /**
+     * Файл базы данных (путь относительно папки плагина), который нельзя
+     * копировать, пока хранилище открыто; null, если данные лежат в
+     * обычных файлах
+     */
+    String getDatabasePath();
+
+    /**
+     * Записать согласованную копию базы в target (файла еще не должно быть)
+     */
+    boolean backupDatabase(File target);
+
+    // ========== МИРЫ ==========
+
+    /**
+     * Загрузить сериализованные данные мира
+     *
+     * @return null, если мир еще не сохранялся
+     */
+    Map<String, Object> loadWorld(String worldName);
+
+    /**
+     * Сохранить пакет миров
+     */
+    boolean saveWorlds(Collection<WorldBorderData> worlds);
+
+    // ========== ИГРОКИ ==========
+
+    /**
+     * Загрузить баланс игрока
+     *
+     * @return null, если баланс еще не сохранялся
+     */
+    Double loadBalance(UUID uuid);
+
+    /**
+     * Сохранить пакет балансов
+     */
+    boolean saveBalances(Map<UUID, Double> balances);
+
+    /**
+     * Загрузить прогресс множителей игрока (ключ - "мир:тип цены")
+     */
+    Map<String, PlayerMultiplierData> loadMultipliers(UUID uuid);
+
+    /**
+     * Сохранить прогресс множителей пакета игроков
+     */
+    boolean saveMultipliers(Map<UUID, Map<String, PlayerMultiplierData>> players);
+
+    /**
+     * Обойти всех сохраненных игроков: балансы и потраченное по мирам.
+     * Нужен для построения рейтингов при запуске, идет долго - только
+     * вне основного потока
+     */
+    void scanPlayers(PlayerScan scan);
+
+    /**
+     * Получатель данных обхода игроков
+     */
+    interface PlayerScan {
+        void balance(UUID uuid, double balance);
+
+        /**
+         * Всего потрачено игроком в мире (по всем типам цен)
+         */
+        void spent(UUID uuid, String worldName, double totalSpent);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,189 @@
+package org.dan.dynamicborder.storage;
+
+import org.dan.dynamicborder.DynamicBorderPlugin;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Отложенная запись (write-behind) с объединением повторных сохранений.
+ *
+ * Ключи помечаются "грязными", а раз в окно сброса все накопленные ключи
+ * передаются одним пакетом в функцию записи. Сколько бы раз ключ ни был
+ * помечен внутри окна, он будет записан один раз. Запись идет в отдельном
+ * потоке ввода-вывода, основной поток сервера не блокируется.
+ */
+public class WriteBehindQueue<K> {
+
+    private final DynamicBorderPlugin plugin;
+    private final String name;
+    private final Consumer<Collection<K>> flusher;
+    private final ScheduledExecutorService executor;
+
+    private final Set<K> dirty = ConcurrentHashMap.newKeySet();
+    private final Set<K> inFlight = ConcurrentHashMap.newKeySet();
+
+    // Статистика
+    private final AtomicLong marks = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong writtenKeys = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private volatile long lastFlushNanos = 0;
+    private volatile long maxFlushNanos = 0;
+
+    public WriteBehindQueue(DynamicBorderPlugin plugin, String name, Consumer<Collection<K>> flusher) {
+        this.plugin = plugin;
+        this.name = name;
+        this.flusher = flusher;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "DynamicBorder-WriteBehind-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Запустить периодический сброс
+     */
+    public void start(long flushWindowMillis) {
+        long window = Math.max(50, flushWindowMillis);
+        executor.scheduleWithFixedDelay(this::flush, window, window, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Пометить ключ для записи в ближайшем окне
+     */
+    public void markDirty(K key) {
+        marks.incrementAndGet();
+        dirty.add(key);
+    }
+
+    /**
+     * Есть ли у ключа изменения, еще не попавшие на диск
+     */
+    public boolean isDirty(K key) {
+        return dirty.contains(key) || inFlight.contains(key);
+    }
+
+    /**
+     * Сбросить очередь, не дожидаясь окна (асинхронно)
+     */
+    public void flushAsync() {
+        executor.execute(this::flush);
+    }
+
+    /**
+     * Выполнить действие в потоке записи сразу после сброса очереди.
+     * Пока действие идет, пакеты не пишутся: новые пометки копятся до
+     * следующего окна. Вызывающий поток ждет результата
+     */
+    public <T> T callWhenFlushed(Supplier<T> action) {
+        try {
+            return executor.submit(() -> {
+                flush();
+                return action.get();
+            }).get();
+        } catch (RejectedExecutionException e) {
+            // Очередь уже остановлена и больше ничего не запишет
+            return action.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("ожидание очереди записи " + name + " прервано", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Сбросить очередь и остановить поток (при выключении плагина)
+     */
+    public void shutdown() {
+        executor.execute(this::flush);
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                plugin.logWarning("Очередь записи " + name + " не успела завершиться");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flush() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+
+        // Ключи переходят в inFlight до снятия пометки, чтобы isDirty
+        // не вернул false, пока данные еще не записаны
+        List<K> batch = new ArrayList<>(dirty.size());
+        for (Iterator<K> iterator = dirty.iterator(); iterator.hasNext(); ) {
+            K key = iterator.next();
+            inFlight.add(key);
+            iterator.remove();
+            batch.add(key);
+        }
+
+        long start = System.nanoTime();
+        try {
+            flusher.accept(batch);
+            writtenKeys.addAndGet(batch.size());
+        } catch (Exception e) {
+            // Вернуть ключи в очередь, повторим в следующем окне
+            dirty.addAll(batch);
+            plugin.logError("Ошибка отложенной записи " + name + ": " + e.getMessage());
+        } finally {
+            inFlight.removeAll(batch);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        lastFlushNanos = elapsed;
+        if (elapsed > maxFlushNanos) {
+            maxFlushNanos = elapsed;
+        }
+        totalFlushNanos.addAndGet(elapsed);
+        flushes.incrementAndGet();
+    }
+
+    // ========== СТАТИСТИКА ==========
+
+    public int getQueueDepth() {
+        return dirty.size() + inFlight.size();
+    }
+
+    public long getFlushCount() {
+        return flushes.get();
+    }
+
+    /**
+     * Сколько пометок было схлопнуто (не привело к отдельной записи)
+     */
+    public long getCoalescedCount() {
+        return Math.max(0, marks.get() - writtenKeys.get() - dirty.size());
+    }
+
+    public double getLastFlushMillis() {
+        return lastFlushNanos / 1_000_000.0;
+    }
+
+    public double getMaxFlushMillis() {
+        return maxFlushNanos / 1_000_000.0;
+    }
+
+    public double getAverageFlushMillis() {
+        long count = flushes.get();
+        return count == 0 ? 0.0 : totalFlushNanos.get() / 1_000_000.0 / count;
+    }
+}
\ No newline at end of file
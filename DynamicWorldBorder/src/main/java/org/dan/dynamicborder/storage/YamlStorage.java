@@ -0,0 +1,194 @@
+package org.dan.dynamicborder.storage;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.dan.dynamicborder.DynamicBorderPlugin;
+import org.dan.dynamicborder.data.PlayerMultiplierData;
+import org.dan.dynamicborder.data.WorldBorderData;
+import org.dan.dynamicborder.utils.ConfigUtils;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * YAML-хранилище: миры в worlds/МИР.yml, игроки в data/players.
+ */
+public class YamlStorage implements StorageBackend {
+
+    private final DynamicBorderPlugin plugin;
+    private final PlayerShardStore playerStore;
+    private final File worldsFolder;
+
+    public YamlStorage(DynamicBorderPlugin plugin) {
+        this.plugin = plugin;
+        this.playerStore = new PlayerShardStore(plugin);
+        this.worldsFolder = new File(plugin.getDataFolder(), "worlds");
+    }
+
+    @Override
+    public String getName() {
+        return "yaml";
+    }
+
+    @Override
+    public boolean open() {
+        if (!worldsFolder.exists()) {
+            worldsFolder.mkdirs();
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        // Все записи синхронные, закрывать нечего
+    }
+
+    // ========== БЭКАП ==========
+
+    @Override
+    public String getDatabasePath() {
+        // Файлы игроков и миров копируются обходом папки
+        return null;
+    }
+
+    @Override
+    public boolean backupDatabase(File target) {
+        return false;
+    }
+
+    // ========== МИРЫ ==========
+
+    @Override
+    public Map<String, Object> loadWorld(String worldName) {
+        File worldFile = new File(worldsFolder, worldName + ".yml");
+        if (!worldFile.exists()) {
+            return null;
+        }
+
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(worldFile);
+        Set<String> keys = config.getKeys(false);
+        return keys == null || keys.isEmpty() ? null : config.getValues(false);
+    }
+
+    @Override
+    public boolean saveWorlds(Collection<WorldBorderData> worlds) {
+        boolean success = true;
+
+        for (WorldBorderData data : worlds) {
+            YamlConfiguration config = new YamlConfiguration();
+            for (Map.Entry<String, Object> entry : data.serialize().entrySet()) {
+                config.set(entry.getKey(), entry.getValue());
+            }
+
+            File worldFile = new File(worldsFolder, data.getWorldName() + ".yml");
+            if (!ConfigUtils.saveYamlAtomic(config, worldFile)) {
+                plugin.logError("Ошибка сохранения данных мира " + data.getWorldName());
+                success = false;
+            }
+        }
+
+        return success;
+    }
+
+    // ========== ИГРОКИ ==========
+
+    @Override
+    public Double loadBalance(UUID uuid) {
+        YamlConfiguration config = playerStore.load(uuid);
+        if (config == null || !config.contains("balance")) {
+            return null;
+        }
+        return config.getDouble("balance", 0.0);
+    }
+
+    @Override
+    public boolean saveBalances(Map<UUID, Double> balances) {
+        boolean success = true;
+
+        for (Map.Entry<UUID, Double> entry : balances.entrySet()) {
+            double balance = entry.getValue();
+            success &= playerStore.update(entry.getKey(), config -> config.set("balance", balance));
+        }
+
+        return success;
+    }
+
+    @Override
+    public Map<String, PlayerMultiplierData> loadMultipliers(UUID uuid) {
+        Map<String, PlayerMultiplierData> playerMultipliers = new HashMap<>();
+
+        YamlConfiguration config = playerStore.load(uuid);
+        if (config == null || !config.contains("multipliers")) {
+            return playerMultipliers;
+        }
+
+        for (String key : config.getConfigurationSection("multipliers").getKeys(false)) {
+            Object value = config.get("multipliers." + key);
+            if (value instanceof PlayerMultiplierData) {
+                playerMultipliers.put(key, (PlayerMultiplierData) value);
+            }
+        }
+
+        return playerMultipliers;
+    }
+
+    @Override
+    public void scanPlayers(PlayerScan scan) {
+        File[] shards = playerStore.getRoot().listFiles(File::isDirectory);
+        if (shards == null) {
+            return;
+        }
+
+        for (File shard : shards) {
+            File[] files = shard.listFiles((dir, name) -> name.endsWith(".yml"));
+            if (files == null) {
+                continue;
+            }
+
+            for (File file : files) {
+                UUID uuid;
+                try {
+                    uuid = UUID.fromString(file.getName().substring(0, file.getName().length() - 4));
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
+
+                YamlConfiguration config = playerStore.load(uuid);
+                if (config == null) {
+                    continue;
+                }
+
+                if (config.contains("balance")) {
+                    scan.balance(uuid, config.getDouble("balance", 0.0));
+                }
+
+                if (config.contains("multipliers")) {
+                    Map<String, Double> spentByWorld = new HashMap<>();
+                    for (String key : config.getConfigurationSection("multipliers").getKeys(false)) {
+                        if (config.get("multipliers." + key) instanceof PlayerMultiplierData data) {
+                            spentByWorld.merge(data.getWorldName(), data.getTotalSpent(), Double::sum);
+                        }
+                    }
+                    spentByWorld.forEach((world, spent) -> scan.spent(uuid, world, spent));
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean saveMultipliers(Map<UUID, Map<String, PlayerMultiplierData>> players) {
+        boolean success = true;
+        long now = System.currentTimeMillis();
+
+        for (Map.Entry<UUID, Map<String, PlayerMultiplierData>> player : players.entrySet()) {
+            success &= playerStore.update(player.getKey(), config -> {
+                config.set("multipliers", null);
+                for (Map.Entry<String, PlayerMultiplierData> entry : player.getValue().entrySet()) {
+                    config.set("multipliers." + entry.getKey(), entry.getValue());
+                }
+                config.set("multipliers-last-save", now);
+            });
+        }
+
+        return success;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,458 @@
+package org.dan.dynamicborder.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Скомпилированная формула множителя.
+ *
+ * Строка формулы один раз разбирается в дерево узлов: числа, переменные,
+ * операторы и функции. Переменные привязаны к номерам слотов, константные
+ * поддеревья сворачиваются при компиляции, поэтому вычисление - обход
+ * готового дерева на примитивах без строк, регулярных выражений и
+ * выделения памяти.
+ *
+ * Синтаксис: + - * / % ^ и скобки, переменные level, base, step, min, max
+ * (можно в фигурных скобках: {level}), константы E и PI, функции sqrt, pow,
+ * log, log10, sin, cos, tan, asin, acos, atan, abs, round, floor, ceil,
+ * random (можно с префиксом Math.). Запятая между цифрами вне аргументов
+ * функции считается десятичной: "1,5 * level".
+ */
+public final class CompiledFormula {
+
+    // Номера слотов переменных
+    private static final int LEVEL = 0;
+    private static final int BASE = 1;
+    private static final int STEP = 2;
+    private static final int MIN = 3;
+    private static final int MAX = 4;
+
+    private static final int CACHE_LIMIT = 256;
+    private static final Map<String, CompiledFormula> CACHE = new ConcurrentHashMap<>();
+
+    private final String source;
+    private final Node root;
+    private final boolean usesRandom;
+
+    private CompiledFormula(String source, Node root, boolean usesRandom) {
+        this.source = source;
+        this.root = root;
+        this.usesRandom = usesRandom;
+    }
+
+    /**
+     * Скомпилировать формулу
+     *
+     * @throws IllegalArgumentException если формула записана с ошибкой
+     */
+    public static CompiledFormula compile(String formula) {
+        if (formula == null || formula.trim().isEmpty()) {
+            throw new IllegalArgumentException("Пустая формула");
+        }
+        Parser parser = new Parser(formula);
+        Node root = parser.parse();
+        return new CompiledFormula(formula, root, parser.usesRandom);
+    }
+
+    /**
+     * Скомпилированная формула из кэша (компилируется при первом обращении)
+     *
+     * @throws IllegalArgumentException если формула записана с ошибкой
+     */
+    public static CompiledFormula cached(String formula) {
+        CompiledFormula compiled = CACHE.get(formula);
+        if (compiled == null) {
+            compiled = compile(formula);
+            if (CACHE.size() >= CACHE_LIMIT) {
+                CACHE.clear();
+            }
+            CACHE.put(formula, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * Вычислить формулу
+     */
+    public double evaluate(double level, double base, double step, double min, double max) {
+        return root.eval(level, base, step, min, max);
+    }
+
+    /**
+     * Вычислить формулу без переменных min и max (они равны нулю)
+     */
+    public double evaluate(double level, double base, double step) {
+        return root.eval(level, base, step, 0, 0);
+    }
+
+    /**
+     * Формула вызывает random() и дает разный результат при одних аргументах
+     */
+    public boolean usesRandom() {
+        return usesRandom;
+    }
+
+    /**
+     * Формула не зависит от переменных и случайных чисел
+     */
+    public boolean isConstant() {
+        return root instanceof Const;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    // ========== УЗЛЫ ==========
+
+    private interface Node {
+        double eval(double level, double base, double step, double min, double max);
+    }
+
+    private record Const(double value) implements Node {
+        @Override
+        public double eval(double level, double base, double step, double min, double max) {
+            return value;
+        }
+    }
+
+    private record Var(int slot) implements Node {
+        @Override
+        public double eval(double level, double base, double step, double min, double max) {
+            switch (slot) {
+                case LEVEL: return level;
+                case BASE: return base;
+                case STEP: return step;
+                case MIN: return min;
+                default: return max;
+            }
+        }
+    }
+
+    private record Negate(Node operand) implements Node {
+        @Override
+        public double eval(double level, double base, double step, double min, double max) {
+            return -operand.eval(level, base, step, min, max);
+        }
+    }
+
+    private record Binary(char op, Node left, Node right) implements Node {
+        @Override
+        public double eval(double level, double base, double step, double min, double max) {
+            double a = left.eval(level, base, step, min, max);
+            double b = right.eval(level, base, step, min, max);
+            switch (op) {
+                case '+': return a + b;
+                case '-': return a - b;
+                case '*': return a * b;
+                case '/': return a / b;
+                case '%': return a % b;
+                default: return Math.pow(a, b);
+            }
+        }
+    }
+
+    private record Call(Function function, Node[] args) implements Node {
+        @Override
+        public double eval(double level, double base, double step, double min, double max) {
+            switch (function.arity) {
+                case 0:
+                    return function.apply(0, 0);
+                case 1:
+                    return function.apply(args[0].eval(level, base, step, min, max), 0);
+                default:
+                    return function.apply(args[0].eval(level, base, step, min, max),
+                            args[1].eval(level, base, step, min, max));
+            }
+        }
+    }
+
+    private enum Function {
+        SQRT(1), POW(2), LOG(1), LOG10(1), SIN(1), COS(1), TAN(1), ASIN(1), ACOS(1), ATAN(1),
+        ABS(1), ROUND(1), FLOOR(1), CEIL(1), RANDOM(0);
+
+        private final int arity;
+
+        Function(int arity) {
+            this.arity = arity;
+        }
+
+        private double apply(double a, double b) {
+            switch (this) {
+                case SQRT: return Math.sqrt(a);
+                case POW: return Math.pow(a, b);
+                case LOG: return Math.log(a);
+                case LOG10: return Math.log10(a);
+                case SIN: return Math.sin(a);
+                case COS: return Math.cos(a);
+                case TAN: return Math.tan(a);
+                case ASIN: return Math.asin(a);
+                case ACOS: return Math.acos(a);
+                case ATAN: return Math.atan(a);
+                case ABS: return Math.abs(a);
+                case ROUND: return Math.round(a);
+                case FLOOR: return Math.floor(a);
+                case CEIL: return Math.ceil(a);
+                default: return ThreadLocalRandom.current().nextDouble();
+            }
+        }
+
+        private static Function byName(String name) {
+            for (Function function : values()) {
+                if (function.name().equalsIgnoreCase(name)) {
+                    return function;
+                }
+            }
+            return null;
+        }
+    }
+
+    // ========== РАЗБОР ==========
+
+    /**
+     * Рекурсивный спуск по строке. Приоритет: + - ниже * / %, ниже унарного
+     * минуса, ниже ^ (правоассоциативная степень)
+     */
+    private static final class Parser {
+        private final String text;
+        private int pos = 0;
+        private int argDepth = 0;
+        private boolean usesRandom = false;
+
+        private Parser(String text) {
+            this.text = text;
+        }
+
+        private Node parse() {
+            Node node = parseSum();
+            skipSpaces();
+            if (pos < text.length()) {
+                throw error("лишний символ '" + text.charAt(pos) + "'");
+            }
+            return node;
+        }
+
+        private Node parseSum() {
+            Node node = parseProduct();
+            while (true) {
+                char op = peek();
+                if (op != '+' && op != '-') {
+                    return node;
+                }
+                pos++;
+                node = binary(op, node, parseProduct());
+            }
+        }
+
+        private Node parseProduct() {
+            Node node = parseUnary();
+            while (true) {
+                char op = peek();
+                if (op != '*' && op != '/' && op != '%') {
+                    return node;
+                }
+                pos++;
+                node = binary(op, node, parseUnary());
+            }
+        }
+
+        private Node parseUnary() {
+            char c = peek();
+            if (c == '-') {
+                pos++;
+                Node operand = parseUnary();
+                return operand instanceof Const constant ? new Const(-constant.value()) : new Negate(operand);
+            }
+            if (c == '+') {
+                pos++;
+                return parseUnary();
+            }
+            return parsePower();
+        }
+
+        private Node parsePower() {
+            Node node = parsePrimary();
+            char c = peek();
+            if (c == '^') {
+                pos++;
+                return binary('^', node, parseUnary());
+            }
+            // ** - степень в записи JavaScript
+            if (c == '*' && pos + 1 < text.length() && text.charAt(pos + 1) == '*') {
+                pos += 2;
+                return binary('^', node, parseUnary());
+            }
+            return node;
+        }
+
+        private Node parsePrimary() {
+            char c = peek();
+            if (c == '(') {
+                pos++;
+                int savedDepth = argDepth;
+                argDepth = 0;
+                Node node = parseSum();
+                argDepth = savedDepth;
+                expect(')');
+                return node;
+            }
+            if (c == '{') {
+                pos++;
+                String name = readName();
+                expect('}');
+                return name(name);
+            }
+            if (Character.isDigit(c) || c == '.') {
+                return readNumber();
+            }
+            if (Character.isLetter(c) || c == '_') {
+                return name(readName());
+            }
+            throw pos < text.length() ? error("неожиданный символ '" + c + "'") : error("неожиданный конец формулы");
+        }
+
+        private Node name(String name) {
+            if (name.startsWith("Math.")) {
+                name = name.substring(5);
+            }
+
+            Function function = Function.byName(name);
+            if (function != null) {
+                return call(function, name);
+            }
+
+            switch (name) {
+                case "level": return new Var(LEVEL);
+                case "base": return new Var(BASE);
+                case "step": return new Var(STEP);
+                case "min": return new Var(MIN);
+                case "max": return new Var(MAX);
+                case "E": return new Const(Math.E);
+                case "PI": return new Const(Math.PI);
+                default: throw error("неизвестное имя '" + name + "'");
+            }
+        }
+
+        private Node call(Function function, String name) {
+            // Старая запись {sqrt}(x) тоже приводит сюда
+            if (peek() != '(') {
+                throw error("после " + name + " ожидается '('");
+            }
+            pos++;
+
+            List<Node> args = new ArrayList<>();
+            argDepth++;
+            if (peek() != ')') {
+                args.add(parseSum());
+                while (peek() == ',') {
+                    pos++;
+                    args.add(parseSum());
+                }
+            }
+            argDepth--;
+            expect(')');
+
+            if (args.size() != function.arity) {
+                throw error(name + " ожидает аргументов: " + function.arity + ", передано: " + args.size());
+            }
+
+            if (function == Function.RANDOM) {
+                usesRandom = true;
+            }
+
+            Node[] array = args.toArray(new Node[0]);
+            if (function != Function.RANDOM && allConstant(array)) {
+                double a = array.length > 0 ? ((Const) array[0]).value() : 0;
+                double b = array.length > 1 ? ((Const) array[1]).value() : 0;
+                return new Const(function.apply(a, b));
+            }
+            return new Call(function, array);
+        }
+
+        private Node readNumber() {
+            int start = pos;
+            StringBuilder number = new StringBuilder();
+            while (pos < text.length()) {
+                char c = text.charAt(pos);
+                if (Character.isDigit(c) || c == '.') {
+                    number.append(c);
+                } else if (c == ',' && argDepth == 0 && pos + 1 < text.length()
+                        && Character.isDigit(text.charAt(pos + 1))) {
+                    number.append('.');
+                } else if ((c == 'e' || c == 'E') && pos + 1 < text.length()
+                        && (Character.isDigit(text.charAt(pos + 1)) || text.charAt(pos + 1) == '-')) {
+                    number.append(c).append(text.charAt(pos + 1));
+                    pos++;
+                } else {
+                    break;
+                }
+                pos++;
+            }
+
+            try {
+                return new Const(Double.parseDouble(number.toString()));
+            } catch (NumberFormatException e) {
+                pos = start;
+                throw error("неверное число '" + number + "'");
+            }
+        }
+
+        private String readName() {
+            skipSpaces();
+            int start = pos;
+            while (pos < text.length()) {
+                char c = text.charAt(pos);
+                if (!Character.isLetterOrDigit(c) && c != '_' && c != '.') {
+                    break;
+                }
+                pos++;
+            }
+            if (start == pos) {
+                throw error("ожидается имя");
+            }
+            return text.substring(start, pos);
+        }
+
+        private Node binary(char op, Node left, Node right) {
+            Node node = new Binary(op, left, right);
+            if (left instanceof Const && right instanceof Const) {
+                return new Const(node.eval(0, 0, 0, 0, 0));
+            }
+            return node;
+        }
+
+        private static boolean allConstant(Node[] nodes) {
+            for (Node node : nodes) {
+                if (!(node instanceof Const)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void expect(char c) {
+            if (peek() != c) {
+                throw error("ожидается '" + c + "'");
+            }
+            pos++;
+        }
+
+        private char peek() {
+            skipSpaces();
+            return pos < text.length() ? text.charAt(pos) : '\0';
+        }
+
+        private void skipSpaces() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Ошибка в формуле (позиция " + (pos + 1) + "): " + message);
+        }
+    }
+}
\ No newline at end of file
@@ -5,7 +5,13 @@ import org.bukkit.configuration.ConfigurationSection;
 import org.dan.dynamicborder.DynamicBorderPlugin;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 
 public class ConfigUtils {
@@ -42,6 +48,55 @@ public class ConfigUtils {
         }
     }
 
+    /**
+     * Атомарное сохранение YAML: запись во временный файл и переименование.
+     * При сбое посреди записи старый файл остается целым.
+     */
+    public static boolean saveYamlAtomic(YamlConfiguration config, File file) {
+        return writeAtomic(file, config.saveToString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Атомарная запись байтов в файл через временный файл
+     */
+    public static boolean writeAtomic(File file, byte[] content) {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+
+        File tempFile = null;
+        try {
+            // Уникальное имя: один файл могут писать одновременно из разных потоков
+            tempFile = File.createTempFile(file.getName() + ".", ".tmp", parent);
+            try (FileOutputStream out = new FileOutputStream(tempFile)) {
+                out.write(content);
+                out.getFD().sync();
+            }
+
+            moveAtomic(tempFile.toPath(), file.toPath());
+            return true;
+
+        } catch (IOException e) {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Переместить файл с заменой: атомарно, а если файловая система этого
+     * не умеет - обычным переносом
+     */
+    public static void moveAtomic(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
     /**
      * Получить значение с дефолтом
      */
@@ -289,11 +344,10 @@ public class ConfigUtils {
             File backupFile = new File(backupDir, configFile.getName() + "_" + timestamp + ".bak");
 
             // Копируем файл
-            java.nio.file.Files.copy(configFile.toPath(), backupFile.toPath(),
-                    java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            Files.copy(configFile.toPath(), backupFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
 
             // Удаляем старые бэкапы (больше 10)
-            cleanupOldBackups(backupDir, 10);
+            cleanupOldBackups(backupDir, ".bak", 10);
 
             return backupFile;
 
@@ -303,25 +357,31 @@ public class ConfigUtils {
     }
 
     /**
-     * Очистка старых бэкапов
+     * Очистка старых бэкапов: остаются keepCount самых новых файлов с указанным окончанием
+     *
+     * @return количество удаленных файлов
      */
-    private static void cleanupOldBackups(File backupDir, int keepCount) {
+    public static int cleanupOldBackups(File backupDir, String suffix, int keepCount) {
         if (!backupDir.exists() || !backupDir.isDirectory()) {
-            return;
+            return 0;
         }
 
-        File[] backupFiles = backupDir.listFiles((dir, name) -> name.endsWith(".bak"));
+        File[] backupFiles = backupDir.listFiles((dir, name) -> name.endsWith(suffix));
         if (backupFiles == null || backupFiles.length <= keepCount) {
-            return;
+            return 0;
         }
 
         // Сортируем по дате изменения (старые первыми)
         Arrays.sort(backupFiles, Comparator.comparingLong(File::lastModified));
 
         // Удаляем старые файлы
-        for (int i = 0; i < backupFiles.length - keepCount; i++) {
-            backupFiles[i].delete();
+        int removed = 0;
+        for (int i = 0; i < backupFiles.length - Math.max(1, keepCount); i++) {
+            if (backupFiles[i].delete()) {
+                removed++;
+            }
         }
+        return removed;
     }
 
     /**
@@ -340,6 +400,11 @@ public class ConfigUtils {
         mainDefaults.put("settings.check-updates", true);
         mainDefaults.put("settings.auto-backup", true);
         mainDefaults.put("settings.cache-cleanup", 600);
+        mainDefaults.put("settings.backup-keep", 10);
+        mainDefaults.put("settings.balance-journal.compact-records", 10000);
+        mainDefaults.put("settings.balance-journal.compact-interval", 60);
+        mainDefaults.put("settings.write-behind.flush-interval", 5000);
+        mainDefaults.put("storage.type", "yaml");
 
         mainDefaults.put("border.damage.enabled", true);
         mainDefaults.put("border.warning.enabled", true);
@@ -0,0 +1,247 @@
+package org.dan.dynamicborder.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Рейтинг по убыванию значения.
+ *
+ * Скиплист с длинами переходов (как sorted set в Redis): у каждой ссылки
+ * хранится, через сколько позиций она ведет, поэтому место в рейтинге
+ * считается тем же спуском, что и поиск. Изменение значения, место ключа -
+ * O(log n), первые K мест - O(log n + K). При равных значениях выше стоит
+ * меньший ключ. Методы синхронизированы, рейтинг можно менять из любого
+ * потока.
+ */
+public class Leaderboard<K extends Comparable<K>> {
+
+    private static final int MAX_LEVEL = 32;
+    private static final double LEVEL_CHANCE = 0.25;
+
+    private final Node<K> head = new Node<>(null, 0, MAX_LEVEL);
+    private final Map<K, Node<K>> nodes = new HashMap<>();
+    private int level = 1;
+    // Узлов в списке (во время перестановки отличается от nodes.size())
+    private int length = 0;
+
+    /**
+     * Место в рейтинге (с единицы)
+     */
+    public record Entry<K>(K key, double value, int rank) {
+    }
+
+    /**
+     * Установить значение ключа
+     */
+    public synchronized void update(K key, double value) {
+        Node<K> node = nodes.get(key);
+        if (node != null) {
+            if (node.value == value) {
+                return;
+            }
+            unlink(node);
+        }
+        nodes.put(key, insert(key, value));
+    }
+
+    /**
+     * Установить значение, если ключа еще нет в рейтинге
+     *
+     * @return false, если ключ уже есть
+     */
+    public synchronized boolean putIfAbsent(K key, double value) {
+        if (nodes.containsKey(key)) {
+            return false;
+        }
+        nodes.put(key, insert(key, value));
+        return true;
+    }
+
+    public synchronized void remove(K key) {
+        Node<K> node = nodes.remove(key);
+        if (node != null) {
+            unlink(node);
+        }
+    }
+
+    public synchronized void clear() {
+        nodes.clear();
+        for (int i = 0; i < MAX_LEVEL; i++) {
+            head.next[i] = null;
+            head.span[i] = 0;
+        }
+        level = 1;
+        length = 0;
+    }
+
+    /**
+     * Значение ключа или NaN, если ключа нет
+     */
+    public synchronized double get(K key) {
+        Node<K> node = nodes.get(key);
+        return node != null ? node.value : Double.NaN;
+    }
+
+    /**
+     * Место ключа (с единицы) или 0, если ключа нет
+     */
+    public synchronized int rank(K key) {
+        Node<K> node = nodes.get(key);
+        if (node == null) {
+            return 0;
+        }
+
+        Node<K> x = head;
+        int rank = 0;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && (x.next[i] == node || before(x.next[i], node.value, node.key))) {
+                rank += x.span[i];
+                x = x.next[i];
+            }
+            if (x == node) {
+                return rank;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Первые count мест
+     */
+    public synchronized List<Entry<K>> top(int count) {
+        return range(1, count);
+    }
+
+    /**
+     * count мест начиная с места from (с единицы)
+     */
+    public synchronized List<Entry<K>> range(int from, int count) {
+        List<Entry<K>> entries = new ArrayList<>(Math.max(0, Math.min(count, nodes.size() - from + 1)));
+        if (from < 1 || from > nodes.size() || count <= 0) {
+            return entries;
+        }
+
+        // Спуск к месту from, дальше - по нижнему уровню
+        Node<K> x = head;
+        int rank = 0;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && rank + x.span[i] <= from) {
+                rank += x.span[i];
+                x = x.next[i];
+            }
+        }
+
+        while (x != null && entries.size() < count) {
+            entries.add(new Entry<>(x.key, x.value, rank++));
+            x = x.next[0];
+        }
+        return entries;
+    }
+
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    // ========== СКИПЛИСТ ==========
+
+    /**
+     * Узел a стоит выше пары (value, key)
+     */
+    private static <K extends Comparable<K>> boolean before(Node<K> a, double value, K key) {
+        int byValue = Double.compare(a.value, value);
+        return byValue > 0 || (byValue == 0 && a.key.compareTo(key) < 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node<K> insert(K key, double value) {
+        Node<K>[] update = new Node[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+
+        Node<K> x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (x.next[i] != null && before(x.next[i], value, key)) {
+                rank[i] += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        int nodeLevel = randomLevel();
+        if (nodeLevel > level) {
+            for (int i = level; i < nodeLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                head.span[i] = length;
+            }
+            level = nodeLevel;
+        }
+
+        Node<K> node = new Node<>(key, value, nodeLevel);
+        for (int i = 0; i < nodeLevel; i++) {
+            node.next[i] = update[i].next[i];
+            update[i].next[i] = node;
+            node.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = rank[0] - rank[i] + 1;
+        }
+        for (int i = nodeLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+        length++;
+        return node;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void unlink(Node<K> node) {
+        Node<K>[] update = new Node[MAX_LEVEL];
+
+        Node<K> x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && before(x.next[i], node.value, node.key)) {
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        for (int i = 0; i < level; i++) {
+            if (update[i].next[i] == node) {
+                update[i].span[i] += node.span[i] - 1;
+                update[i].next[i] = node.next[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        length--;
+    }
+
+    private static int randomLevel() {
+        int nodeLevel = 1;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (nodeLevel < MAX_LEVEL && random.nextDouble() < LEVEL_CHANCE) {
+            nodeLevel++;
+        }
+        return nodeLevel;
+    }
+
+    private static final class Node<K> {
+        private final K key;
+        private final double value;
+        private final Node<K>[] next;
+        // Сколько позиций пропускает ссылка next[i]
+        private final int[] span;
+
+        @SuppressWarnings("unchecked")
+        private Node(K key, double value, int level) {
+            this.key = key;
+            this.value = value;
+            this.next = new Node[level];
+            this.span = new int[level];
+        }
+    }
+}
\ No newline at end of file
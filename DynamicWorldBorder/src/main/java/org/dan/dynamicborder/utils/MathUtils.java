@@ -1,26 +1,16 @@
 package org.dan.dynamicborder.utils;
 
 
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
-import javax.script.ScriptException;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 
 public class MathUtils {
 
-    private static final ScriptEngine engine = new ScriptEngineManager().getEngineByName("JavaScript");
     private static final Pattern VARIABLE_PATTERN = Pattern.compile("\\{([a-zA-Z_]+)\\}");
 
-    static {
-        // Настраиваем ScriptEngine для безопасности
-        if (engine != null) {
-            engine.put("Math", Math.class);
-        }
-    }
-
     /**
-     * Вычисление математического выражения
+     * Вычисление математического выражения (синтаксис - см. CompiledFormula).
+     * Выражение компилируется один раз и берется из кэша
      */
     public static double evaluateExpression(String expression) {
         if (expression == null || expression.trim().isEmpty()) {
@@ -28,167 +18,12 @@ public class MathUtils {
         }
 
         try {
-            // Заменяем математические функции
-            String expr = expression
-                    .replace("{sqrt}", "Math.sqrt")
-                    .replace("{pow}", "Math.pow")
-                    .replace("{log}", "Math.log")
-                    .replace("{log10}", "Math.log10")
-                    .replace("{sin}", "Math.sin")
-                    .replace("{cos}", "Math.cos")
-                    .replace("{tan}", "Math.tan")
-                    .replace("{asin}", "Math.asin")
-                    .replace("{acos}", "Math.acos")
-                    .replace("{atan}", "Math.atan")
-                    .replace("{abs}", "Math.abs")
-                    .replace("{round}", "Math.round")
-                    .replace("{floor}", "Math.floor")
-                    .replace("{ceil}", "Math.ceil")
-                    .replace("{random}", "Math.random")
-                    .replace("{E}", String.valueOf(Math.E))
-                    .replace("{PI}", String.valueOf(Math.PI))
-                    .replace("^", "**") // Заменяем ^ на ** для JavaScript
-                    .replace(",", "."); // Заменяем запятые на точки
-
-            // Удаляем оставшиеся фигурные скобки
-            expr = expr.replace("{", "").replace("}", "");
-
-            // Проверяем на наличие опасных конструкций
-            if (containsDangerousCode(expr)) {
-                throw new SecurityException("Выражение содержит опасный код: " + expr);
-            }
-
-            Object result = engine.eval(expr);
-            if (result instanceof Number) {
-                return ((Number) result).doubleValue();
-            } else if (result instanceof Boolean) {
-                return ((Boolean) result) ? 1.0 : 0.0;
-            }
-            return 0.0;
-
-        } catch (ScriptException e) {
-            // Если JavaScript недоступен, используем простой парсер
-            return evaluateSimpleExpression(expression);
-        } catch (SecurityException e) {
-            throw e;
-        } catch (Exception e) {
-            return 0.0;
-        }
-    }
-
-    /**
-     * Проверка на опасный код
-     */
-    private static boolean containsDangerousCode(String expression) {
-        String[] dangerousPatterns = {
-                "System\\.", "Runtime\\.", "Process\\.", "exec\\s*\\(", "eval\\s*\\(",
-                "getClass\\(\\)", "forName\\s*\\(", "invoke\\s*\\(", "new\\s+",
-                "import\\s+", "package\\s+", "void\\s+", "class\\s+", "function\\s+"
-        };
-
-        for (String pattern : dangerousPatterns) {
-            if (Pattern.compile(pattern, Pattern.CASE_INSENSITIVE).matcher(expression).find()) {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
-    /**
-     * Простой парсер математических выражений (резервный вариант)
-     */
-    private static double evaluateSimpleExpression(String expression) {
-        try {
-            // Удаляем пробелы
-            String expr = expression.replaceAll("\\s+", "");
-
-            // Обрабатываем скобки
-            while (expr.contains("(") && expr.contains(")")) {
-                int open = expr.lastIndexOf("(");
-                int close = expr.indexOf(")", open);
-
-                if (close == -1) break;
-
-                String subExpr = expr.substring(open + 1, close);
-                double subResult = evaluateSimpleExpression(subExpr);
-                expr = expr.substring(0, open) + subResult + expr.substring(close + 1);
-            }
-
-            // Обрабатываем операции в порядке приоритета
-            expr = processOperations(expr, new String[]{"^"});          // Степень
-            expr = processOperations(expr, new String[]{"*", "/"});    // Умножение и деление
-            expr = processOperations(expr, new String[]{"+", "-"});    // Сложение и вычитание
-
-            return Double.parseDouble(expr);
-
-        } catch (Exception e) {
+            return CompiledFormula.cached(expression).evaluate(0, 0, 0);
+        } catch (IllegalArgumentException e) {
             return 0.0;
         }
     }
 
-    private static String processOperations(String expression, String[] operators) {
-        String expr = expression;
-
-        for (String op : operators) {
-            // Экранируем операторы для регулярных выражений
-            String escapedOp;
-            switch (op) {
-                case "^":
-                    escapedOp = "\\^"; // ^ - спецсимвол
-                    break;
-                case "*":
-                    escapedOp = "\\*"; // * - спецсимвол
-                    break;
-                case "/":
-                    escapedOp = "/";   // / - не спецсимвол
-                    break;
-                case "+":
-                    escapedOp = "\\+"; // + - спецсимвол
-                    break;
-                case "-":
-                    escapedOp = "-";   // - иногда спецсимвол, но в данном контексте нормально
-                    break;
-                default:
-                    escapedOp = Pattern.quote(op); // для других операторов
-            }
-
-            Pattern pattern = Pattern.compile("(-?\\d+\\.?\\d*)(" + escapedOp + ")(-?\\d+\\.?\\d*)");
-            Matcher matcher = pattern.matcher(expr);
-
-            while (matcher.find()) {
-
-                double left = Double.parseDouble(matcher.group(1));
-                double right = Double.parseDouble(matcher.group(3));
-                double result = 0.0;
-
-                switch (op) {
-                    case "^":
-                        result = Math.pow(left, right);
-                        break;
-                    case "*":
-                        result = left * right;
-                        break;
-                    case "/":
-                        if (right == 0) result = 0;
-                        else result = left / right;
-                        break;
-                    case "+":
-                        result = left + right;
-                        break;
-                    case "-":
-                        result = left - right;
-                        break;
-                }
-
-                expr = expr.substring(0, matcher.start()) + result + expr.substring(matcher.end());
-                matcher = pattern.matcher(expr);
-            }
-        }
-
-        return expr;
-    }
-
     /**
      * Замена переменных в выражении
      */
@@ -442,15 +277,8 @@ public class MathUtils {
         }
 
         try {
-            java.util.Map<String, Object> vars = new java.util.HashMap<>();
-            vars.put("level", level);
-            vars.put("base", base);
-            vars.put("step", step);
-
-            String expr = replaceVariables(formula, vars);
-            return evaluateExpression(expr);
-
-        } catch (Exception e) {
+            return CompiledFormula.cached(formula).evaluate(level, base, step);
+        } catch (IllegalArgumentException e) {
             return base + (step * level);
         }
     }
@@ -0,0 +1,96 @@
+package org.dan.dynamicborder.managers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пропускная способность переводов из многих потоков: блокировка двух
+ * счетов (BalanceAccounts.transfer) против тех же переводов под одной
+ * общей блокировкой. players задает число счетов: 2 - все потоки бьются
+ * за одну пару, 4096 - пересечений почти нет.
+ *
+ * Запись изменения повторяет CurrencyManager.commit без журнала:
+ * пометка с общим счетчиком версий.
+ *
+ * Запуск: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ * -Dexec.args="-cp %classpath org.openjdk.jmh.Main BalanceAccountsBenchmark"
+ * (число потоков - ключ -t)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BalanceAccountsBenchmark {
+
+    private static final double START_BALANCE = 1_000_000_000;
+
+    @Param({"2", "64", "4096"})
+    public int players;
+
+    private UUID[] uuids;
+    private BalanceAccounts accounts;
+    private final Object globalLock = new Object();
+    private final Map<UUID, Long> dirty = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+
+    @Setup
+    public void setup() {
+        accounts = new BalanceAccounts(uuid -> START_BALANCE,
+                (uuid, balance) -> dirty.put(uuid, version.incrementAndGet()));
+
+        uuids = new UUID[players];
+        for (int i = 0; i < players; i++) {
+            uuids[i] = UUID.randomUUID();
+            accounts.preload(uuids[i]);
+        }
+    }
+
+    @Benchmark
+    public boolean transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(players);
+        int to = (from + 1 + random.nextInt(players - 1)) % players;
+        return accounts.transfer(uuids[from], uuids[to], 1.0);
+    }
+
+    /**
+     * Те же переводы под общей блокировкой всех счетов
+     */
+    @Benchmark
+    public boolean transferGlobalLock() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(players);
+        int to = (from + 1 + random.nextInt(players - 1)) % players;
+        synchronized (globalLock) {
+            return accounts.transfer(uuids[from], uuids[to], 1.0);
+        }
+    }
+
+    /**
+     * Чтение баланса без блокировки во время переводов других потоков
+     */
+    @Benchmark
+    public double getBalance() {
+        return accounts.get(uuids[ThreadLocalRandom.current().nextInt(players)]);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,125 @@
+package org.dan.dynamicborder.managers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Встречные переводы и списания из многих потоков при постоянной выгрузке
+ * счетов: сумма балансов сохраняется, баланс не уходит в минус.
+ */
+class BalanceAccountsTest {
+
+    private static final int PLAYERS = 4;
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 100_000;
+    private static final double START_BALANCE = 100.0;
+
+    @Test
+    void transfersConserveTotal() throws Exception {
+        // Хранилище: выгруженный счет загружается из последней записи
+        Map<UUID, Double> stored = new ConcurrentHashMap<>();
+        AtomicLong negative = new AtomicLong();
+        BalanceAccounts accounts = new BalanceAccounts(
+                uuid -> stored.getOrDefault(uuid, START_BALANCE),
+                (uuid, balance) -> {
+                    if (balance < 0) {
+                        negative.incrementAndGet();
+                    }
+                    stored.put(uuid, balance);
+                });
+
+        UUID[] players = new UUID[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            players[i] = UUID.randomUUID();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong withdrawn = new AtomicLong();
+
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long seed = t;
+            workers.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                start.await();
+                for (int i = 0; i < OPERATIONS; i++) {
+                    UUID from = players[random.nextInt(PLAYERS)];
+                    UUID to = players[random.nextInt(PLAYERS)];
+                    double amount = 1 + random.nextInt(30);
+                    if (random.nextInt(10) == 0) {
+                        // Списание без проверки баланса снаружи: отказ внутри update
+                        if (accounts.update(from, current -> current < amount ? Double.NaN : current - amount)) {
+                            withdrawn.addAndGet((long) amount);
+                        }
+                    } else {
+                        accounts.transfer(from, to, amount);
+                    }
+                }
+                return null;
+            }));
+        }
+
+        // Выгрузка счетов во время изменений: изменения повторяются на новом счете
+        Future<?> evictor = executor.submit(() -> {
+            start.await();
+            Random random = new Random(42);
+            while (running.get()) {
+                accounts.evictIf(players[random.nextInt(PLAYERS)], uuid -> true);
+            }
+            return null;
+        });
+
+        start.countDown();
+        for (Future<?> worker : workers) {
+            worker.get(60, TimeUnit.SECONDS);
+        }
+        running.set(false);
+        evictor.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        double total = 0;
+        for (UUID player : players) {
+            double balance = accounts.get(player);
+            assertTrue(balance >= 0, "баланс " + balance);
+            assertEquals(stored.getOrDefault(player, START_BALANCE), balance, 0, "запись отстала от счета");
+            total += balance;
+        }
+        assertEquals(PLAYERS * START_BALANCE - withdrawn.get(), total, 1e-9, "сумма балансов");
+        assertEquals(0, negative.get(), "записан отрицательный баланс");
+    }
+
+    @Test
+    void rejectedTransfers() {
+        BalanceAccounts accounts = new BalanceAccounts(uuid -> 10.0, (uuid, balance) -> {
+        });
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+
+        assertFalse(accounts.transfer(a, b, 11), "недостаточно валюты");
+        assertFalse(accounts.transfer(a, a, 1), "перевод самому себе");
+        assertFalse(accounts.transfer(a, b, 0), "нулевая сумма");
+        assertTrue(accounts.transfer(a, b, 10));
+        assertEquals(0, accounts.get(a), 0);
+        assertEquals(20, accounts.get(b), 0);
+        assertTrue(Double.isNaN(accounts.getLoaded(UUID.randomUUID())));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,113 @@
+package org.dan.dynamicborder.managers;
+
+import net.milkbowl.vault.economy.EconomyResponse;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Цена одного вызова экономики: прежний EconomyManager (getMethod и
+ * Method.invoke на каждый вызов, упаковка результата) против
+ * ReflectiveEconomyBridge с привязанными MethodHandle.
+ *
+ * Провайдер - FakeEconomy с методами Vault Economy, чтобы замер показывал
+ * только стоимость вызова. Прежний код искал методы с параметром Player;
+ * у Vault они принимают OfflinePlayer, здесь используется верная сигнатура.
+ *
+ * Запуск: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ * -Dexec.args="-cp %classpath org.openjdk.jmh.Main EconomyBridgeBenchmark"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class EconomyBridgeBenchmark {
+
+    private FakeEconomy economy;
+    private EconomyBridge bridge;
+    private Player player;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        economy = new FakeEconomy();
+        bridge = new ReflectiveEconomyBridge(economy, FakeEconomy.class);
+        // Провайдер игрока не читает
+        player = (Player) Proxy.newProxyInstance(Player.class.getClassLoader(),
+                new Class<?>[]{Player.class}, (proxy, method, args) -> null);
+    }
+
+    // ========== ДО: ПОИСК МЕТОДА НА КАЖДЫЙ ВЫЗОВ ==========
+
+    @Benchmark
+    public double reflectiveGetBalance() throws ReflectiveOperationException {
+        Method getBalanceMethod = economy.getClass()
+                .getMethod("getBalance", OfflinePlayer.class);
+        Object result = getBalanceMethod.invoke(economy, player);
+        return (Double) result;
+    }
+
+    @Benchmark
+    public boolean reflectiveWithdraw() throws ReflectiveOperationException {
+        Method withdrawMethod = economy.getClass()
+                .getMethod("withdrawPlayer", OfflinePlayer.class, double.class);
+        Object result = withdrawMethod.invoke(economy, player, 1.0);
+
+        Method successMethod = result.getClass().getMethod("transactionSuccess");
+        return (Boolean) successMethod.invoke(result);
+    }
+
+    // ========== ПОСЛЕ: ПРИВЯЗКА ПРИ ПОДКЛЮЧЕНИИ ==========
+
+    @Benchmark
+    public double boundGetBalance() {
+        return bridge.getBalance(player);
+    }
+
+    @Benchmark
+    public boolean boundWithdraw() {
+        return bridge.withdraw(player, 1.0);
+    }
+
+    /**
+     * Методы Vault Economy, которые вызывает плагин
+     */
+    public static final class FakeEconomy {
+        private double balance = 1_000_000;
+
+        public double getBalance(OfflinePlayer player) {
+            return balance;
+        }
+
+        public boolean has(OfflinePlayer player, double amount) {
+            return balance >= amount;
+        }
+
+        public EconomyResponse withdrawPlayer(OfflinePlayer player, double amount) {
+            // Баланс не убывает: замер не зависит от числа вызовов
+            return new EconomyResponse(amount, balance, EconomyResponse.ResponseType.SUCCESS, null);
+        }
+
+        public EconomyResponse depositPlayer(OfflinePlayer player, double amount) {
+            return new EconomyResponse(amount, balance, EconomyResponse.ResponseType.SUCCESS, null);
+        }
+
+        public String currencyNamePlural() {
+            return "coins";
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,102 @@
+package org.dan.dynamicborder.managers;
+
+import org.dan.dynamicborder.data.WorldBorderData;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Покупки одного мира из многих потоков: под блокировкой записи ни одно
+ * изменение WorldBorderData не теряется, а чтение не видит половину покупки.
+ */
+class WorldLocksTest {
+
+    private static final String WORLD = "world";
+    private static final int WRITERS = 8;
+    private static final int READERS = 2;
+    private static final int PURCHASES = 5_000;
+    private static final double START_SIZE = 1000.0;
+    private static final double STEP = 1.0;
+    private static final double COST = 0.5;
+
+    @Test
+    void concurrentPurchasesKeepTotals() throws Exception {
+        WorldLocks locks = new WorldLocks();
+        WorldBorderData data = new WorldBorderData(WORLD);
+        data.setAbsoluteMaxSize(START_SIZE + WRITERS * PURCHASES * STEP);
+        data.setPlayerMaxSize(data.getAbsoluteMaxSize());
+        data.setCurrentSize(START_SIZE);
+        long startModifications = data.getModificationCount();
+
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicLong torn = new AtomicLong();
+        AtomicLong reads = new AtomicLong();
+
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < WRITERS; t++) {
+            writers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < PURCHASES; i++) {
+                    // Как ExpandPurchase.apply: размер, счетчик и сумма одной покупкой
+                    locks.write(WORLD, () -> {
+                        data.setCurrentSize(data.getCurrentSize() + STEP);
+                        data.incrementExpansions();
+                        data.addCurrencySpent(COST);
+                    });
+                }
+                return null;
+            }));
+        }
+
+        List<Future<?>> readers = new ArrayList<>();
+        for (int t = 0; t < READERS; t++) {
+            readers.add(executor.submit(() -> {
+                start.await();
+                do {
+                    // Размер, число расширений и сумма всегда от одной и той же покупки
+                    boolean consistent = locks.read(WORLD, () -> {
+                        int expansions = data.getTotalExpansions();
+                        return data.getCurrentSize() == START_SIZE + expansions * STEP
+                                && data.getTotalCurrencySpent() == expansions * COST;
+                    });
+                    if (!consistent) {
+                        torn.incrementAndGet();
+                    }
+                    reads.incrementAndGet();
+                } while (writing.get());
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get(60, TimeUnit.SECONDS);
+        }
+        writing.set(false);
+        for (Future<?> reader : readers) {
+            reader.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        int total = WRITERS * PURCHASES;
+        assertEquals(total, data.getTotalExpansions(), "totalExpansions");
+        assertEquals(total * COST, data.getTotalCurrencySpent(), 1e-9, "totalCurrencySpent");
+        assertEquals(START_SIZE + total * STEP, data.getCurrentSize(), 1e-9, "currentSize");
+        assertEquals(startModifications + 3L * total, data.getModificationCount(), "modificationCount");
+
+        assertEquals(0, torn.get(), "чтение увидело незавершенную покупку");
+        assertEquals(reads.get(), locks.getOptimisticReads() + locks.getLockedReads(), "счетчики чтений");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,198 @@
+package org.dan.dynamicborder.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Разбор и вычисление формул множителей, сверка с прежним вычислением.
+ */
+class CompiledFormulaTest {
+
+    private static final double LEVEL = 2;
+    private static final double BASE = 1.5;
+    private static final double STEP = 0.1;
+    private static final double MIN = 1;
+    private static final double MAX = 5;
+
+    // Пример формулы в комментарии multipliers.yml: # "1 + 0.01 * level"
+    private static final Pattern EXAMPLE = Pattern.compile("^#\\s*\"([^\"]+)\"");
+    private static final Pattern BARE_VARIABLE = Pattern.compile("(?<![{\\w.])(level|base|step|min|max)(?![\\w}])");
+
+    private static double eval(String formula) {
+        return CompiledFormula.compile(formula).evaluate(LEVEL, BASE, STEP, MIN, MAX);
+    }
+
+    @Test
+    void precedence() {
+        assertEquals(14, eval("2 + 3 * 4"), 0);
+        assertEquals(20, eval("(2 + 3) * 4"), 0);
+        assertEquals(3, eval("10 - 4 - 3"), 0);
+        assertEquals(2, eval("12 / 3 / 2"), 0);
+        assertEquals(6, eval("7 % 4 * 2"), 0);
+        assertEquals(18, eval("2 * 3 ^ 2"), 0);
+        assertEquals(1.7, eval("base + step * level"), 1e-12);
+    }
+
+    @Test
+    void unaryMinus() {
+        assertEquals(-4, eval("-2 ^ 2"), 0);
+        assertEquals(0.5, eval("2 ^ -1"), 0);
+        assertEquals(3, eval("--3"), 0);
+        assertEquals(-2, eval("-level"), 0);
+        assertEquals(-1, eval("1 - -level * -1"), 0);
+        assertEquals(2, eval("+level"), 0);
+    }
+
+    @Test
+    void powerIsRightAssociative() {
+        assertEquals(512, eval("2 ^ 3 ^ 2"), 0);
+        assertEquals(512, eval("2 ** 3 ** 2"), 0);
+        assertEquals(512, eval("2 ^ 3 ** 2"), 0);
+        assertEquals(64, eval("(2 ^ 3) ^ 2"), 0);
+    }
+
+    @Test
+    void decimalComma() {
+        // Вне аргументов функции запятая между цифрами - десятичная
+        assertEquals(3, eval("1,5 * level"), 1e-12);
+        // В аргументах - разделитель
+        assertEquals(8, eval("pow(2,3)"), 0);
+        assertEquals(8, eval("pow(2, 3)"), 0);
+        // Скобки внутри аргумента снова разрешают десятичную запятую
+        assertEquals(2.25, eval("pow((1,5), 2)"), 1e-12);
+    }
+
+    @Test
+    void namesAndPrefixes() {
+        assertEquals(1.7, eval("{base} + {step} * {level}"), 1e-12);
+        assertEquals(6, eval("{min} + {max}"), 0);
+        assertEquals(8, eval("{pow}(2, 3)"), 0);
+        assertEquals(4, eval("{sqrt}(16)"), 0);
+        assertEquals(4, eval("Math.sqrt(16)"), 0);
+        assertEquals(8, eval("{Math.pow}(2, 3)"), 0);
+        assertEquals(Math.PI, eval("PI"), 0);
+        assertEquals(Math.PI, eval("{PI}"), 0);
+        assertEquals(Math.E, eval("Math.E"), 0);
+        assertEquals(2, eval("ABS(-2)"), 0);
+    }
+
+    @Test
+    void constantFolding() {
+        assertTrue(CompiledFormula.compile("1 + 2 * 3").isConstant());
+        assertTrue(CompiledFormula.compile("sqrt(16) * PI").isConstant());
+        assertFalse(CompiledFormula.compile("1 + level").isConstant());
+    }
+
+    @Test
+    void randomIsNeverFolded() {
+        for (String formula : new String[]{"random()", "random() * 0 + 1", "Math.random() + 2 * 3", "floor(random() * 1000)"}) {
+            CompiledFormula compiled = CompiledFormula.compile(formula);
+            assertTrue(compiled.usesRandom(), "usesRandom " + formula);
+            assertFalse(compiled.isConstant(), "isConstant " + formula);
+        }
+
+        CompiledFormula random = CompiledFormula.compile("random()");
+        Set<Double> values = new HashSet<>();
+        for (int i = 0; i < 20; i++) {
+            values.add(random.evaluate(0, 0, 0));
+        }
+        assertTrue(values.size() > 1, "random() вернул одно и то же значение");
+    }
+
+    @Test
+    void malformedInput() {
+        assertError("", "Пустая формула");
+        assertError("2 +", "(позиция 4): неожиданный конец формулы");
+        assertError("2 * (3", "(позиция 7): ожидается ')'");
+        assertError("{level", "(позиция 7): ожидается '}'");
+        assertError("foo + 1", "(позиция 4): неизвестное имя 'foo'");
+        assertError("pow(2)", "pow ожидает аргументов: 2, передано: 1");
+        assertError("pow(1,5, 2)", "pow ожидает аргументов: 2, передано: 3");
+        assertError("sqrt 4", "после sqrt ожидается '('");
+        assertError("2 3", "(позиция 3): лишний символ '3'");
+        assertError("2 # 3", "лишний символ '#'");
+        assertError("1..2", "(позиция 1): неверное число '1..2'");
+    }
+
+    private static void assertError(String formula, String expected) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> CompiledFormula.compile(formula), formula);
+        assertTrue(e.getMessage().contains(expected), formula + ": " + e.getMessage());
+    }
+
+    /**
+     * Примеры из multipliers.yml дают то же, что прежнее вычисление.
+     * Прежний путь подставлял только {level} и т.п., поэтому переменные
+     * примеров переводятся в эту запись. Без движка JavaScript (Java 15+)
+     * сверка идет с прежним резервным парсером - он понимает только
+     * арифметику, примеры с функциями сверяются лишь при наличии движка
+     */
+    @Test
+    void matchesLegacyOnShippedFormulas() throws IOException {
+        List<String> examples = shippedExamples();
+        assertFalse(examples.isEmpty(), "в multipliers.yml нет примеров формул");
+
+        int compared = 0;
+        for (String formula : examples) {
+            String legacyFormula = BARE_VARIABLE.matcher(formula).replaceAll("{$1}");
+            boolean arithmetic = !formula.contains("(");
+            if (!LegacyFormula.hasScriptEngine() && !arithmetic) {
+                continue;
+            }
+
+            CompiledFormula compiled = CompiledFormula.compile(formula);
+            for (int level = 0; level <= 50; level++) {
+                double expected;
+                if (LegacyFormula.hasScriptEngine()) {
+                    expected = LegacyFormula.evaluateCustomFormula(legacyFormula, level, BASE, STEP, MIN, MAX);
+                } else {
+                    expected = LegacyFormula.evaluateSimpleExpression(legacyFormula
+                            .replace("{level}", String.valueOf(level))
+                            .replace("{base}", String.valueOf(BASE))
+                            .replace("{step}", String.valueOf(STEP))
+                            .replace("{min}", String.valueOf(MIN))
+                            .replace("{max}", String.valueOf(MAX)));
+                }
+
+                double actual = compiled.evaluate(level, BASE, STEP, MIN, MAX);
+                assertEquals(expected, actual, 1e-9 * Math.max(1, Math.abs(expected)), formula + " level " + level);
+            }
+            compared++;
+        }
+        assertTrue(compared > 0, "ни один пример не сверен");
+    }
+
+    private static List<String> shippedExamples() throws IOException {
+        List<String> examples = new ArrayList<>();
+        InputStream in = CompiledFormulaTest.class.getClassLoader().getResourceAsStream("multipliers.yml");
+        assertNotNull(in, "multipliers.yml");
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Matcher matcher = EXAMPLE.matcher(line.trim());
+                if (matcher.find()) {
+                    examples.add(matcher.group(1));
+                }
+            }
+        }
+        return examples;
+    }
+}
\ No newline at end of file
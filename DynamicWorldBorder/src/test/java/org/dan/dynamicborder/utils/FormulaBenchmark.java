@@ -0,0 +1,85 @@
+package org.dan.dynamicborder.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость одного вычисления CUSTOM множителя: прежний путь через
+ * ScriptEngine (LegacyFormula) против CompiledFormula.
+ *
+ * На Java 21 движка JavaScript нет: прежний путь после замен строк и
+ * проверки регулярными выражениями заканчивался исключением и нулем,
+ * замер показывает именно эту цену.
+ *
+ * Запуск: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ * -Dexec.args="-cp %classpath org.openjdk.jmh.Main FormulaBenchmark"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FormulaBenchmark {
+
+    private static final double BASE = 1.0;
+    private static final double STEP = 0.1;
+    private static final double MIN = 1.0;
+    private static final double MAX = 5.0;
+
+    @Param({
+            "{base} + {step} * {level}",
+            "{base} * (1 + {level} ^ 2 / 100)",
+            "{base} * {pow}(1.05, {level})"
+    })
+    public String formula;
+
+    private CompiledFormula compiled;
+    private int level;
+
+    @Setup
+    public void setup() {
+        compiled = CompiledFormula.compile(formula);
+    }
+
+    // Уровень меняется от вызова к вызову, чтобы результат не сворачивался в константу
+    private int nextLevel() {
+        level = (level + 1) & 127;
+        return level;
+    }
+
+    /**
+     * Прежний путь: подстановка значений в строку и ScriptEngine
+     */
+    @Benchmark
+    public double legacy() {
+        return LegacyFormula.evaluateCustomFormula(formula, nextLevel(), BASE, STEP, MIN, MAX);
+    }
+
+    /**
+     * Формула, скомпилированная заранее (как в MultiplierConfig)
+     */
+    @Benchmark
+    public double compiled() {
+        return compiled.evaluate(nextLevel(), BASE, STEP, MIN, MAX);
+    }
+
+    /**
+     * Поиск в кэше по строке и вычисление (как в MathUtils.calculateMultiplier)
+     */
+    @Benchmark
+    public double cached() {
+        return CompiledFormula.cached(formula).evaluate(nextLevel(), BASE, STEP, MIN, MAX);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,106 @@
+package org.dan.dynamicborder.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Случайные изменения рейтинга сверяются с отсортированной картой.
+ */
+class LeaderboardTest {
+
+    private static final int OPERATIONS = 200_000;
+    private static final int KEYS = 3_000;
+    private static final int CHECK_EVERY = 5_000;
+
+    // По убыванию значения, при равных - меньший ключ выше
+    private static final Comparator<Map.Entry<Integer, Double>> ORDER =
+            Map.Entry.<Integer, Double>comparingByValue().reversed()
+                    .thenComparing(Map.Entry.comparingByKey());
+
+    @Test
+    void matchesSortedReference() {
+        Leaderboard<Integer> board = new Leaderboard<>();
+        Map<Integer, Double> reference = new HashMap<>();
+        Random random = new Random(1);
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            int key = random.nextInt(KEYS);
+            // Мало разных значений - много равных, проверяется порядок по ключу
+            double value = random.nextInt(50);
+
+            switch (random.nextInt(10)) {
+                case 0 -> {
+                    board.remove(key);
+                    reference.remove(key);
+                }
+                case 1 -> {
+                    boolean absent = !reference.containsKey(key);
+                    assertEquals(absent, board.putIfAbsent(key, value), "putIfAbsent " + key);
+                    reference.putIfAbsent(key, value);
+                }
+                default -> {
+                    board.update(key, value);
+                    reference.put(key, value);
+                }
+            }
+
+            if (i % CHECK_EVERY == 0 || i == OPERATIONS - 1) {
+                verify(board, reference, random);
+            }
+        }
+    }
+
+    @Test
+    void missingKeys() {
+        Leaderboard<String> board = new Leaderboard<>();
+        board.update("a", 1);
+
+        assertEquals(0, board.rank("b"));
+        assertTrue(Double.isNaN(board.get("b")));
+        assertTrue(board.range(2, 10).isEmpty());
+        assertTrue(board.range(0, 10).isEmpty());
+        assertTrue(board.top(0).isEmpty());
+
+        board.clear();
+        assertEquals(0, board.size());
+        assertTrue(board.top(10).isEmpty());
+        board.update("c", 2);
+        assertEquals(1, board.rank("c"));
+    }
+
+    private static void verify(Leaderboard<Integer> board, Map<Integer, Double> reference, Random random) {
+        List<Map.Entry<Integer, Double>> sorted = new ArrayList<>(reference.entrySet());
+        sorted.sort(ORDER);
+        assertEquals(sorted.size(), board.size(), "size");
+
+        for (int i = 0; i < sorted.size(); i++) {
+            Map.Entry<Integer, Double> expected = sorted.get(i);
+            assertEquals(i + 1, board.rank(expected.getKey()), "rank " + expected.getKey());
+            assertEquals(expected.getValue(), board.get(expected.getKey()), 0, "value " + expected.getKey());
+        }
+
+        int from = 1 + random.nextInt(Math.max(1, sorted.size()));
+        List<Leaderboard.Entry<Integer>> range = board.range(from, 20);
+        assertEquals(Math.min(20, sorted.size() - from + 1), range.size(), "range size from " + from);
+        for (int i = 0; i < range.size(); i++) {
+            Leaderboard.Entry<Integer> entry = range.get(i);
+            assertEquals(sorted.get(from - 1 + i).getKey(), entry.key(), "range key " + (from + i));
+            assertEquals(from + i, entry.rank(), "range rank");
+        }
+
+        List<Leaderboard.Entry<Integer>> top = board.top(10);
+        assertEquals(Math.min(10, sorted.size()), top.size(), "top size");
+        for (int i = 0; i < top.size(); i++) {
+            assertEquals(sorted.get(i).getKey(), top.get(i).key(), "top " + (i + 1));
+        }
+    }
+}
\ No newline at end of file
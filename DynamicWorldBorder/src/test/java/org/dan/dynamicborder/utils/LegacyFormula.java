@@ -0,0 +1,226 @@
+package org.dan.dynamicborder.utils;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Прежнее вычисление формул множителей (MathUtils и MultiplierConfig до
+ * CompiledFormula), без изменений. Только для сравнения в FormulaBenchmark
+ */
+final class LegacyFormula {
+
+    private static final ScriptEngine engine = new ScriptEngineManager().getEngineByName("JavaScript");
+
+    static {
+        // Настраиваем ScriptEngine для безопасности
+        if (engine != null) {
+            engine.put("Math", Math.class);
+        }
+    }
+
+    private LegacyFormula() {
+    }
+
+    /**
+     * Есть ли движок JavaScript (на Java 15+ только с отдельным Nashorn)
+     */
+    static boolean hasScriptEngine() {
+        return engine != null;
+    }
+
+    /**
+     * Вычисление математического выражения
+     */
+    public static double evaluateExpression(String expression) {
+        if (expression == null || expression.trim().isEmpty()) {
+            return 0.0;
+        }
+
+        try {
+            // Заменяем математические функции
+            String expr = expression
+                    .replace("{sqrt}", "Math.sqrt")
+                    .replace("{pow}", "Math.pow")
+                    .replace("{log}", "Math.log")
+                    .replace("{log10}", "Math.log10")
+                    .replace("{sin}", "Math.sin")
+                    .replace("{cos}", "Math.cos")
+                    .replace("{tan}", "Math.tan")
+                    .replace("{asin}", "Math.asin")
+                    .replace("{acos}", "Math.acos")
+                    .replace("{atan}", "Math.atan")
+                    .replace("{abs}", "Math.abs")
+                    .replace("{round}", "Math.round")
+                    .replace("{floor}", "Math.floor")
+                    .replace("{ceil}", "Math.ceil")
+                    .replace("{random}", "Math.random")
+                    .replace("{E}", String.valueOf(Math.E))
+                    .replace("{PI}", String.valueOf(Math.PI))
+                    .replace("^", "**") // Заменяем ^ на ** для JavaScript
+                    .replace(",", "."); // Заменяем запятые на точки
+
+            // Удаляем оставшиеся фигурные скобки
+            expr = expr.replace("{", "").replace("}", "");
+
+            // Проверяем на наличие опасных конструкций
+            if (containsDangerousCode(expr)) {
+                throw new SecurityException("Выражение содержит опасный код: " + expr);
+            }
+
+            Object result = engine.eval(expr);
+            if (result instanceof Number) {
+                return ((Number) result).doubleValue();
+            } else if (result instanceof Boolean) {
+                return ((Boolean) result) ? 1.0 : 0.0;
+            }
+            return 0.0;
+
+        } catch (ScriptException e) {
+            // Если JavaScript недоступен, используем простой парсер
+            return evaluateSimpleExpression(expression);
+        } catch (SecurityException e) {
+            throw e;
+        } catch (Exception e) {
+            return 0.0;
+        }
+    }
+
+    /**
+     * Проверка на опасный код
+     */
+    private static boolean containsDangerousCode(String expression) {
+        String[] dangerousPatterns = {
+                "System\\.", "Runtime\\.", "Process\\.", "exec\\s*\\(", "eval\\s*\\(",
+                "getClass\\(\\)", "forName\\s*\\(", "invoke\\s*\\(", "new\\s+",
+                "import\\s+", "package\\s+", "void\\s+", "class\\s+", "function\\s+"
+        };
+
+        for (String pattern : dangerousPatterns) {
+            if (Pattern.compile(pattern, Pattern.CASE_INSENSITIVE).matcher(expression).find()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Простой парсер математических выражений (резервный вариант)
+     */
+    static double evaluateSimpleExpression(String expression) {
+        try {
+            // Удаляем пробелы
+            String expr = expression.replaceAll("\\s+", "");
+
+            // Обрабатываем скобки
+            while (expr.contains("(") && expr.contains(")")) {
+                int open = expr.lastIndexOf("(");
+                int close = expr.indexOf(")", open);
+
+                if (close == -1) break;
+
+                String subExpr = expr.substring(open + 1, close);
+                double subResult = evaluateSimpleExpression(subExpr);
+                expr = expr.substring(0, open) + subResult + expr.substring(close + 1);
+            }
+
+            // Обрабатываем операции в порядке приоритета
+            expr = processOperations(expr, new String[]{"^"});          // Степень
+            expr = processOperations(expr, new String[]{"*", "/"});    // Умножение и деление
+            expr = processOperations(expr, new String[]{"+", "-"});    // Сложение и вычитание
+
+            return Double.parseDouble(expr);
+
+        } catch (Exception e) {
+            return 0.0;
+        }
+    }
+
+    private static String processOperations(String expression, String[] operators) {
+        String expr = expression;
+
+        for (String op : operators) {
+            // Экранируем операторы для регулярных выражений
+            String escapedOp;
+            switch (op) {
+                case "^":
+                    escapedOp = "\\^"; // ^ - спецсимвол
+                    break;
+                case "*":
+                    escapedOp = "\\*"; // * - спецсимвол
+                    break;
+                case "/":
+                    escapedOp = "/";   // / - не спецсимвол
+                    break;
+                case "+":
+                    escapedOp = "\\+"; // + - спецсимвол
+                    break;
+                case "-":
+                    escapedOp = "-";   // - иногда спецсимвол, но в данном контексте нормально
+                    break;
+                default:
+                    escapedOp = Pattern.quote(op); // для других операторов
+            }
+
+            Pattern pattern = Pattern.compile("(-?\\d+\\.?\\d*)(" + escapedOp + ")(-?\\d+\\.?\\d*)");
+            Matcher matcher = pattern.matcher(expr);
+
+            while (matcher.find()) {
+
+                double left = Double.parseDouble(matcher.group(1));
+                double right = Double.parseDouble(matcher.group(3));
+                double result = 0.0;
+
+                switch (op) {
+                    case "^":
+                        result = Math.pow(left, right);
+                        break;
+                    case "*":
+                        result = left * right;
+                        break;
+                    case "/":
+                        if (right == 0) result = 0;
+                        else result = left / right;
+                        break;
+                    case "+":
+                        result = left + right;
+                        break;
+                    case "-":
+                        result = left - right;
+                        break;
+                }
+
+                expr = expr.substring(0, matcher.start()) + result + expr.substring(matcher.end());
+                matcher = pattern.matcher(expr);
+            }
+        }
+
+        return expr;
+    }
+
+    /**
+     * Формула CUSTOM множителя, как ее считал MultiplierConfig.evaluateCustomFormula
+     */
+    public static double evaluateCustomFormula(String customFormula, int level, double baseValue,
+                                               double step, double minMultiplier, double maxMultiplier) {
+        if (customFormula == null || customFormula.isEmpty()) {
+            return 1.0;
+        }
+
+        try {
+            String expression = customFormula
+                    .replace("{level}", String.valueOf(level))
+                    .replace("{base}", String.valueOf(baseValue))
+                    .replace("{step}", String.valueOf(step))
+                    .replace("{min}", String.valueOf(minMultiplier))
+                    .replace("{max}", String.valueOf(maxMultiplier));
+
+            return evaluateExpression(expression);
+        } catch (Exception e) {
+            return 1.0;
+        }
+    }
+}
\ No newline at end of file